@@ -1,18 +1,146 @@
 package com.ben9583.chess_ai;
 
+import com.ben9583.chess_ai.ai.search.Evaluator;
+import com.ben9583.chess_ai.ai.search.MateSolver;
+import com.ben9583.chess_ai.ai.search.MaterialEvaluator;
+import com.ben9583.chess_ai.ai.search.NnueEvaluator;
+import com.ben9583.chess_ai.ai.search.NnueNetwork;
+import com.ben9583.chess_ai.ai.search.ParallelSearcher;
+import com.ben9583.chess_ai.ai.search.SearchLimits;
+import com.ben9583.chess_ai.ai.search.SearchOptions;
+import com.ben9583.chess_ai.ai.utils.ModelCheckpoint;
+import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.components.bitboard.Perft;
+import com.ben9583.chess_ai.components.bitboard.Position;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
 public class ChessAI {
     public static ChessGame game;
 
     private static boolean graphicsEnabled = false;
 
+    /* Depth to run perft to instead of playing, or 0 to play. */
+    private static int perftDepth = 0;
+    /* Milliseconds to search for instead of playing, or 0 to play. */
+    private static long searchMillis = 0;
+    /* Number of moves to look for a forced mate in instead of playing, or 0 to play. */
+    private static int mateMoves = 0;
+    /* Features the search uses. */
+    private static SearchOptions searchOptions = SearchOptions.ALL;
+    /* Position to run perft or search from, in FEN. */
+    private static String fen = Position.START_FEN;
+    /* Number of threads to run perft, search or training on. */
+    private static int threads = 1;
+    /* Evaluator the search scores positions with: "material" or "nnue". */
+    private static String eval = "material";
+    /* Checkpoint of the NnueNetwork weights used by the "nnue" evaluator, or null if none was given. */
+    private static String nnuePath = null;
+    /* AI the user plays against in the window: "neural", or "search" for a SearchAgent using eval that ponders on the user's time. */
+    private static String agent = "neural";
+
     public static void main(String[] args) {
-        for(String arg : args) {
-            if (arg.equals("--graphics")) {
-                ChessAI.graphicsEnabled = true;
-                break;
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "--graphics" -> ChessAI.graphicsEnabled = true;
+                case "--perft" -> ChessAI.perftDepth = Integer.parseInt(ChessAI.nextArg(args, i++));
+                case "--search" -> ChessAI.searchMillis = Long.parseLong(ChessAI.nextArg(args, i++));
+                case "--mate" -> ChessAI.mateMoves = Integer.parseInt(ChessAI.nextArg(args, i++));
+                case "--disable" -> ChessAI.searchOptions = ChessAI.searchOptions.without(ChessAI.nextArg(args, i++));
+                case "--fen" -> ChessAI.fen = ChessAI.nextArg(args, i++);
+                case "--threads" -> ChessAI.threads = Integer.parseInt(ChessAI.nextArg(args, i++));
+                case "--eval" -> ChessAI.eval = ChessAI.nextArg(args, i++);
+                case "--nnue" -> ChessAI.nnuePath = ChessAI.nextArg(args, i++);
+                case "--agent" -> ChessAI.agent = ChessAI.nextArg(args, i++);
             }
         }
 
-        ChessAI.game = new ChessGame(ChessAI.graphicsEnabled);
+        if(ChessAI.perftDepth > 0) {
+            Perft.report(ChessAI.fen, ChessAI.perftDepth, ChessAI.threads, System.out);
+            return;
+        }
+        if(ChessAI.searchMillis > 0) {
+            ChessAI.search();
+            return;
+        }
+        if(ChessAI.mateMoves > 0) {
+            ChessAI.solveMate();
+            return;
+        }
+
+        ChessAI.game = new ChessGame(ChessAI.graphicsEnabled, ChessAI.threads, ChessAI.createAgentEvaluator());
+    }
+
+    /**
+     * Searches fen for searchMillis milliseconds on threads threads and prints the result, including the nodes per second of all threads together.
+     */
+    private static void search() {
+        Board board = new Board();
+        board.loadFEN(ChessAI.fen);
+
+        ParallelSearcher searcher = new ParallelSearcher(board, ChessAI.createEvaluator(), ChessAI.threads);
+        searcher.setOptions(ChessAI.searchOptions);
+        System.out.println("Search of " + ChessAI.fen + " for " + ChessAI.searchMillis + " ms on " + ChessAI.threads + " threads with " + ChessAI.eval + " evaluation and " + ChessAI.searchOptions + ":");
+        System.out.println(searcher.search(SearchLimits.ofTime(ChessAI.searchMillis)));
+        searcher.shutdown();
+    }
+
+    /**
+     * Returns the evaluator chosen with --eval, loading the weights given with --nnue for "nnue".
+     * @return The evaluator, which can be shared by every thread of a search
+     */
+    private static Evaluator createEvaluator() {
+        return switch(ChessAI.eval) {
+            case "material" -> new MaterialEvaluator();
+            case "nnue" -> {
+                if(ChessAI.nnuePath == null) throw new IllegalArgumentException("Option --eval nnue needs the weights to use, given with --nnue <checkpoint>.");
+                try {
+                    yield new NnueEvaluator(NnueNetwork.load(ModelCheckpoint.open(Path.of(ChessAI.nnuePath))));
+                } catch(IOException e) {
+                    throw new UncheckedIOException("Could not load NNUE weights from " + ChessAI.nnuePath + ".", e);
+                }
+            }
+            default -> throw new IllegalArgumentException("Option --eval must be material or nnue, but is " + ChessAI.eval + ".");
+        };
+    }
+
+    /**
+     * Returns the evaluator of the SearchAgent chosen with --agent search, or null for --agent neural.
+     * @return The evaluator, or null if the game is played against a NeuralAgent
+     */
+    private static Evaluator createAgentEvaluator() {
+        return switch(ChessAI.agent) {
+            case "neural" -> null;
+            case "search" -> {
+                if(!ChessAI.graphicsEnabled) throw new IllegalArgumentException("Option --agent search needs --graphics, since only neural agents can be trained.");
+                yield ChessAI.createEvaluator();
+            }
+            default -> throw new IllegalArgumentException("Option --agent must be neural or search, but is " + ChessAI.agent + ".");
+        };
+    }
+
+    /**
+     * Looks for a forced mate in at most mateMoves moves from fen and prints the result, including its proof size and nodes per second.
+     */
+    private static void solveMate() {
+        Board board = new Board();
+        board.loadFEN(ChessAI.fen);
+
+        MateSolver solver = new MateSolver(board);
+        System.out.println("Mate search of " + ChessAI.fen + " in at most " + ChessAI.mateMoves + " moves:");
+        System.out.println(solver.solve(ChessAI.mateMoves, Long.MAX_VALUE));
+    }
+
+    /**
+     * Returns the argument after the option at index i.
+     * @param args Command-line arguments
+     * @param i Index of the option
+     * @return The value of the option
+     */
+    private static String nextArg(String[] args, int i) {
+        if(i + 1 >= args.length) throw new IllegalArgumentException("Option " + args[i] + " needs a value.");
+        return args[i + 1];
     }
 }
@@ -2,87 +2,191 @@ package com.ben9583.chess_ai;
 
 import com.ben9583.chess_ai.ai.AIAgent;
 import com.ben9583.chess_ai.ai.models.NeuralAgent;
+import com.ben9583.chess_ai.ai.models.SearchAgent;
+import com.ben9583.chess_ai.ai.search.Evaluator;
+import com.ben9583.chess_ai.ai.search.SearchLimits;
+import com.ben9583.chess_ai.ai.training.EvolutionTrainer;
+import com.ben9583.chess_ai.ai.training.SelfPlayStats;
+import com.ben9583.chess_ai.ai.training.SelfPlayRunner;
+import com.ben9583.chess_ai.ai.utils.CancellationToken;
 import com.ben9583.chess_ai.ai.utils.Move;
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
+import com.ben9583.chess_ai.components.pieces.Piece;
 import com.ben9583.chess_ai.gfx.ChessAIWindow;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.nd4j.linalg.factory.Nd4j;
 
+import javax.swing.*;
 import java.io.*;
 import java.util.HashMap;
 import java.util.Map;
 
 public class ChessGame {
+    /* Longest an AI may think about one move, in milliseconds. */
+    private static final long MOVE_TIME_MILLIS = 10_000;
+    /* File the neural network's weights are loaded from before training and saved to after it. */
+    private static final String WEIGHTS_PATH = "output.dat";
+
     @Nullable
     private ChessAIWindow window = null;
 
     @NotNull
     private Board board;
+    /* Copy of board the AIs think on, so the window can keep drawing board while they do. */
+    @NotNull
+    private final Board aiBoard;
 
     @NotNull
     private Map<Player, AIAgent> aiPlayers;
 
-    public ChessGame(boolean graphicsEnabled) {
+    /* Token of the move an AI is thinking about, or null if none is. */
+    @Nullable
+    private volatile CancellationToken thinking = null;
+
+    /**
+     * Creates a game shown in a window, or trains the AI by self-play if graphics are disabled.
+     * The AI in the window is a NeuralAgent, or a SearchAgent pondering on the user's time if searchEvaluator is given.
+     * @param graphicsEnabled Whether to show the game in a window
+     * @param threads Number of games to play at once when training, or of threads the SearchAgent searches on
+     * @param searchEvaluator Evaluator of the SearchAgent, or null to play against a NeuralAgent. Must be null if graphics are disabled
+     */
+    public ChessGame(boolean graphicsEnabled, int threads, @Nullable Evaluator searchEvaluator) {
+        if(threads < 1) throw new IllegalArgumentException("Cannot construct ChessGame: threads must be at least 1, but is " + threads + ".");
+        if(!graphicsEnabled && searchEvaluator != null) throw new IllegalArgumentException("Cannot construct ChessGame: only neural agents can be trained, but a search evaluator was given.");
+
         this.board = new Board();
+        this.aiBoard = new Board();
         this.aiPlayers = new HashMap<>();
 
-        NeuralAgent blackAgent = new NeuralAgent(this.board, Player.BLACK, 95);
-        blackAgent.constructNeuralNetwork();
+        if(searchEvaluator != null) {
+            SearchAgent blackAgent = new SearchAgent(this.aiBoard, Player.BLACK, searchEvaluator, SearchLimits.ofTime(MOVE_TIME_MILLIS), threads);
+            blackAgent.setPondering(true);
 
-        this.aiPlayers.put(Player.BLACK, blackAgent);
+            this.aiPlayers.put(Player.BLACK, blackAgent);
+        } else {
+            NeuralAgent blackAgent = new NeuralAgent(this.aiBoard, Player.BLACK, 95);
+            blackAgent.constructNeuralNetwork();
+
+            this.aiPlayers.put(Player.BLACK, blackAgent);
+        }
 
         if(graphicsEnabled) {
             this.window = new ChessAIWindow(this.board);
+            this.window.getBoard2D().bindMoveNowEvent(this::stopThinking);
             this.board.bindNextTurnEvent(this::onNextTurn);
         } else {
-            NeuralAgent whiteAgent = new NeuralAgent(this.board, Player.WHITE, 83);
-            whiteAgent.constructNeuralNetwork();
+            NeuralAgent blackAgent = (NeuralAgent) this.aiPlayers.get(Player.BLACK);
+            // A corrupt checkpoint throws here, before training could overwrite it.
+            if(!blackAgent.loadDataFromFile(WEIGHTS_PATH)) System.out.println("No weights found at " + WEIGHTS_PATH + ", training from scratch.");
 
-            this.aiPlayers.put(Player.WHITE, whiteAgent);
+            int games = 10000;
 
-            blackAgent.loadDataFromFile("output.dat");
-            whiteAgent.loadDataFromFile("output.dat");
+            // Each worker runs its own networks, so give every worker an equal share of the cores ND4J would otherwise use for each of them.
+            Nd4j.getEnvironment().setMaxThreads(Math.max(1, Runtime.getRuntime().availableProcessors() / threads));
 
-            System.out.println("Begin training...");
+            EvolutionTrainer trainer = new EvolutionTrainer(blackAgent, 95);
+            int generations = Math.max(1, games / trainer.getGamesPerGeneration());
+            SelfPlayRunner runner = new SelfPlayRunner(threads, (board, player) -> {
+                NeuralAgent agent = new NeuralAgent(board, player);
+                agent.constructNeuralNetwork();
+                return agent;
+            }, trainer);
 
-            int epochs = 10000;
+            System.out.println("Begin training on " + threads + " threads...");
 
-            for(int i = 0; i < epochs; i++) {
-                while (!this.board.isGameOver()) this.onNextTurn();
+            for(int generation = 0; generation < generations; generation++) {
+                SelfPlayStats stats = trainer.runGeneration(runner);
 
-                if(i * 100 % epochs == 0) {
-                    System.out.println(i * 100 / epochs + "%");
-                    System.out.println(this.board.getPGN());
+                if(generation * 100 % generations == 0) {
+                    System.out.println(generation * 100 / generations + "%");
+                    System.out.println(stats);
                 }
-
-                if(!this.board.getGameOverReason().contains("Black"))
-                    blackAgent.mutate();
-
-                if(!this.board.getGameOverReason().contains("White"))
-                    whiteAgent.mutate();
-
-                this.board.resetGame();
             }
 
-            blackAgent.saveDataToFile("output.dat");
+            runner.shutdown();
+
+            trainer.applyCenter(blackAgent);
+            if(!blackAgent.saveDataToFile(WEIGHTS_PATH)) throw new IllegalStateException("Training finished, but the weights could not be saved to " + WEIGHTS_PATH + ".");
+            System.out.println("Saved the trained weights to " + WEIGHTS_PATH + ".");
         }
     }
 
+    /**
+     * Lets the AI whose turn it is, if any, think about its move on a separate thread, and plays the move
+     * it chooses on the event dispatch thread. Runs on the event dispatch thread after every move.
+     */
     private void onNextTurn() {
+        if(this.board.isGameOver()) {
+            for(AIAgent agent : this.aiPlayers.values()) agent.stopPondering();
+            return;
+        }
+
         AIAgent whoShouldPlay = this.aiPlayers.get(this.board.getWhoseTurn());
+        if(whoShouldPlay == null) return;
 
-        if(whoShouldPlay != null) {
-            if(whoShouldPlay.shouldResign()) {
-                this.board.resign(this.board.getWhoseTurn());
-                return;
+        if(whoShouldPlay.shouldResign()) {
+            this.board.resign(this.board.getWhoseTurn());
+            return;
+        }
+
+        this.aiBoard.copyFrom(this.board);
+        CancellationToken token = new CancellationToken();
+        this.thinking = token;
+        if(this.window != null) this.window.getBoard2D().setAIThinking(true);
+
+        Thread thinker = new Thread(() -> {
+            Move nextMove;
+            try {
+                nextMove = whoShouldPlay.getNextMove(System.nanoTime() + MOVE_TIME_MILLIS * 1_000_000, token);
+            } catch(RuntimeException e) {
+                // Give the board back to the user rather than leaving it locked.
+                if(this.window != null) SwingUtilities.invokeLater(() -> this.window.getBoard2D().setAIThinking(false));
+                throw e;
+            } finally {
+                this.thinking = null;
             }
-            Move nextMove = whoShouldPlay.getNextMove();
-            nextMove.piece().movePiece(nextMove.position());
+            SwingUtilities.invokeLater(() -> this.playMove(whoShouldPlay, nextMove));
+        }, "ai-move");
+        thinker.setDaemon(true);
+        thinker.start();
+    }
 
-            // System.out.println(this.board.toFEN());
+    /**
+     * Plays the move agent chose on aiBoard on the board, then lets the agent ponder. Runs on the event dispatch thread.
+     * Does nothing if the game ended while the agent was thinking, and resigns for the agent if it resigned on aiBoard.
+     * @param agent Agent that chose the move
+     * @param move Move chosen on aiBoard
+     */
+    private void playMove(@NotNull AIAgent agent, @NotNull Move move) {
+        if(this.window != null) this.window.getBoard2D().setAIThinking(false);
+        if(this.board.isGameOver()) return;
+        if(this.aiBoard.isGameOver()) {
+            this.board.resign(this.board.getWhoseTurn());
+            if(this.window != null) this.window.getBoard2D().repaint();
+            return;
+        }
+
+        Piece piece = this.board.getPieceAtPosition(this.aiBoard.getPosition(move.piece()));
+        piece.movePiece(move.position());
+        if(this.board.awaitingPromotion()) this.board.promote(agent.promote());
 
-            if(this.board.awaitingPromotion()) this.board.promote(whoShouldPlay.promote());
+        // Think on the opponent's time until they move. A ponder hit or miss is handled by the agent's next getNextMove.
+        if(!this.board.isGameOver()) {
+            this.aiBoard.copyFrom(this.board);
+            agent.startPondering();
         }
+
+        if(this.window != null) this.window.getBoard2D().repaint();
+    }
+
+    /**
+     * Makes the AI thinking about its move, if any, play the best move it has found so far right away.
+     * Called when the user clicks the board or presses space while an AI thinks. Can be called from any thread.
+     */
+    public void stopThinking() {
+        CancellationToken token = this.thinking;
+        if(token != null) token.cancel();
     }
 }
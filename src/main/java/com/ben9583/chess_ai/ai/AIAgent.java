@@ -1,9 +1,15 @@
 package com.ben9583.chess_ai.ai;
 
+import com.ben9583.chess_ai.ai.utils.CancellationToken;
 import com.ben9583.chess_ai.ai.utils.Move;
+import com.ben9583.chess_ai.ai.utils.TimeControl;
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.MoveList;
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
 import com.ben9583.chess_ai.components.pieces.Piece;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Abstract base class for any AI agent to play chess.
@@ -11,14 +17,23 @@ import com.ben9583.chess_ai.components.pieces.Piece;
  * to be able to call in order to get a decision.
  */
 public abstract class AIAgent {
+    /* Deadline meaning the agent may take as long as it likes. */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
     /* Board this AIAgent will observe. */
     protected final Board board;
     /* Player this AIAgent will play as. */
     protected final Player player;
+    /* List the legal moves are generated into, reused every turn. */
+    private final MoveList legalMoves;
+    /* Best move found so far for the move being decided, or the last decided move. Packed as described in PackedMove. */
+    private volatile int bestMoveSoFar;
 
     public AIAgent(Board board, Player player) {
         this.board = board;
         this.player = player;
+        this.legalMoves = new MoveList();
+        this.bestMoveSoFar = PackedMove.NONE;
     }
 
     /**
@@ -27,6 +42,46 @@ public abstract class AIAgent {
      */
     public abstract Move getNextMove();
 
+    /**
+     * Uses information from the Board to get the next move, deciding by deadline at the latest
+     * and as soon as token is cancelled. Either way, the best move found so far is returned.
+     * By default the deadline and token are ignored, which suits agents that decide at once.
+     * @param deadlineNanos System.nanoTime by which to decide, or NO_DEADLINE
+     * @param token Token another thread can cancel to make this agent decide now
+     * @return The next move this player should make
+     */
+    public Move getNextMove(long deadlineNanos, @NotNull CancellationToken token) {
+        return this.getNextMove();
+    }
+
+    /**
+     * Uses information from the Board to get the next move, spending the share of clock
+     * that timeControl allows on it, or less if token is cancelled.
+     * @param timeControl Time this player has left
+     * @param token Token another thread can cancel to make this agent decide now
+     * @return The next move this player should make
+     */
+    public Move getNextMove(@NotNull TimeControl timeControl, @NotNull CancellationToken token) {
+        return this.getNextMove(timeControl.deadlineNanos(), token);
+    }
+
+    /**
+     * Returns the best move found so far while this agent decides on a move, or the move it
+     * decided on last once it is done. Can be called from any thread.
+     * @return The move packed as described in PackedMove, or PackedMove.NONE if none was found yet
+     */
+    public int getBestMoveSoFar() {
+        return this.bestMoveSoFar;
+    }
+
+    /**
+     * Records the best move found so far, for getBestMoveSoFar.
+     * @param move Move packed as described in PackedMove, or PackedMove.NONE to clear it
+     */
+    protected void setBestMoveSoFar(int move) {
+        this.bestMoveSoFar = move;
+    }
+
     /**
      * Fired when player makes a move prompting a promotion.
      * Should decide which piece to promote to.
@@ -41,7 +96,51 @@ public abstract class AIAgent {
      */
     public abstract boolean shouldResign();
 
+    /**
+     * Called after this agent's move has been played, while the opponent decides on theirs.
+     * Agents that can think on the opponent's time (ponder) start doing so here.
+     * Does nothing by default.
+     */
+    public void startPondering() {}
+
+    /**
+     * Stops any thinking started by startPondering, for example because the game ended.
+     * Does nothing by default.
+     */
+    public void stopPondering() {}
+
     protected Piece[] getMyPieces() {
         return this.board.getPlayerPieces(this.player);
     }
+
+    /**
+     * Returns every legal move this agent can make, packed as described in PackedMove.
+     * A pawn reaching the last rank is only listed once, as the piece
+     * it becomes is decided afterwards by promote.
+     * The same list is refilled by every call, so it should not be kept between turns.
+     * @return List of legal moves
+     */
+    protected MoveList getLegalMoves() {
+        this.board.getLegalMoves(this.legalMoves);
+
+        int kept = 0;
+        for(int i = 0; i < this.legalMoves.size(); i++) {
+            int move = this.legalMoves.get(i);
+            if(PackedMove.isPromotion(move) && PackedMove.promotionType(move) != Bitboards.QUEEN) continue;
+            this.legalMoves.set(kept++, move);
+        }
+        this.legalMoves.truncate(kept);
+
+        return this.legalMoves;
+    }
+
+    /**
+     * Converts a packed move into the Move the ChessGame expects from getNextMove.
+     * @param move A legal packed move
+     * @return The piece that moves and the square it moves to
+     */
+    protected Move toMove(int move) {
+        Piece piece = this.board.getPieceAtPosition(Bitboards.toVector2(PackedMove.from(move)));
+        return new Move(piece, Bitboards.toVector2(PackedMove.to(move)));
+    }
 }
@@ -1,61 +1,79 @@
 package com.ben9583.chess_ai.ai.models;
 
 import com.ben9583.chess_ai.ai.AIAgent;
+import com.ben9583.chess_ai.ai.utils.BoardBatch;
+import com.ben9583.chess_ai.ai.utils.CancellationToken;
 import com.ben9583.chess_ai.ai.utils.Move;
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
-import com.ben9583.chess_ai.components.pieces.Piece;
-import com.ben9583.chess_ai.utils.Vector2;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.ben9583.chess_ai.components.bitboard.MoveList;
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * AI Agent that relies on an evaluation of the board to pick the move
  * that has the highest evaluation. Higher values are preferred.
  */
 public abstract class EvalAgent extends AIAgent {
-    public EvalAgent(Board board, Player player) { super(board, player); }
+    /* Number of positions evaluated at once. Smaller batches stop sooner when time runs out, larger ones evaluate faster. */
+    private static final int BATCH_SIZE = 16;
+
+    /* Positions after each move of the batch being evaluated, reused every batch. */
+    private final BoardBatch batch;
+
+    public EvalAgent(Board board, Player player) {
+        super(board, player);
+
+        this.batch = new BoardBatch(BATCH_SIZE);
+    }
 
     /**
-     * Evaluates the array of boards,
+     * Evaluates the boards in batch,
      * with a higher value indicating a more favorable position
      * for this agent.
-     * @param boards Array of boards to evaluate
-     * @return Array of evaluations for each respective board in boards
+     * @param batch Boards to evaluate
+     * @return Array of evaluations for each respective board in batch
      */
-    public abstract float[] evaluatePositions(float[][][][] boards);
+    public abstract float[] evaluatePositions(@NotNull BoardBatch batch);
 
     @Override
     public Move getNextMove() {
+        return this.getNextMove(AIAgent.NO_DEADLINE, new CancellationToken());
+    }
+
+    /**
+     * Evaluates the legal moves a batch at a time, so that once the deadline passes or token
+     * is cancelled the best move of the batches evaluated so far can be returned.
+     * The first batch is always evaluated, so a move is returned whenever there is one.
+     */
+    @Override
+    public Move getNextMove(long deadlineNanos, @NotNull CancellationToken token) {
         if(this.shouldResign()) super.board.resign(super.player);
+        super.setBestMoveSoFar(PackedMove.NONE);
 
-        Piece[] myPieces = super.getMyPieces();
+        MoveList moves = super.getLegalMoves();
+        int bestMove = PackedMove.NONE;
+        float bestEval = -Float.MAX_VALUE;
 
-        List<float[][][]> boards = new ArrayList<>();
-        List<Move> moves = new ArrayList<>();
-        for(Piece p : myPieces) {
-            Vector2[] possiblePositions = p.getMovableSquares(true);
-            for(Vector2 v : possiblePositions) {
-                Move m = new Move(p, v);
-                moves.add(m);
+        for(int first = 0; first < moves.size(); first += BATCH_SIZE) {
+            if(first > 0 && (token.isCancelled() || System.nanoTime() >= deadlineNanos)) break;
 
-                super.board.runOnMove(p, v, () -> boards.add(super.board.get3DBoard()));
+            this.batch.clear();
+            for(int i = first; i < Math.min(first + BATCH_SIZE, moves.size()); i++) {
+                super.board.runOnMove(moves.get(i), () -> this.batch.add(super.board));
             }
-        }
-
-        float[] evals = this.evaluatePositions(boards.toArray(new float[boards.size()][][][]));
 
-        Move bestMove = null;
-        float bestEval = -Float.MAX_VALUE;
+            float[] evals = this.evaluatePositions(this.batch);
 
-        for(int i = 0; i < evals.length; i++) {
-            if(evals[i] > bestEval) {
-                bestEval = evals[i];
-                bestMove = moves.get(i);
+            for(int i = 0; i < evals.length; i++) {
+                if(evals[i] > bestEval) {
+                    bestEval = evals[i];
+                    bestMove = moves.get(first + i);
+                }
             }
+            super.setBestMoveSoFar(bestMove);
         }
 
-        return bestMove;
+        return bestMove == PackedMove.NONE ? null : super.toMove(bestMove);
     }
 }
@@ -4,58 +4,57 @@ import com.ben9583.chess_ai.ai.AIAgent;
 import com.ben9583.chess_ai.ai.utils.Move;
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
-import com.ben9583.chess_ai.components.pieces.Piece;
-import com.ben9583.chess_ai.utils.Vector2;
+import com.ben9583.chess_ai.components.bitboard.MoveList;
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 /**
  * Very simple AI Agent that picks the best move presented to it.
- * The 'best move' is the move that captures a piece with the highest value.
- * Does not consider strategically valuable moves like checkmate or promotions.
+ * The 'best move' is the move that wins the most material once every recapture
+ * on its square is played out (see Board.staticExchange), so it no longer trades
+ * into defended pieces. Does not consider strategically valuable moves like checkmate.
  * In the case of a tie, picks random.
  */
 public class GreedyAgent extends AIAgent {
     private final Random randomGenerator;
+    /* Moves tied for the best score this turn, reused every turn. */
+    private final MoveList possibleMoves;
 
     public GreedyAgent(Board board, Player player) {
         super(board, player);
 
         this.randomGenerator = new Random();
+        this.possibleMoves = new MoveList();
     }
 
     public GreedyAgent(Board board, Player player, int seed) {
         super(board, player);
 
         this.randomGenerator = new Random(seed);
+        this.possibleMoves = new MoveList();
     }
 
     @Override
     public Move getNextMove() {
-        List<Move> possibleMoves = new ArrayList<>();
-        Piece[] myPieces = super.getMyPieces();
+        this.possibleMoves.clear();
+        int highScore = Integer.MIN_VALUE;
 
-        int highScore = 0;
-
-        for(Piece p : myPieces) {
-            Vector2[] possiblePositions = p.getMovableSquares(true);
-            for(Vector2 v : possiblePositions) {
-                Piece target = super.board.getPieceAtPosition(v);
-                if(target == null) {
-                    if(highScore == 0) possibleMoves.add(new Move(p, v));
-                } else {
-                    if(target.getValue() > highScore) {
-                        possibleMoves.clear();
-                        possibleMoves.add(new Move(p, v));
-                        highScore = target.getValue();
-                    }
-                }
+        MoveList legalMoves = super.getLegalMoves();
+        for(int i = 0; i < legalMoves.size(); i++) {
+            int m = legalMoves.get(i);
+            int score = PackedMove.isCapture(m) || PackedMove.isPromotion(m) ? super.board.staticExchange(m) : 0;
+            if(score > highScore) {
+                this.possibleMoves.clear();
+                highScore = score;
             }
+            if(score == highScore) this.possibleMoves.add(m);
         }
 
-        return possibleMoves.get(randomGenerator.nextInt(possibleMoves.size()));
+        int move = this.possibleMoves.get(randomGenerator.nextInt(this.possibleMoves.size()));
+        super.setBestMoveSoFar(move);
+
+        return super.toMove(move);
     }
 
     @Override
@@ -1,5 +1,7 @@
 package com.ben9583.chess_ai.ai.models;
 
+import com.ben9583.chess_ai.ai.utils.BoardBatch;
+import com.ben9583.chess_ai.ai.utils.ModelCheckpoint;
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
 import org.deeplearning4j.nn.conf.CNN2DFormat;
@@ -11,6 +13,7 @@ import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -19,9 +22,11 @@ import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Random;
 
 /**
@@ -129,55 +134,59 @@ public class NeuralAgent extends EvalAgent{
     }
 
     /**
-     * Sets the gradient of this agent's model randomly and
-     * mutates the parameters using the gradient.
+     * Loads the parameter data from path into this agent. The file may be a ModelCheckpoint,
+     * or the serialized Gradient older versions saved, which is loaded as this model's gradient.
+     * A file that is there but can't be loaded, for example because its checksum doesn't match,
+     * is an error rather than a missing file, so callers don't go on to overwrite it.
+     * @param path Path to the .dat file containing the parameters.
+     * @return True if the load was successful, false if there is no file at path.
+     * @throws UncheckedIOException If the file is corrupt, truncated or can't be read.
      */
-    public void mutate() {
-        Gradient grad = new DefaultGradient();
-        grad.setGradientFor("0_W", Nd4j.rand(16, 12, 3, 3).sub(0.5).mul(10));
-        grad.setGradientFor("2_W", Nd4j.rand(32, 16, 3, 3).sub(0.5).mul(10));
-        grad.setGradientFor("4_W", Nd4j.rand(32, 128).sub(0.5).mul(10));
-        grad.setGradientFor("5_W", Nd4j.rand(128, 1).sub(0.5).mul(10));
-        grad.setGradientFor("0_b", Nd4j.rand(16).sub(0.5).mul(10));
-        grad.setGradientFor("2_b", Nd4j.rand(32).sub(0.5).mul(10));
-        grad.setGradientFor("4_b", Nd4j.rand(128).sub(0.5).mul(10));
-        grad.setGradientFor("5_b", Nd4j.rand(1).sub(0.5).mul(10));
-
-        this.getModel().update(grad);
+    public boolean loadDataFromFile(String path) {
+        if(this.model == null) throw new RuntimeException("Model for " + this + " is not yet initialized, but tried to use anyway.");
+        if(!Files.exists(Path.of(path))) return false;
+
+        if(ModelCheckpoint.isCheckpoint(Path.of(path))) {
+            try {
+                this.loadCheckpoint(ModelCheckpoint.open(Path.of(path)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not load the checkpoint at " + path + ".", e);
+            }
+
+            return true;
+        }
+
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(path))) {
+            Gradient data = (Gradient) ois.readObject();
+            this.model.setGradient(data);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new UncheckedIOException("Could not load " + path + ": it is neither a checkpoint nor an older saved gradient.", e instanceof IOException io ? io : new IOException(e));
+        }
+
+        return true;
     }
 
     /**
-     * Loads the parameter data from path into this agent.
-     * @param path Path to the .dat file containing the INDArray for the parameters.
-     * @return True if the load was successful, false otherwise.
+     * Copies the parameters of checkpoint into this agent's model. One checkpoint can be loaded into any number of agents.
+     * @param checkpoint Open checkpoint of a model of the same shape
      */
-    public boolean loadDataFromFile(String path) {
-        try {
-            FileInputStream fis = new FileInputStream(path);
-            ObjectInputStream ois = new ObjectInputStream(fis);
-            Gradient data = (Gradient) new ObjectInputStream(new FileInputStream(path)).readObject();
-            this.getModel().setGradient(data);
-            fis.close();
-            ois.close();
-        } catch (Exception e) {
-            return false;
-        }
+    public void loadCheckpoint(@NotNull ModelCheckpoint checkpoint) {
+        if(this.model == null) throw new RuntimeException("Model for " + this + " is not yet initialized, but tried to use anyway.");
 
-        return true;
+        checkpoint.loadInto(this.model);
     }
 
     /**
-     * Saves the parameter data from this agent to path.
-     * @param path Path to the .dat file to save the INDArray for the parameters.
+     * Saves the parameters of this agent to path as a ModelCheckpoint.
+     * The file is only replaced once the new one is completely written.
+     * @param path Path to the .dat file to save the parameters to.
      * @return True if the save was successful, false otherwise.
      */
     public boolean saveDataToFile(String path) {
+        if(this.model == null) throw new RuntimeException("Model for " + this + " is not yet initialized, but tried to use anyway.");
+
         try {
-            FileOutputStream fos = new FileOutputStream(path);
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(this.getModel().getGradient());
-            fos.close();
-            oos.close();
+            ModelCheckpoint.save(this.model, Path.of(path));
         } catch (Exception e) {
             return false;
         }
@@ -186,11 +195,11 @@ public class NeuralAgent extends EvalAgent{
     }
 
     @Override
-    public float[] evaluatePositions(float[][][][] boards) {
+    public float[] evaluatePositions(@NotNull BoardBatch batch) {
         if(this.model == null) throw new RuntimeException("Model for " + this + " is not yet initialized, but tried to use anyway.");
+        if(batch.size() == 0) return new float[0];
 
-        INDArray input = Nd4j.createFromArray(boards);
-        INDArray output = this.model.output(input);
+        INDArray output = this.model.output(batch.getInput());
 
         float[] out = output.toFloatVector();
         return out;
@@ -4,11 +4,7 @@ import com.ben9583.chess_ai.ai.AIAgent;
 import com.ben9583.chess_ai.ai.utils.Move;
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
-import com.ben9583.chess_ai.components.pieces.Piece;
-import com.ben9583.chess_ai.utils.Vector2;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.ben9583.chess_ai.components.bitboard.MoveList;
 import java.util.Random;
 
 /**
@@ -31,17 +27,12 @@ public class RandomAgent extends AIAgent {
 
     @Override
     public Move getNextMove() {
-        List<Move> possibleMoves = new ArrayList<>();
-        Piece[] myPieces = super.getMyPieces();
+        MoveList possibleMoves = super.getLegalMoves();
 
-        for(Piece p : myPieces) {
-            Vector2[] possiblePositions = p.getMovableSquares(true);
-            for(Vector2 v : possiblePositions) {
-                possibleMoves.add(new Move(p, v));
-            }
-        }
+        int move = possibleMoves.get(randomGenerator.nextInt(possibleMoves.size()));
+        super.setBestMoveSoFar(move);
 
-        return possibleMoves.get(randomGenerator.nextInt(possibleMoves.size()));
+        return super.toMove(move);
     }
 
     @Override
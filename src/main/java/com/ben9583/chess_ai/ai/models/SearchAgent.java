@@ -0,0 +1,354 @@
+package com.ben9583.chess_ai.ai.models;
+
+import com.ben9583.chess_ai.ai.AIAgent;
+import com.ben9583.chess_ai.ai.search.Evaluator;
+import com.ben9583.chess_ai.ai.search.MaterialEvaluator;
+import com.ben9583.chess_ai.ai.search.ParallelSearcher;
+import com.ben9583.chess_ai.ai.search.SearchLimits;
+import com.ben9583.chess_ai.ai.search.SearchOptions;
+import com.ben9583.chess_ai.ai.search.SearchResult;
+import com.ben9583.chess_ai.ai.search.TranspositionTable;
+import com.ben9583.chess_ai.ai.utils.CancellationToken;
+import com.ben9583.chess_ai.ai.utils.Move;
+import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.components.Player;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.MoveList;
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * AI Agent that looks several moves ahead with an alpha-beta search.
+ * How strong and how fast it is depends on the evaluator and the limits
+ * it is given: a material evaluator searches deep and fast, while an
+ * EvalAgent's network sees more but searches far fewer positions.
+ * Given more than one thread, it searches on all of them with Lazy SMP.
+ *
+ * With pondering switched on, the agent keeps searching on a background
+ * thread after its move, assuming the opponent replies with the move its
+ * search expected. If they do (a ponder hit), that search simply carries on
+ * as this agent's next search. If they don't (a ponder miss), it is stopped
+ * and a new search starts, still helped by what pondering left in the
+ * shared transposition table.
+ *
+ * Given a deadline, it searches for its usual time or until the deadline,
+ * whichever comes first. While it searches, getBestMoveSoFar gives the best
+ * move of the deepest iteration finished so far.
+ *
+ * See also: Searcher, ParallelSearcher
+ */
+public class SearchAgent extends AIAgent {
+    /* Searcher running on this agent's board. */
+    @NotNull
+    private final ParallelSearcher searcher;
+    /* When each search stops. */
+    @NotNull
+    private final SearchLimits limits;
+    /* Transposition table shared by the searcher and the ponder searcher. */
+    @NotNull
+    private final TranspositionTable table;
+    /* Evaluator and number of threads of the searcher, used to create the ponder searcher. */
+    @NotNull
+    private final Evaluator evaluator;
+    private final int threads;
+
+    /* Whether this agent searches on the opponent's time. */
+    private boolean ponderEnabled;
+    /* Copy of the board with the expected reply made on it, searched while pondering. Null until pondering first starts. */
+    @Nullable
+    private Board ponderBoard;
+    /* Searcher running on ponderBoard. */
+    @Nullable
+    private ParallelSearcher ponderSearcher;
+    /* Thread the ponder searcher runs on. */
+    @Nullable
+    private ExecutorService ponderExecutor;
+    /* Result of the search running while pondering, or null if this agent is not pondering. */
+    @Nullable
+    private Future<SearchResult> ponderResult;
+    /* Zobrist key of the position being pondered on. */
+    private long ponderKey;
+    /* Number of times the opponent did and didn't play the reply this agent pondered on. */
+    private int ponderHits;
+    private int ponderMisses;
+
+    /* Searcher deciding this agent's move right now, or null if it is not deciding one. */
+    @Nullable
+    private volatile ParallelSearcher activeSearcher;
+
+    /* Result of the last search, or null if this agent has not searched yet. */
+    @Nullable
+    private SearchResult lastResult;
+
+    public SearchAgent(Board board, Player player, @NotNull Evaluator evaluator, @NotNull SearchLimits limits, int threads) {
+        super(board, player);
+
+        this.table = new TranspositionTable();
+        this.searcher = new ParallelSearcher(board, evaluator, this.table, threads, 1);
+        this.limits = limits;
+        this.evaluator = evaluator;
+        this.threads = threads;
+        this.lastResult = null;
+        this.ponderEnabled = false;
+    }
+
+    public SearchAgent(Board board, Player player, @NotNull Evaluator evaluator, @NotNull SearchLimits limits) {
+        this(board, player, evaluator, limits, 1);
+    }
+
+    /**
+     * Creates an agent that counts material and searches for up to timeMillis milliseconds per move.
+     * @param board Board this agent will observe
+     * @param player Player this agent will play as
+     * @param timeMillis Time to search each move for, in milliseconds
+     */
+    public SearchAgent(Board board, Player player, long timeMillis) {
+        this(board, player, new MaterialEvaluator(), SearchLimits.ofTime(timeMillis));
+    }
+
+    @Override
+    public Move getNextMove() {
+        return this.getNextMove(AIAgent.NO_DEADLINE, new CancellationToken());
+    }
+
+    @Override
+    public Move getNextMove(long deadlineNanos, @NotNull CancellationToken token) {
+        super.setBestMoveSoFar(PackedMove.NONE);
+
+        long timeMillis = this.limits.timeMillis();
+        if(deadlineNanos != AIAgent.NO_DEADLINE) timeMillis = Math.max(1, Math.min(timeMillis, (deadlineNanos - System.nanoTime()) / 1_000_000));
+
+        SearchResult pondered = this.finishPondering(timeMillis, token);
+        if(pondered != null) {
+            this.lastResult = pondered;
+        } else {
+            SearchLimits moveLimits = timeMillis == this.limits.timeMillis() ? this.limits : new SearchLimits(this.limits.depth(), timeMillis, this.limits.nodes());
+            this.activeSearcher = this.searcher;
+            try {
+                this.lastResult = this.searcher.search(moveLimits, token);
+            } finally {
+                this.activeSearcher = null;
+            }
+        }
+        if(this.lastResult.move() == PackedMove.NONE) throw new IllegalStateException("Tried to get the next move for " + super.player + ", but there are no legal moves.");
+
+        super.setBestMoveSoFar(this.lastResult.move());
+        return super.toMove(this.lastResult.move());
+    }
+
+    @Override
+    public int getBestMoveSoFar() {
+        ParallelSearcher active = this.activeSearcher;
+        int move = active != null ? active.getBestMoveSoFar() : PackedMove.NONE;
+
+        return move != PackedMove.NONE ? move : super.getBestMoveSoFar();
+    }
+
+    @Override
+    public String promote() {
+        if(this.lastResult == null || !PackedMove.isPromotion(this.lastResult.move())) return "Queen";
+
+        return switch(PackedMove.promotionType(this.lastResult.move())) {
+            case Bitboards.KNIGHT -> "Knight";
+            case Bitboards.BISHOP -> "Bishop";
+            case Bitboards.ROOK -> "Rook";
+            default -> "Queen";
+        };
+    }
+
+    @Override
+    public boolean shouldResign() {
+        return false;
+    }
+
+    @Override
+    public void startPondering() {
+        if(!this.ponderEnabled || this.ponderResult != null || this.lastResult == null) return;
+        if(super.board.isGameOver() || super.board.awaitingPromotion() || super.board.getWhoseTurn() == super.player) return;
+
+        int reply = this.lastResult.ponderMove();
+        if(reply == PackedMove.NONE) return;
+        MoveList replies = super.getLegalMoves();
+        if(!replies.contains(reply)) return;
+
+        if(this.ponderBoard == null) {
+            this.ponderBoard = new Board();
+            this.ponderSearcher = new ParallelSearcher(this.ponderBoard, this.evaluator, this.table, this.threads, 1);
+            this.ponderSearcher.setOptions(this.searcher.getOptions());
+            this.ponderExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ponder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        this.ponderBoard.copyFrom(super.board);
+        this.ponderBoard.makeMove(reply);
+        this.ponderKey = this.ponderBoard.getZobristKey();
+
+        // Ponder until the opponent moves, however long that takes.
+        SearchLimits ponderLimits = new SearchLimits(this.limits.depth(), Long.MAX_VALUE, this.limits.nodes());
+        ParallelSearcher ponderSearcher = this.ponderSearcher;
+        this.ponderResult = Objects.requireNonNull(this.ponderExecutor).submit(() -> ponderSearcher.search(ponderLimits));
+    }
+
+    @Override
+    public void stopPondering() {
+        if(this.ponderResult == null) return;
+
+        this.stopPonderSearch();
+    }
+
+    /**
+     * Ends pondering now that the opponent has moved. On a ponder hit, the ponder search is given
+     * timeMillis from now, or until token is cancelled, and its result is returned. On a miss it is stopped.
+     * @param timeMillis Time the ponder search may carry on for on a hit, in milliseconds
+     * @param token Token that stops the ponder search early when cancelled
+     * @return Result of the ponder search on a hit, or null if it can't be used
+     */
+    @Nullable
+    private SearchResult finishPondering(long timeMillis, @NotNull CancellationToken token) {
+        if(this.ponderResult == null) return null;
+
+        if(super.board.getZobristKey() != this.ponderKey) {
+            this.ponderMisses++;
+            this.stopPonderSearch();
+            return null;
+        }
+
+        this.ponderHits++;
+        this.activeSearcher = this.ponderSearcher;
+        SearchResult result;
+        try {
+            result = this.awaitPonderSearch(System.nanoTime() + timeMillis * 1_000_000, token);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.stopPonderSearch();
+            return null;
+        } catch(ExecutionException e) {
+            this.ponderResult = null;
+            throw new IllegalStateException("Pondering failed.", e.getCause());
+        } finally {
+            this.activeSearcher = null;
+        }
+
+        if(result.move() == PackedMove.NONE || !super.getLegalMoves().contains(result.move())) return null;
+        return result;
+    }
+
+    /**
+     * Waits for the ponder search to finish on its own until deadlineNanos or until token is cancelled,
+     * then stops it. Waits a little at a time so a cancelled token is noticed quickly.
+     */
+    private SearchResult awaitPonderSearch(long deadlineNanos, CancellationToken token) throws InterruptedException, ExecutionException {
+        Future<SearchResult> future = Objects.requireNonNull(this.ponderResult);
+
+        while(!token.isCancelled()) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if(remaining <= 0) break;
+            try {
+                SearchResult result = future.get(Math.min(remaining, 10_000_000), TimeUnit.NANOSECONDS);
+                this.ponderResult = null;
+                return result;
+            } catch(TimeoutException ignored) {
+                // Not finished yet, so check the token and wait again.
+            }
+        }
+
+        return this.stopPonderSearch();
+    }
+
+    /**
+     * Stops the ponder search, waits for it to finish and returns its result.
+     * The stop is repeated until the search ends, in case it had not started when first stopped.
+     */
+    private SearchResult stopPonderSearch() {
+        Future<SearchResult> future = Objects.requireNonNull(this.ponderResult);
+        this.ponderResult = null;
+
+        while(true) {
+            Objects.requireNonNull(this.ponderSearcher).stop();
+            try {
+                return future.get(10, TimeUnit.MILLISECONDS);
+            } catch(TimeoutException ignored) {
+                // Not stopped yet, so stop it again.
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Tried to stop pondering, but was interrupted.", e);
+            } catch(ExecutionException e) {
+                throw new IllegalStateException("Pondering failed.", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Switches pondering on or off. Switching it off stops any pondering in progress.
+     * @param ponderEnabled Whether to search on the opponent's time
+     */
+    public void setPondering(boolean ponderEnabled) {
+        this.ponderEnabled = ponderEnabled;
+        if(!ponderEnabled) this.stopPondering();
+    }
+
+    /**
+     * Stops pondering and the threads this agent searches on. The agent can still move afterwards,
+     * but only searching on the calling thread and without pondering.
+     */
+    public void shutdown() {
+        this.setPondering(false);
+        this.searcher.shutdown();
+        if(this.ponderSearcher != null) this.ponderSearcher.shutdown();
+        if(this.ponderExecutor != null) this.ponderExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the number of times the opponent played the reply this agent pondered on.
+     * @return Number of ponder hits
+     */
+    public int getPonderHits() {
+        return this.ponderHits;
+    }
+
+    /**
+     * Returns the number of times the opponent played something other than the reply this agent pondered on.
+     * @return Number of ponder misses
+     */
+    public int getPonderMisses() {
+        return this.ponderMisses;
+    }
+
+    /**
+     * Switches the optional features of this agent's search on or off, from its next move on.
+     * @param options Features to use
+     */
+    public void setSearchOptions(@NotNull SearchOptions options) {
+        this.searcher.setOptions(options);
+        if(this.ponderSearcher != null) this.ponderSearcher.setOptions(options);
+    }
+
+    /**
+     * Returns the number of threads this agent searches on.
+     * @return The number of threads
+     */
+    public int getThreads() {
+        return this.searcher.getThreads();
+    }
+
+    /**
+     * Returns the result of the last search, including its depth, score and speed.
+     * @return The last search result, or null if this agent has not moved yet
+     */
+    @Nullable
+    public SearchResult getLastResult() {
+        return this.lastResult;
+    }
+}
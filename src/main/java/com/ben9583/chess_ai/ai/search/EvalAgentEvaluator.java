@@ -0,0 +1,65 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.ai.models.EvalAgent;
+import com.ben9583.chess_ai.ai.utils.BoardBatch;
+import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.components.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Evaluator that asks an EvalAgent to score positions, so its evaluation can be used in a search.
+ * EvalAgent scores are floats from the point of view of the agent's player, where
+ * neutral is given by center. They are shifted and scaled into centipawns for the
+ * player whose turn it is.
+ * The agent's network is not thread-safe, so this should only be searched with on one thread.
+ */
+public class EvalAgentEvaluator implements Evaluator {
+    /* Agent whose evaluatePositions scores positions. */
+    @NotNull
+    private final EvalAgent agent;
+    /* Player the agent's scores favor. */
+    @NotNull
+    private final Player player;
+    /* Score the agent gives an even position. */
+    private final float center;
+    /* Centipawns per unit of the agent's score. */
+    private final float scale;
+    /* Batch the position being evaluated is encoded into, reused every evaluation. */
+    @NotNull
+    private final BoardBatch batch;
+
+    /**
+     * Creates an evaluator using agent's scores.
+     * @param agent Agent to score positions with
+     * @param player Player the agent plays as, whose point of view its scores are from
+     * @param center Score the agent gives an even position, for example 0.5 for a sigmoid output
+     * @param scale Centipawns per unit of the agent's score
+     */
+    public EvalAgentEvaluator(@NotNull EvalAgent agent, @NotNull Player player, float center, float scale) {
+        this.agent = agent;
+        this.player = player;
+        this.center = center;
+        this.scale = scale;
+        this.batch = new BoardBatch(1);
+    }
+
+    /**
+     * Creates an evaluator using the scores of an agent with a sigmoid output,
+     * mapping its range of 0 to 1 onto -10 to +10 pawns.
+     * @param agent Agent to score positions with
+     * @param player Player the agent plays as, whose point of view its scores are from
+     */
+    public EvalAgentEvaluator(@NotNull EvalAgent agent, @NotNull Player player) {
+        this(agent, player, 0.5f, 2000.0f);
+    }
+
+    @Override
+    public int evaluate(@NotNull Board board) {
+        this.batch.clear();
+        this.batch.add(board);
+        float eval = this.agent.evaluatePositions(this.batch)[0];
+        int score = Math.round((eval - this.center) * this.scale);
+
+        return board.getWhoseTurn().equals(this.player) ? score : -score;
+    }
+}
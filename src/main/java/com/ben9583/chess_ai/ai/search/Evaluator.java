@@ -0,0 +1,21 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.components.Board;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Scores positions for a search.
+ * Scores are in centipawns (hundredths of a pawn) from the point of view
+ * of the player whose turn it is, so a higher score is better for them.
+ * A ParallelSearcher calls one evaluator from several threads at once,
+ * so evaluators used there must be thread-safe.
+ */
+public interface Evaluator {
+    /**
+     * Scores the current position of board.
+     * The board may be in the middle of a search, so it must not be changed.
+     * @param board Board to evaluate
+     * @return Score of the position for the player whose turn it is
+     */
+    int evaluate(@NotNull Board board);
+}
@@ -0,0 +1,40 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
+
+/**
+ * The outcome of looking for a forced mate with a MateSolver.
+ * @param status Whether a mate was proven, disproven, or neither before the solver was stopped
+ * @param move First move of the mate, or PackedMove.NONE unless it was proven
+ * @param mateIn Number of moves the shortest mate found takes, or 0 unless it was proven
+ * @param proofSize Number of positions in the proof: every reply of the defender and one answer of the attacker to each. 0 unless it was proven
+ * @param nodes Number of positions expanded
+ * @param timeNanos Wall-clock time the solver took, in nanoseconds
+ */
+public record MateResult(Status status, int move, int mateIn, long proofSize, long nodes, long timeNanos) {
+    /**
+     * Whether the solver found a mate.
+     */
+    public enum Status {
+        /* The side to move mates in mateIn moves, whatever the defender does. */
+        PROVEN,
+        /* The side to move can't force mate in the number of moves it was given. */
+        DISPROVEN,
+        /* The solver was stopped or ran out of nodes first. */
+        UNKNOWN
+    }
+
+    /**
+     * Returns how many positions the solver expanded per second.
+     * @return Nodes per second
+     */
+    public double nodesPerSecond() {
+        return this.nodes * 1e9 / Math.max(1, this.timeNanos);
+    }
+
+    @Override
+    public String toString() {
+        return (this.status == Status.PROVEN ? "mate in " + this.mateIn + " move " + PackedMove.toString(this.move) + " proof size " + this.proofSize : this.status.toString().toLowerCase())
+                + " nodes " + this.nodes + " nps " + Math.round(this.nodesPerSecond());
+    }
+}
@@ -0,0 +1,307 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.components.bitboard.MoveGenerator;
+import com.ben9583.chess_ai.components.bitboard.MoveList;
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
+import com.ben9583.chess_ai.components.bitboard.Position;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Proves or disproves that the side to move can force mate within a number
+ * of moves, with depth-first proof-number search (df-pn).
+ *
+ * Every position gets a proof number, the least number of positions still to
+ * be looked at to prove the mate, and a disproof number, the least to prove
+ * there is none. Where the attacker is to move, one mating move is enough,
+ * so the proof number is the smallest of its children's and the disproof
+ * number their sum. Where the defender is to move, every reply must be mated,
+ * so it is the other way around. The solver always expands the child that
+ * most cheaply settles the question, and goes back up only once that child
+ * is no longer the cheapest, keeping what it learned in a ProofTable. Unlike
+ * alpha-beta, it needs no evaluator and spends almost nothing on lines where
+ * the defender has plenty of escapes, which makes it much faster at long
+ * forced mates.
+ *
+ * A position is mated when the side to move has no legal moves and is in
+ * check, as in Board.isCheckmate. Stalemate, running out of moves, repeating
+ * a position and the 50-move rule all count as no mate. A repetition depends
+ * on how the position was reached, so one that was disproven this way can
+ * occasionally hide a mate reached through another move order. A proven mate
+ * is always a real one.
+ *
+ * See also: ProofTable, MateResult
+ */
+public class MateSolver {
+    /* Longest mate that can be looked for, in moves. */
+    public static final int MAX_MATE_MOVES = 60;
+
+    /* Deepest the solver can go, in half-moves. */
+    private static final int MAX_PLY = 2 * MAX_MATE_MOVES;
+    /* Proof or disproof number of a position that can't be proven or disproven. */
+    private static final int INFINITY = ProofTable.INFINITY;
+    /* Number of nodes between checks of the node limit. Must be a power of two. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /* Board being solved. Moves are made and unmade on it, and it is left as it was. */
+    @NotNull
+    private final Board board;
+    /* Bitboards of board. */
+    @NotNull
+    private final Position position;
+    /* Proof and disproof numbers of positions looked at so far. */
+    @NotNull
+    private final ProofTable table;
+    /* Move list for each ply, reused by every search. */
+    @NotNull
+    private final MoveList[] moveLists;
+    /* Zobrist key, proof number and disproof number after each move of the list of each ply. */
+    @NotNull
+    private final long[][] childKeys;
+    @NotNull
+    private final int[][] childProofs;
+    @NotNull
+    private final int[][] childDisproofs;
+
+    /* Number of positions expanded by the current search. */
+    private long nodes;
+    /* Number of positions the current search may expand. */
+    private long nodeLimit;
+    /* Whether the current search was stopped before it settled the question. */
+    private volatile boolean stopped;
+    /* Proof and disproof number of the position the last call to search expanded. */
+    private int proof;
+    private int disproof;
+
+    /**
+     * Creates a solver for board.
+     * @param board Board to look for mates on
+     * @param table Table to keep proof and disproof numbers in, which bounds how much memory the solver uses
+     */
+    public MateSolver(@NotNull Board board, @NotNull ProofTable table) {
+        this.board = board;
+        this.position = board.getBitboards();
+        this.table = table;
+
+        this.moveLists = new MoveList[MAX_PLY + 1];
+        for(int i = 0; i < this.moveLists.length; i++) this.moveLists[i] = new MoveList();
+        this.childKeys = new long[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+        this.childProofs = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+        this.childDisproofs = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    }
+
+    /**
+     * Creates a solver for board with its own proof table of the default size.
+     * @param board Board to look for mates on
+     */
+    public MateSolver(@NotNull Board board) {
+        this(board, new ProofTable());
+    }
+
+    /**
+     * Looks for a forced mate by the side to move in at most moves moves. Mates in 1, 2 and so on
+     * are looked for in turn, so the mate found is the shortest one.
+     * @param moves Most moves the mate may take, from 1 to MAX_MATE_MOVES
+     * @param nodeLimit Number of positions the solver may expand before giving up
+     * @return Whether there is a mate, its first move and its length
+     */
+    @NotNull
+    public MateResult solve(int moves, long nodeLimit) {
+        if(moves < 1 || moves > MAX_MATE_MOVES) throw new IllegalArgumentException("Tried to solve a mate in " + moves + ", but the number of moves must be from 1 to " + MAX_MATE_MOVES + ".");
+        if(nodeLimit <= 0) throw new IllegalArgumentException("Tried to solve a mate with " + nodeLimit + " nodes, but the node limit must be positive.");
+
+        long start = System.nanoTime();
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit;
+        this.stopped = false;
+
+        for(int mateIn = 1; mateIn <= moves; mateIn++) {
+            int depth = 2 * mateIn - 1;
+            this.search(0, depth, INFINITY, INFINITY);
+            if(this.stopped) break;
+            if(this.proof != 0) continue;
+
+            int move = this.provenMove(0);
+            long proofSize = this.proofSize(0, depth);
+            if(this.stopped) proofSize = 0;
+            return new MateResult(MateResult.Status.PROVEN, move, mateIn, proofSize, this.nodes, System.nanoTime() - start);
+        }
+
+        MateResult.Status status = this.stopped ? MateResult.Status.UNKNOWN : MateResult.Status.DISPROVEN;
+        return new MateResult(status, PackedMove.NONE, 0, 0, this.nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Stops the current search as soon as possible. Can be called from any thread.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * Expands the position on the board until its proof number reaches proofThreshold or its
+     * disproof number reaches disproofThreshold, and saves both in proof, disproof and the table.
+     * @param ply Number of half-moves from the root. The attacker is to move on even plies
+     * @param depth Number of half-moves left to mate in
+     * @param proofThreshold Proof number at which to go back up
+     * @param disproofThreshold Disproof number at which to go back up
+     */
+    private void search(int ply, int depth, int proofThreshold, int disproofThreshold) {
+        this.nodes++;
+        if((this.nodes & (CHECK_INTERVAL - 1)) == 0 && this.nodes >= this.nodeLimit) this.stopped = true;
+
+        long key = this.position.getKey();
+        boolean attacking = (ply & 1) == 0;
+        MoveList moves = this.moveLists[ply];
+        this.board.getLegalMoves(moves);
+
+        if(moves.isEmpty()) {
+            boolean mated = this.position.isInCheck() && !attacking;
+            this.settle(key, depth, mated);
+            return;
+        }
+        if((!attacking && depth == 0) || (ply > 0 && this.isDraw())) {
+            this.settle(key, depth, false);
+            return;
+        }
+
+        long[] keys = this.childKeys[ply];
+        int[] proofs = this.childProofs[ply];
+        int[] disproofs = this.childDisproofs[ply];
+        for(int i = 0; i < moves.size(); i++) {
+            this.board.makeMove(moves.get(i));
+            keys[i] = this.position.getKey();
+            this.board.unmakeMove();
+            this.lookUp(keys[i], depth - 1, proofs, disproofs, i);
+        }
+
+        long startNodes = this.nodes;
+        int proof, disproof;
+        while(true) {
+            // Where the attacker is to move, the numbers to minimise are the proof numbers, otherwise the disproof numbers.
+            int[] minimised = attacking ? proofs : disproofs;
+            int[] summed = attacking ? disproofs : proofs;
+
+            int best = 0;
+            int min = INFINITY, secondMin = INFINITY, sum = 0;
+            for(int i = 0; i < moves.size(); i++) {
+                if(minimised[i] < min) {
+                    secondMin = min;
+                    min = minimised[i];
+                    best = i;
+                } else if(minimised[i] < secondMin) {
+                    secondMin = minimised[i];
+                }
+                sum = Math.min(INFINITY, sum + summed[i]);
+            }
+
+            proof = attacking ? min : sum;
+            disproof = attacking ? sum : min;
+            if(proof >= proofThreshold || disproof >= disproofThreshold || this.stopped) break;
+
+            // Search the best child until it stops being the best, or until this position would pass its thresholds.
+            int childProofThreshold, childDisproofThreshold;
+            if(attacking) {
+                childProofThreshold = Math.min(proofThreshold, secondMin + 1);
+                childDisproofThreshold = disproofThreshold - disproof + disproofs[best];
+            } else {
+                childProofThreshold = proofThreshold - proof + proofs[best];
+                childDisproofThreshold = Math.min(disproofThreshold, secondMin + 1);
+            }
+
+            this.board.makeMove(moves.get(best));
+            this.search(ply + 1, depth - 1, childProofThreshold, childDisproofThreshold);
+            this.board.unmakeMove();
+
+            proofs[best] = this.proof;
+            disproofs[best] = this.disproof;
+        }
+
+        this.proof = proof;
+        this.disproof = disproof;
+        this.table.store(key, depth, proof, disproof, this.nodes - startNodes);
+    }
+
+    /**
+     * Saves a position that is settled without expanding it, as proven if mated and disproven otherwise.
+     */
+    private void settle(long key, int depth, boolean mated) {
+        this.proof = mated ? 0 : INFINITY;
+        this.disproof = mated ? INFINITY : 0;
+        this.table.store(key, depth, this.proof, this.disproof, 1);
+    }
+
+    /**
+     * Looks up the numbers of the position with key in the table and writes them to proofs and disproofs at index.
+     * A mate proven with fewer half-moves left still holds with more, and one disproven with more still
+     * fails with fewer. Anything else only counts if it was found with exactly depth half-moves left.
+     * Positions not in the table start at 1 and 1.
+     */
+    private void lookUp(long key, int depth, int[] proofs, int[] disproofs, int index) {
+        long entry = this.table.probe(key);
+        proofs[index] = 1;
+        disproofs[index] = 1;
+        if(entry == ProofTable.NO_ENTRY) return;
+
+        int entryDepth = ProofTable.depth(entry);
+        int entryProof = ProofTable.proof(entry);
+        int entryDisproof = ProofTable.disproof(entry);
+        if((entryProof == 0 && entryDepth <= depth) || (entryDisproof == 0 && entryDepth >= depth) || entryDepth == depth) {
+            proofs[index] = entryProof;
+            disproofs[index] = entryDisproof;
+        }
+    }
+
+    /**
+     * Returns a move of the attacker at ply whose mate was proven by the last search there.
+     */
+    private int provenMove(int ply) {
+        MoveList moves = this.moveLists[ply];
+        for(int i = 0; i < moves.size(); i++) {
+            if(this.childProofs[ply][i] == 0) return moves.get(i);
+        }
+
+        return PackedMove.NONE;
+    }
+
+    /**
+     * Returns the number of positions in the proof that the position on the board, with depth
+     * half-moves left, is mated: one proven answer to every position where the attacker is to move,
+     * and every reply where the defender is. Positions lost from the table are proven again.
+     * @param ply Number of half-moves from the root
+     * @param depth Number of half-moves left to mate in
+     * @return Size of the proof tree, counting transposed positions every time they are reached
+     */
+    private long proofSize(int ply, int depth) {
+        if(this.stopped) return 0;
+
+        // Expanding again settles at once from the table, unless the proof was pushed out of it.
+        this.search(ply, depth, INFINITY, INFINITY);
+        MoveList moves = this.moveLists[ply];
+        if(this.proof != 0 || moves.isEmpty()) return 1;
+
+        if((ply & 1) == 0) {
+            int move = this.provenMove(ply);
+            this.board.makeMove(move);
+            long size = 1 + this.proofSize(ply + 1, depth - 1);
+            this.board.unmakeMove();
+            return size;
+        }
+
+        long size = 1;
+        for(int i = 0; i < moves.size(); i++) {
+            this.board.makeMove(moves.get(i));
+            size += this.proofSize(ply + 1, depth - 1);
+            this.board.unmakeMove();
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns whether the position on the board is a draw by the 50-move rule or repeats an earlier one.
+     */
+    private boolean isDraw() {
+        return this.position.getHalfMoveClock() >= Board.HALF_MOVE_CLOCK_LIMIT || this.position.countRepetitions() > 0;
+    }
+}
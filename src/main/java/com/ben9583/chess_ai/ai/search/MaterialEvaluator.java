@@ -0,0 +1,36 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.Position;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Evaluator that only counts material, using Piece.getValue scaled to centipawns, king 0.
+ * Very fast, so searches using it reach the greatest depth.
+ */
+public class MaterialEvaluator implements Evaluator {
+    /* Value of each type of piece in centipawns, indexed by Bitboards type. Kings are never captured, so they are worth nothing. */
+    private static final int[] values = { 100, 300, 300, 500, 900, 0 };
+
+    /**
+     * Returns the value of a type of piece in centipawns.
+     * @param type Type of piece, for example Bitboards.PAWN
+     * @return Value of the piece in centipawns
+     */
+    public static int valueOf(int type) {
+        return values[type];
+    }
+
+    @Override
+    public int evaluate(@NotNull Board board) {
+        Position position = board.getBitboards();
+
+        int score = 0;
+        for(int type = Bitboards.PAWN; type < Bitboards.KING; type++) {
+            score += values[type] * (Long.bitCount(position.getPieces(Bitboards.WHITE, type)) - Long.bitCount(position.getPieces(Bitboards.BLACK, type)));
+        }
+
+        return position.getSideToMove() == Bitboards.WHITE ? score : -score;
+    }
+}
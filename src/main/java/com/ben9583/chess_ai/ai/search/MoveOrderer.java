@@ -0,0 +1,223 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.MoveGenerator;
+import com.ben9583.chess_ai.components.bitboard.MoveList;
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
+import com.ben9583.chess_ai.components.bitboard.Position;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Orders moves so the ones most likely to be best are searched first,
+ * which is what lets alpha-beta prune most of the tree. In order:
+ * - the hash move, the best move saved for the position
+ * - captures that don't lose material by static exchange evaluation, the most
+ *   valuable victim first and then the least valuable attacker (MVV-LVA), and queen promotions
+ * - the two killer moves of the ply, quiet moves that caused a cutoff at the same ply elsewhere
+ * - the counter-move, the quiet move that last refuted the opponent's previous move
+ * - other quiet moves, by how often they have caused cutoffs (the history heuristic)
+ * - captures that lose material, then underpromotions
+ *
+ * The orderer learns from the cutoffs reported with recordCutoff, so one
+ * orderer should be kept for every search thread and reused between searches.
+ */
+public class MoveOrderer {
+    /* Base scores of each kind of move. Every kind scores above the next, whatever its own score is. */
+    private static final int HASH_MOVE = 1 << 30;
+    private static final int GOOD_CAPTURE = 1 << 24;
+    private static final int FIRST_KILLER = 1 << 22;
+    private static final int SECOND_KILLER = FIRST_KILLER - 1;
+    private static final int COUNTER_MOVE = FIRST_KILLER - 2;
+    private static final int BAD_CAPTURE = -(1 << 22);
+    private static final int UNDERPROMOTION = -(1 << 24);
+
+    /* History scores stay between -HISTORY_MAX and HISTORY_MAX, below every killer. */
+    private static final int HISTORY_MAX = 1 << 14;
+
+    /* Score of each move in the move list at each ply, in the same order. */
+    private final int[][] scores;
+    /* Two killer moves at each ply. */
+    private final int[][] killers;
+    /* History score of each quiet move by side to move, from square and to square. */
+    private final int[][][] history;
+    /* Quiet move that last refuted each move, indexed by that move's from and to squares. */
+    private final int[] counterMoves;
+
+    /**
+     * Creates an orderer for searches up to maxPly half-moves deep.
+     * @param maxPly Deepest ply moves will be ordered at
+     */
+    public MoveOrderer(int maxPly) {
+        this.scores = new int[maxPly + 1][MoveGenerator.MAX_MOVES];
+        this.killers = new int[maxPly + 1][2];
+        this.history = new int[2][Bitboards.SQUARES][Bitboards.SQUARES];
+        this.counterMoves = new int[Bitboards.SQUARES * Bitboards.SQUARES];
+    }
+
+    /**
+     * Prepares for a new search. Killers from the last search are forgotten and history counts for half as much.
+     */
+    public void newSearch() {
+        for(int[] plyKillers : this.killers) Arrays.fill(plyKillers, PackedMove.NONE);
+        for(int[][] sideHistory : this.history) {
+            for(int[] fromHistory : sideHistory) {
+                for(int to = 0; to < fromHistory.length; to++) fromHistory[to] /= 2;
+            }
+        }
+    }
+
+    /**
+     * Forgets everything learned from earlier searches.
+     */
+    public void clear() {
+        this.newSearch();
+        for(int[][] sideHistory : this.history) {
+            for(int[] fromHistory : sideHistory) Arrays.fill(fromHistory, 0);
+        }
+        Arrays.fill(this.counterMoves, PackedMove.NONE);
+    }
+
+    /**
+     * Scores every move in moves, which must be the legal moves of position at ply.
+     * Take the moves in order with pickNext afterwards.
+     * @param board Board the moves were generated on
+     * @param moves Moves to score
+     * @param hashMove Move to search first, or PackedMove.NONE
+     * @param ply Number of half-moves from the root of the search
+     */
+    public void score(@NotNull Board board, @NotNull MoveList moves, int hashMove, int ply) {
+        Position position = board.getBitboards();
+        int[] plyScores = this.scores[ply];
+        int[] plyKillers = this.killers[ply];
+        int[][] sideHistory = this.history[position.getSideToMove()];
+        int counterMove = this.counterMoveTo(position.getLastMove());
+
+        for(int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score;
+
+            if(move == hashMove) {
+                score = HASH_MOVE;
+            } else if(PackedMove.isCapture(move) || PackedMove.isPromotion(move)) {
+                score = MoveOrderer.scoreTactical(board, position, move);
+            } else if(move == plyKillers[0]) {
+                score = FIRST_KILLER;
+            } else if(move == plyKillers[1]) {
+                score = SECOND_KILLER;
+            } else if(move == counterMove) {
+                score = COUNTER_MOVE;
+            } else {
+                score = sideHistory[PackedMove.from(move)][PackedMove.to(move)];
+            }
+
+            plyScores[i] = score;
+        }
+    }
+
+    /**
+     * Moves the best-scoring of the moves from index onwards to index, and returns it.
+     * Moves must have been scored with score at the same ply.
+     * @param moves Moves being searched
+     * @param index Number of moves already searched
+     * @param ply Number of half-moves from the root of the search
+     * @return The move to search next
+     */
+    public int pickNext(@NotNull MoveList moves, int index, int ply) {
+        int[] plyScores = this.scores[ply];
+
+        int best = index;
+        for(int i = index + 1; i < moves.size(); i++) {
+            if(plyScores[i] > plyScores[best]) best = i;
+        }
+
+        if(best != index) {
+            moves.swap(index, best);
+            int score = plyScores[index];
+            plyScores[index] = plyScores[best];
+            plyScores[best] = score;
+        }
+
+        return moves.get(index);
+    }
+
+    /**
+     * Learns from a move causing a beta cutoff. Quiet moves become killers and the counter-move
+     * to the previous move, and gain history, while quiet moves searched before them lose history.
+     * Captures and promotions are already searched early, so nothing is learned from them.
+     * @param position Position the move was made in
+     * @param moves Moves being searched, picked in order with pickNext
+     * @param index Index of the move that caused the cutoff
+     * @param ply Number of half-moves from the root of the search
+     * @param depth Depth the move was searched to
+     */
+    public void recordCutoff(@NotNull Position position, @NotNull MoveList moves, int index, int ply, int depth) {
+        int move = moves.get(index);
+        if(!MoveOrderer.isQuiet(move)) return;
+
+        int[] plyKillers = this.killers[ply];
+        if(plyKillers[0] != move) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = move;
+        }
+
+        int lastMove = position.getLastMove();
+        if(lastMove != PackedMove.NONE) this.counterMoves[PackedMove.from(lastMove) * Bitboards.SQUARES + PackedMove.to(lastMove)] = move;
+
+        int[][] sideHistory = this.history[position.getSideToMove()];
+        int bonus = Math.min(depth * depth, HISTORY_MAX);
+        MoveOrderer.updateHistory(sideHistory, move, bonus);
+        for(int i = 0; i < index; i++) {
+            int tried = moves.get(i);
+            if(MoveOrderer.isQuiet(tried)) MoveOrderer.updateHistory(sideHistory, tried, -bonus);
+        }
+    }
+
+    /**
+     * Returns whether move neither captures nor promotes.
+     * @param move A packed move
+     * @return Whether move is quiet
+     */
+    public static boolean isQuiet(int move) {
+        return !PackedMove.isCapture(move) && !PackedMove.isPromotion(move);
+    }
+
+    /**
+     * Returns the counter-move to lastMove, or PackedMove.NONE if there is none.
+     */
+    private int counterMoveTo(int lastMove) {
+        if(lastMove == PackedMove.NONE) return PackedMove.NONE;
+        return this.counterMoves[PackedMove.from(lastMove) * Bitboards.SQUARES + PackedMove.to(lastMove)];
+    }
+
+    /**
+     * Scores a capture or promotion by MVV-LVA. Captures that lose material by static exchange evaluation,
+     * and promotions to anything but a queen, are scored below every quiet move.
+     */
+    private static int scoreTactical(Board board, Position position, int move) {
+        if(PackedMove.isPromotion(move) && PackedMove.promotionType(move) != Bitboards.QUEEN) return UNDERPROMOTION;
+
+        int attacker = Bitboards.typeOf(position.pieceAt(PackedMove.from(move)));
+        int victim = PackedMove.flags(move) == PackedMove.EN_PASSANT ? Bitboards.PAWN
+                : PackedMove.isCapture(move) ? Bitboards.typeOf(position.pieceAt(PackedMove.to(move))) : -1;
+
+        int gain = victim == -1 ? 0 : MaterialEvaluator.valueOf(victim);
+        if(PackedMove.isPromotion(move)) gain += MaterialEvaluator.valueOf(Bitboards.QUEEN) - MaterialEvaluator.valueOf(Bitboards.PAWN);
+
+        int score = gain * 8 - attacker;
+        // Capturing a piece worth at least the attacker never loses material, so only cheaper victims need the exchange worked out.
+        if(victim != -1 && MaterialEvaluator.valueOf(victim) < MaterialEvaluator.valueOf(attacker) && board.staticExchange(move) < 0) return BAD_CAPTURE + score;
+        return GOOD_CAPTURE + score;
+    }
+
+    /**
+     * Adds bonus to the history of move, scaled down as it nears HISTORY_MAX so it never passes it.
+     */
+    private static void updateHistory(int[][] sideHistory, int move, int bonus) {
+        int[] fromHistory = sideHistory[PackedMove.from(move)];
+        int to = PackedMove.to(move);
+        fromHistory[to] += bonus - fromHistory[to] * Math.abs(bonus) / HISTORY_MAX;
+    }
+}
@@ -0,0 +1,91 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.PieceListener;
+import com.ben9583.chess_ai.components.bitboard.Position;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keeps the outputs of an NnueNetwork's first layer up to date with one
+ * Position, for each side. Listening to the position, it adds a feature's
+ * weights when a piece is put on a square and subtracts them when it is
+ * taken off, so making and unmaking a move each cost only a few features.
+ * When the position's pieces are replaced all at once it is worked out
+ * again from every piece.
+ *
+ * Also holds the scratch space the network's later layers use, so
+ * evaluating allocates nothing. Like its position, it should only be
+ * used on one thread at a time.
+ *
+ * See also: NnueNetwork, Position.setPieceListener
+ */
+public class NnueAccumulator implements PieceListener {
+    /* Network whose first layer this accumulates. */
+    @NotNull
+    private final NnueNetwork network;
+    /* Outputs of the first layer, seen from each color. */
+    @NotNull
+    private final short[][] values;
+
+    /* Scratch space for the network's later layers: the clipped first layer of both sides, and the two hidden layers. */
+    final int[] input;
+    final int[] hidden1;
+    final int[] hidden2;
+
+    /**
+     * Creates an accumulator for network, for an empty board until it is set as a position's listener.
+     * @param network Network whose first layer to accumulate
+     */
+    public NnueAccumulator(@NotNull NnueNetwork network) {
+        this.network = network;
+        this.values = new short[2][NnueNetwork.HIDDEN];
+        this.input = new int[2 * NnueNetwork.HIDDEN];
+        this.hidden1 = new int[NnueNetwork.L1_SIZE];
+        this.hidden2 = new int[NnueNetwork.L2_SIZE];
+
+        for(short[] side : this.values) network.resetAccumulator(side);
+    }
+
+    @Override
+    public void pieceAdded(int code, int square) {
+        for(int perspective = Bitboards.WHITE; perspective <= Bitboards.BLACK; perspective++) {
+            this.network.applyFeature(this.values[perspective], NnueNetwork.featureIndex(perspective, code, square), 1);
+        }
+    }
+
+    @Override
+    public void pieceRemoved(int code, int square) {
+        for(int perspective = Bitboards.WHITE; perspective <= Bitboards.BLACK; perspective++) {
+            this.network.applyFeature(this.values[perspective], NnueNetwork.featureIndex(perspective, code, square), -1);
+        }
+    }
+
+    @Override
+    public void piecesReset(@NotNull Position position) {
+        for(short[] side : this.values) this.network.resetAccumulator(side);
+
+        for(long bb = position.getOccupied(); bb != 0; bb &= bb - 1) {
+            int square = Long.numberOfTrailingZeros(bb);
+            this.pieceAdded(position.pieceAt(square), square);
+        }
+    }
+
+    /**
+     * Returns the network whose first layer this accumulates.
+     * @return The network
+     */
+    @NotNull
+    public NnueNetwork getNetwork() {
+        return this.network;
+    }
+
+    /**
+     * Returns the outputs of the first layer seen from perspective. The array is updated in place, so it should not be kept.
+     * @param perspective Color of the side seeing the board
+     * @return The outputs, NnueNetwork.HIDDEN of them
+     */
+    @NotNull
+    public short[] getValues(int perspective) {
+        return this.values[perspective];
+    }
+}
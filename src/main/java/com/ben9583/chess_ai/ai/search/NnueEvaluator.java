@@ -0,0 +1,51 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.components.bitboard.Position;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Evaluator that scores positions with an NnueNetwork. The first time it
+ * sees a board, it attaches an NnueAccumulator to the board's position,
+ * which from then on follows every move made and unmade on it. Evaluating
+ * is then only the network's small integer layers, cheap enough to call at
+ * every node of a deep search, unlike a full network run through ND4J.
+ *
+ * Every board gets its own accumulator, and ParallelSearcher searches a
+ * separate board on each thread, so this is thread-safe as long as each
+ * board is only searched on one thread at a time. An accumulator replaces
+ * any other piece listener the position had.
+ *
+ * See also: NnueNetwork, NnueAccumulator
+ */
+public class NnueEvaluator implements Evaluator {
+    /* Network scoring the positions. */
+    @NotNull
+    private final NnueNetwork network;
+
+    /**
+     * Creates an evaluator scoring positions with network.
+     * @param network Network to score positions with, which may be shared with other evaluators
+     */
+    public NnueEvaluator(@NotNull NnueNetwork network) {
+        this.network = network;
+    }
+
+    @Override
+    public int evaluate(@NotNull Board board) {
+        Position position = board.getBitboards();
+
+        return this.network.evaluate(this.accumulatorOf(position), position.getSideToMove());
+    }
+
+    /**
+     * Returns the accumulator following position for this evaluator's network, attaching a new one if there is none yet.
+     */
+    private NnueAccumulator accumulatorOf(Position position) {
+        if(position.getPieceListener() instanceof NnueAccumulator accumulator && accumulator.getNetwork() == this.network) return accumulator;
+
+        NnueAccumulator accumulator = new NnueAccumulator(this.network);
+        position.setPieceListener(accumulator);
+        return accumulator;
+    }
+}
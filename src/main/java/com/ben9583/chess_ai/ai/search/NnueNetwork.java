@@ -0,0 +1,298 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.ai.utils.ModelCheckpoint;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Weights of an efficiently updatable neural network (NNUE), and the
+ * small dense layers that turn its first layer into a score.
+ *
+ * The first layer has one input for every piece code on every square, seen
+ * from each side in turn: from Black's side the board is flipped and the
+ * colors swapped, so both sides see their own pieces the same way. Its
+ * output for each side is kept by an NnueAccumulator and updated as pieces
+ * are added and removed, so it costs a few hundred additions per move
+ * rather than a full multiplication. The side to move's half comes first,
+ * then the other side's, each clipped to 0 to ACTIVATION_MAX.
+ *
+ * The rest of the network is two hidden layers and an output, all in
+ * integers: int8 weights, int32 sums shifted back down by WEIGHT_SHIFT and
+ * clipped again. The output divided by OUTPUT_SCALE is the score in
+ * centipawns for the side to move.
+ *
+ * Weights are only read after construction, so one network can be shared
+ * by evaluators on any number of threads. They are saved and loaded as a
+ * ModelCheckpoint, one array of floats for each field, every value a whole
+ * number that fits the field's type.
+ *
+ * See also: NnueAccumulator, NnueEvaluator
+ */
+public class NnueNetwork {
+    /* Number of inputs of the first layer: one per piece code on every square. */
+    public static final int FEATURES = Bitboards.NUM_PIECE_CODES * Bitboards.SQUARES;
+    /* Number of outputs of the first layer for each side. */
+    public static final int HIDDEN = 64;
+    /* Number of outputs of the two dense hidden layers. */
+    public static final int L1_SIZE = 16;
+    public static final int L2_SIZE = 32;
+    /* Largest activation after clipping, which stands for 1.0. */
+    public static final int ACTIVATION_MAX = 127;
+    /* Right shift bringing the sums of a dense layer back to the scale of its inputs. */
+    public static final int WEIGHT_SHIFT = 6;
+    /* Divisor turning the output into centipawns. */
+    public static final int OUTPUT_SCALE = 16;
+
+    /* Names of the arrays of a checkpoint holding each field. */
+    private static final String FEATURE_WEIGHTS = "feature_weights";
+    private static final String FEATURE_BIASES = "feature_biases";
+    private static final String L1_WEIGHTS = "l1_weights";
+    private static final String L1_BIASES = "l1_biases";
+    private static final String L2_WEIGHTS = "l2_weights";
+    private static final String L2_BIASES = "l2_biases";
+    private static final String OUTPUT_WEIGHTS = "output_weights";
+    private static final String OUTPUT_BIAS = "output_bias";
+
+    /* Weights of the first layer, HIDDEN for each feature in turn. */
+    @NotNull
+    private final short[] featureWeights;
+    /* Biases of the first layer, which every accumulator starts from. */
+    @NotNull
+    private final short[] featureBiases;
+    /* Weights of the first hidden layer, 2 * HIDDEN for each output in turn, and its biases. */
+    @NotNull
+    private final byte[] l1Weights;
+    @NotNull
+    private final int[] l1Biases;
+    /* Weights of the second hidden layer, L1_SIZE for each output in turn, and its biases. */
+    @NotNull
+    private final byte[] l2Weights;
+    @NotNull
+    private final int[] l2Biases;
+    /* Weights and bias of the output. */
+    @NotNull
+    private final byte[] outputWeights;
+    private final int outputBias;
+
+    /**
+     * Creates a network from its weights, laid out as described on each field.
+     * The arrays are used as they are, not copied.
+     */
+    public NnueNetwork(@NotNull short[] featureWeights, @NotNull short[] featureBiases, @NotNull byte[] l1Weights, @NotNull int[] l1Biases,
+                       @NotNull byte[] l2Weights, @NotNull int[] l2Biases, @NotNull byte[] outputWeights, int outputBias) {
+        NnueNetwork.checkLength("feature weights", featureWeights.length, FEATURES * HIDDEN);
+        NnueNetwork.checkLength("feature biases", featureBiases.length, HIDDEN);
+        NnueNetwork.checkLength("first layer weights", l1Weights.length, L1_SIZE * 2 * HIDDEN);
+        NnueNetwork.checkLength("first layer biases", l1Biases.length, L1_SIZE);
+        NnueNetwork.checkLength("second layer weights", l2Weights.length, L2_SIZE * L1_SIZE);
+        NnueNetwork.checkLength("second layer biases", l2Biases.length, L2_SIZE);
+        NnueNetwork.checkLength("output weights", outputWeights.length, L2_SIZE);
+
+        this.featureWeights = featureWeights;
+        this.featureBiases = featureBiases;
+        this.l1Weights = l1Weights;
+        this.l1Biases = l1Biases;
+        this.l2Weights = l2Weights;
+        this.l2Biases = l2Biases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * Creates a network with small random weights, as a starting point for training.
+     * @param seed Seed of the random weights
+     * @return The network
+     */
+    @NotNull
+    public static NnueNetwork random(long seed) {
+        Random random = new Random(seed);
+
+        short[] featureWeights = new short[FEATURES * HIDDEN];
+        for(int i = 0; i < featureWeights.length; i++) featureWeights[i] = (short) (random.nextInt(17) - 8);
+        short[] featureBiases = new short[HIDDEN];
+        for(int i = 0; i < featureBiases.length; i++) featureBiases[i] = (short) random.nextInt(64);
+
+        return new NnueNetwork(featureWeights, featureBiases,
+                NnueNetwork.randomBytes(random, L1_SIZE * 2 * HIDDEN), new int[L1_SIZE],
+                NnueNetwork.randomBytes(random, L2_SIZE * L1_SIZE), new int[L2_SIZE],
+                NnueNetwork.randomBytes(random, L2_SIZE), 0);
+    }
+
+    /**
+     * Creates a network from the weights saved in checkpoint by save.
+     * @param checkpoint Open checkpoint of a network
+     * @return The network
+     */
+    @NotNull
+    public static NnueNetwork load(@NotNull ModelCheckpoint checkpoint) {
+        short[] featureWeights = new short[FEATURES * HIDDEN];
+        NnueNetwork.readInts(checkpoint, FEATURE_WEIGHTS, featureWeights.length, Short.MIN_VALUE, Short.MAX_VALUE, (i, v) -> featureWeights[i] = (short) v);
+        short[] featureBiases = new short[HIDDEN];
+        NnueNetwork.readInts(checkpoint, FEATURE_BIASES, featureBiases.length, Short.MIN_VALUE, Short.MAX_VALUE, (i, v) -> featureBiases[i] = (short) v);
+        byte[] l1Weights = new byte[L1_SIZE * 2 * HIDDEN];
+        NnueNetwork.readInts(checkpoint, L1_WEIGHTS, l1Weights.length, Byte.MIN_VALUE, Byte.MAX_VALUE, (i, v) -> l1Weights[i] = (byte) v);
+        int[] l1Biases = new int[L1_SIZE];
+        NnueNetwork.readInts(checkpoint, L1_BIASES, l1Biases.length, -(1 << 24), 1 << 24, (i, v) -> l1Biases[i] = v);
+        byte[] l2Weights = new byte[L2_SIZE * L1_SIZE];
+        NnueNetwork.readInts(checkpoint, L2_WEIGHTS, l2Weights.length, Byte.MIN_VALUE, Byte.MAX_VALUE, (i, v) -> l2Weights[i] = (byte) v);
+        int[] l2Biases = new int[L2_SIZE];
+        NnueNetwork.readInts(checkpoint, L2_BIASES, l2Biases.length, -(1 << 24), 1 << 24, (i, v) -> l2Biases[i] = v);
+        byte[] outputWeights = new byte[L2_SIZE];
+        NnueNetwork.readInts(checkpoint, OUTPUT_WEIGHTS, outputWeights.length, Byte.MIN_VALUE, Byte.MAX_VALUE, (i, v) -> outputWeights[i] = (byte) v);
+        int[] outputBias = new int[1];
+        NnueNetwork.readInts(checkpoint, OUTPUT_BIAS, outputBias.length, -(1 << 24), 1 << 24, (i, v) -> outputBias[i] = v);
+
+        return new NnueNetwork(featureWeights, featureBiases, l1Weights, l1Biases, l2Weights, l2Biases, outputWeights, outputBias[0]);
+    }
+
+    /**
+     * Saves the weights of this network to path as a ModelCheckpoint, which load reads back.
+     * @param path Path of the checkpoint
+     * @throws IOException If the checkpoint could not be written
+     */
+    public void save(@NotNull Path path) throws IOException {
+        int total = this.featureWeights.length + this.featureBiases.length + this.l1Weights.length + this.l1Biases.length
+                + this.l2Weights.length + this.l2Biases.length + this.outputWeights.length + 1;
+        FloatBuffer floats = FloatBuffer.allocate(total);
+        for(short weight : this.featureWeights) floats.put(weight);
+        for(short bias : this.featureBiases) floats.put(bias);
+        for(byte weight : this.l1Weights) floats.put(weight);
+        for(int bias : this.l1Biases) floats.put(bias);
+        for(byte weight : this.l2Weights) floats.put(weight);
+        for(int bias : this.l2Biases) floats.put(bias);
+        for(byte weight : this.outputWeights) floats.put(weight);
+        floats.put(this.outputBias);
+        floats.flip();
+
+        ModelCheckpoint.save(path,
+                List.of(FEATURE_WEIGHTS, FEATURE_BIASES, L1_WEIGHTS, L1_BIASES, L2_WEIGHTS, L2_BIASES, OUTPUT_WEIGHTS, OUTPUT_BIAS),
+                List.of(new long[] { FEATURES, HIDDEN }, new long[] { HIDDEN }, new long[] { L1_SIZE, 2 * HIDDEN }, new long[] { L1_SIZE },
+                        new long[] { L2_SIZE, L1_SIZE }, new long[] { L2_SIZE }, new long[] { L2_SIZE }, new long[] { 1 }),
+                floats);
+    }
+
+    /**
+     * Returns the index of the input of the first layer that is set when a piece is on a square, seen from one side.
+     * @param perspective Color of the side seeing the board
+     * @param code Piece code of the piece
+     * @param square Square it is on
+     * @return Index of the feature, from 0 to FEATURES - 1
+     */
+    public static int featureIndex(int perspective, int code, int square) {
+        if(perspective == Bitboards.BLACK) {
+            code = Bitboards.pieceCode(1 - Bitboards.colorOf(code), Bitboards.typeOf(code));
+            square ^= 56;
+        }
+
+        return code * Bitboards.SQUARES + square;
+    }
+
+    /**
+     * Adds (or, with sign -1, subtracts) the first layer's weights for feature to accumulator.
+     * @param accumulator Outputs of the first layer for one side
+     * @param feature Index of the feature
+     * @param sign 1 to add the feature, -1 to remove it
+     */
+    void applyFeature(@NotNull short[] accumulator, int feature, int sign) {
+        int offset = feature * HIDDEN;
+        for(int i = 0; i < HIDDEN; i++) accumulator[i] += (short) (sign * this.featureWeights[offset + i]);
+    }
+
+    /**
+     * Sets accumulator to the first layer's biases, as for an empty board.
+     * @param accumulator Outputs of the first layer for one side
+     */
+    void resetAccumulator(@NotNull short[] accumulator) {
+        System.arraycopy(this.featureBiases, 0, accumulator, 0, HIDDEN);
+    }
+
+    /**
+     * Runs the layers after the first on the outputs kept by accumulator.
+     * @param accumulator Accumulator kept up to date with the position
+     * @param sideToMove Color of the side to move
+     * @return Score of the position in centipawns for the side to move
+     */
+    public int evaluate(@NotNull NnueAccumulator accumulator, int sideToMove) {
+        short[] us = accumulator.getValues(sideToMove);
+        short[] them = accumulator.getValues(1 - sideToMove);
+        int[] input = accumulator.input;
+        for(int i = 0; i < HIDDEN; i++) {
+            input[i] = NnueNetwork.clip(us[i]);
+            input[HIDDEN + i] = NnueNetwork.clip(them[i]);
+        }
+
+        int[] hidden1 = accumulator.hidden1;
+        for(int o = 0; o < L1_SIZE; o++) {
+            hidden1[o] = NnueNetwork.clip(NnueNetwork.dot(this.l1Weights, o * 2 * HIDDEN, input, 2 * HIDDEN, this.l1Biases[o]) >> WEIGHT_SHIFT);
+        }
+
+        int[] hidden2 = accumulator.hidden2;
+        for(int o = 0; o < L2_SIZE; o++) {
+            hidden2[o] = NnueNetwork.clip(NnueNetwork.dot(this.l2Weights, o * L1_SIZE, hidden1, L1_SIZE, this.l2Biases[o]) >> WEIGHT_SHIFT);
+        }
+
+        return NnueNetwork.dot(this.outputWeights, 0, hidden2, L2_SIZE, this.outputBias) / OUTPUT_SCALE;
+    }
+
+    /**
+     * Returns bias plus the dot product of length weights from offset with input.
+     */
+    private static int dot(byte[] weights, int offset, int[] input, int length, int bias) {
+        int sum = bias;
+        for(int i = 0; i < length; i++) sum += weights[offset + i] * input[i];
+
+        return sum;
+    }
+
+    /**
+     * Clips an activation to 0 to ACTIVATION_MAX.
+     */
+    private static int clip(int value) {
+        return Math.max(0, Math.min(ACTIVATION_MAX, value));
+    }
+
+    /**
+     * Returns length random int8 weights from -16 to 16.
+     */
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] out = new byte[length];
+        for(int i = 0; i < length; i++) out[i] = (byte) (random.nextInt(33) - 16);
+
+        return out;
+    }
+
+    /**
+     * Reads the array called name from checkpoint, which must hold length whole numbers from min to max, and passes each to out with its index.
+     */
+    private static void readInts(ModelCheckpoint checkpoint, String name, int length, int min, int max, IntBinaryConsumer out) {
+        FloatBuffer floats = checkpoint.getArray(name);
+        if(floats.remaining() != length) throw new IllegalArgumentException("Cannot load NnueNetwork: " + name + " must have " + length + " values, but has " + floats.remaining() + ".");
+
+        for(int i = 0; i < length; i++) {
+            float value = floats.get(i);
+            if(value != Math.rint(value) || value < min || value > max) throw new IllegalArgumentException("Cannot load NnueNetwork: " + name + " must hold whole numbers from " + min + " to " + max + ", but has " + value + ".");
+            out.accept(i, (int) value);
+        }
+    }
+
+    /**
+     * Takes a value read from a checkpoint and its index.
+     */
+    @FunctionalInterface
+    private interface IntBinaryConsumer {
+        void accept(int index, int value);
+    }
+
+    /**
+     * Throws if an array of weights has the wrong length.
+     */
+    private static void checkLength(String name, int length, int expected) {
+        if(length != expected) throw new IllegalArgumentException("Cannot construct NnueNetwork: " + name + " must have " + expected + " values, but has " + length + ".");
+    }
+}
@@ -0,0 +1,215 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.ai.utils.CancellationToken;
+import com.ben9583.chess_ai.components.Board;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches on several threads at once with Lazy SMP: every thread runs
+ * its own ordinary search of the same position on its own copy of the
+ * board, and they share one transposition table. Results one thread saves
+ * in the table save the others work, and because their move orderers learn
+ * different things the threads soon search different parts of the tree.
+ *
+ * With depth staggering, helper threads start some of their iterations
+ * deeper than the main thread, so fewer threads search the same depth.
+ * The search ends when the main thread reaches its limits, and the result
+ * of whichever thread finished the deepest iteration is used.
+ *
+ * The evaluator is called from every thread, so it must be thread-safe.
+ *
+ * See also: Searcher, TranspositionTable
+ */
+public class ParallelSearcher {
+    /* Searcher on the board being searched, run on the calling thread. */
+    @NotNull
+    private final Searcher mainSearcher;
+    /* Board whose position the helpers copy before every search. */
+    @NotNull
+    private final Board board;
+    /* Copies of board searched by the helper threads, in the same order as helpers. */
+    @NotNull
+    private final Board[] helperBoards;
+    /* Searchers run on the helper threads. */
+    @NotNull
+    private final Searcher[] helpers;
+    /* Transposition table shared by every searcher. */
+    @NotNull
+    private final TranspositionTable table;
+    /* Number of depths a helper can start ahead of the main thread, cycling through the helpers. 0 to not stagger. */
+    private final int depthStagger;
+
+    /* Threads the helpers run on, or null with only one thread. */
+    private final ExecutorService executor;
+    /* Results of the helpers in the current search. */
+    @NotNull
+    private final List<Future<SearchResult>> helperResults;
+
+    /**
+     * Creates a searcher for board that searches on threads threads.
+     * @param board Board to search from
+     * @param evaluator Evaluator to score positions with, which must be thread-safe if threads is more than 1
+     * @param table Transposition table shared by every thread
+     * @param threads Number of threads to search on, including the calling thread
+     * @param depthStagger Number of depths helpers start ahead of the main thread, cycling through 0 to depthStagger
+     */
+    public ParallelSearcher(@NotNull Board board, @NotNull Evaluator evaluator, @NotNull TranspositionTable table, int threads, int depthStagger) {
+        if(threads < 1) throw new IllegalArgumentException("Cannot construct ParallelSearcher: threads must be at least 1, but is " + threads + ".");
+        if(depthStagger < 0) throw new IllegalArgumentException("Cannot construct ParallelSearcher: depth stagger must not be negative, but is " + depthStagger + ".");
+
+        this.board = board;
+        this.table = table;
+        this.depthStagger = depthStagger;
+        this.mainSearcher = new Searcher(board, evaluator, table);
+
+        this.helperBoards = new Board[threads - 1];
+        this.helpers = new Searcher[threads - 1];
+        for(int i = 0; i < this.helpers.length; i++) {
+            this.helperBoards[i] = new Board();
+            this.helpers[i] = new Searcher(this.helperBoards[i], evaluator, table);
+        }
+
+        this.executor = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.helperResults = new ArrayList<>(threads - 1);
+    }
+
+    /**
+     * Creates a searcher for board that searches on threads threads, with helpers staggered by one depth.
+     * @param board Board to search from
+     * @param evaluator Evaluator to score positions with, which must be thread-safe if threads is more than 1
+     * @param threads Number of threads to search on, including the calling thread
+     */
+    public ParallelSearcher(@NotNull Board board, @NotNull Evaluator evaluator, int threads) {
+        this(board, evaluator, new TranspositionTable(), threads, 1);
+    }
+
+    /**
+     * Searches the current position of the board within limits on every thread.
+     * Only the main thread checks the node limit; the helpers stop when it does.
+     * @param limits When to stop searching
+     * @return The result of the deepest finished iteration of any thread, with the nodes of every thread added up
+     */
+    @NotNull
+    public SearchResult search(@NotNull SearchLimits limits) {
+        return this.search(limits, null);
+    }
+
+    /**
+     * Searches the current position of the board within limits on every thread, or until token is cancelled.
+     * Only the main thread checks the node limit and the token; the helpers stop when it does.
+     * @param limits When to stop searching
+     * @param token Token that stops the search when cancelled, or null
+     * @return The result of the deepest finished iteration of any thread, with the nodes of every thread added up
+     */
+    @NotNull
+    public SearchResult search(@NotNull SearchLimits limits, @Nullable CancellationToken token) {
+        if(this.executor == null || this.executor.isShutdown()) return this.mainSearcher.search(limits, token);
+
+        long start = System.nanoTime();
+        this.table.newSearch();
+        this.mainSearcher.prepare();
+
+        SearchLimits helperLimits = new SearchLimits(limits.depth(), limits.timeMillis(), Long.MAX_VALUE);
+        this.helperResults.clear();
+        for(int i = 0; i < this.helpers.length; i++) {
+            Searcher helper = this.helpers[i];
+            int firstDepth = 1 + (i + 1) % (this.depthStagger + 1);
+
+            this.helperBoards[i].copyFrom(this.board);
+            helper.prepare();
+            this.helperResults.add(this.executor.submit(() -> helper.iterate(helperLimits, firstDepth, null)));
+        }
+
+        SearchResult best;
+        try {
+            best = this.mainSearcher.iterate(limits, 1, token);
+        } finally {
+            for(Searcher helper : this.helpers) helper.stop();
+        }
+
+        long nodes = best.nodes();
+        for(Future<SearchResult> future : this.helperResults) {
+            SearchResult result = this.await(future);
+            nodes += result.nodes();
+            if(result.depth() > best.depth()) best = result;
+        }
+
+        return new SearchResult(best.move(), best.score(), best.depth(), nodes, System.nanoTime() - start, best.ponderMove());
+    }
+
+    /**
+     * Switches the optional features of the search on or off on every thread, from the next search on.
+     * @param options Features to use
+     */
+    public void setOptions(@NotNull SearchOptions options) {
+        this.mainSearcher.setOptions(options);
+        for(Searcher helper : this.helpers) helper.setOptions(options);
+    }
+
+    /**
+     * Returns which optional features of the search are switched on.
+     * @return The features in use
+     */
+    @NotNull
+    public SearchOptions getOptions() {
+        return this.mainSearcher.getOptions();
+    }
+
+    /**
+     * Stops the current search as soon as possible on every thread. Can be called from any thread.
+     */
+    public void stop() {
+        this.mainSearcher.stop();
+        for(Searcher helper : this.helpers) helper.stop();
+    }
+
+    /**
+     * Returns the best move of the deepest iteration the main thread has finished in the search in progress.
+     * Can be called from any thread.
+     * @return The move, or PackedMove.NONE if no search is running or it has not finished an iteration yet
+     */
+    public int getBestMoveSoFar() {
+        return this.mainSearcher.getBestMoveSoFar();
+    }
+
+    /**
+     * Returns the number of threads this searches on.
+     * @return The number of threads, including the calling thread
+     */
+    public int getThreads() {
+        return this.helpers.length + 1;
+    }
+
+    /**
+     * Stops the helper threads. This searcher can still search afterwards, but only on the calling thread.
+     */
+    public void shutdown() {
+        if(this.executor != null) this.executor.shutdownNow();
+    }
+
+    /**
+     * Waits for a helper to finish its search and returns its result.
+     */
+    private SearchResult await(Future<SearchResult> future) {
+        try {
+            return future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search was interrupted.", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Search failed on a helper thread.", e.getCause());
+        }
+    }
+}
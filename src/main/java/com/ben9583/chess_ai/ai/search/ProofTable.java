@@ -0,0 +1,166 @@
+package com.ben9583.chess_ai.ai.search;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the proof and disproof numbers of the positions a MateSolver
+ * has looked at, by Zobrist key, so a position reached again through
+ * another move order is not expanded again.
+ *
+ * The table is a fixed array of longs allocated once, so however long a
+ * proof takes it never uses more memory than it was given. Every entry is
+ * two longs: the key and its data (proof number, disproof number, the
+ * number of half-moves left when it was searched and a rough measure of
+ * the work that went into it, packed together). Entries are grouped into
+ * buckets of two. When a bucket is full, the entry that took the least work
+ * to find is replaced, as it is the cheapest to find again.
+ *
+ * Unlike TranspositionTable, this table is meant for one thread at a time.
+ *
+ * See also: MateSolver
+ */
+public class ProofTable {
+    /* Proof or disproof number of a position that can't be proven or disproven. The largest number an entry holds. */
+    public static final int INFINITY = (1 << 26) - 1;
+
+    /* Entry returned by probe when the position is not in the table. No stored entry has both numbers 0. */
+    public static final long NO_ENTRY = 0L;
+
+    /* Size of a table when none is given, in megabytes. */
+    public static final int DEFAULT_SIZE_MB = 16;
+
+    /* Number of entries in a bucket, and the number of longs in an entry. */
+    private static final int BUCKET_ENTRIES = 2;
+    private static final int ENTRY_LONGS = 2;
+    private static final int BUCKET_LONGS = BUCKET_ENTRIES * ENTRY_LONGS;
+
+    /* Layout of the data of an entry. The proof number takes bits 0-25, the disproof number 26-51, the depth 52-59 and the work 60-63. */
+    private static final int DISPROOF_SHIFT = 26;
+    private static final int DEPTH_SHIFT = 52;
+    private static final int WORK_SHIFT = 60;
+
+    /* Entries, as described above. */
+    private final long[] table;
+    /* Number of buckets minus one. The number of buckets is a power of two, so this masks a key to a bucket. */
+    private final int bucketMask;
+
+    /**
+     * Creates a table using at most sizeMB megabytes.
+     * @param sizeMB Size of the table in megabytes, at least 1
+     */
+    public ProofTable(int sizeMB) {
+        if(sizeMB < 1) throw new IllegalArgumentException("Cannot construct ProofTable: size must be at least 1 MB, but is " + sizeMB + ".");
+
+        long buckets = Long.highestOneBit((long) sizeMB * 1024 * 1024 / (BUCKET_LONGS * Long.BYTES));
+        buckets = Math.min(buckets, Integer.highestOneBit(Integer.MAX_VALUE / BUCKET_LONGS));
+
+        this.table = new long[(int) buckets * BUCKET_LONGS];
+        this.bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * Creates a table of the default size.
+     */
+    public ProofTable() {
+        this(DEFAULT_SIZE_MB);
+    }
+
+    /**
+     * Looks up the entry for the position with key.
+     * @param key Zobrist key of the position
+     * @return The entry, or NO_ENTRY if the position is not in the table. Read it with proof, disproof and depth
+     */
+    public long probe(long key) {
+        int bucket = this.bucketOf(key);
+        for(int i = bucket; i < bucket + BUCKET_LONGS; i += ENTRY_LONGS) {
+            if(this.table[i] == key && this.table[i + 1] != NO_ENTRY) return this.table[i + 1];
+        }
+
+        return NO_ENTRY;
+    }
+
+    /**
+     * Saves the proof and disproof numbers of the position with key. An entry for the same
+     * position is overwritten. Otherwise the entry in the bucket that took the least work is replaced.
+     * @param key Zobrist key of the position
+     * @param depth Number of half-moves that were left to find the mate in
+     * @param proof Proof number, from 0 to INFINITY
+     * @param disproof Disproof number, from 0 to INFINITY
+     * @param work Number of positions searched to find the numbers
+     */
+    public void store(long key, int depth, int proof, int disproof, long work) {
+        int bucket = this.bucketOf(key);
+
+        int replace = bucket;
+        int replaceWork = Integer.MAX_VALUE;
+        for(int i = bucket; i < bucket + BUCKET_LONGS; i += ENTRY_LONGS) {
+            if(this.table[i] == key || this.table[i + 1] == NO_ENTRY) {
+                replace = i;
+                break;
+            }
+
+            int entryWork = (int) (this.table[i + 1] >>> WORK_SHIFT);
+            if(entryWork < replaceWork) {
+                replace = i;
+                replaceWork = entryWork;
+            }
+        }
+
+        // Work is kept as its base 2 logarithm, which is all replacing needs.
+        long logWork = Math.min(15, 63 - Long.numberOfLeadingZeros(Math.max(1, work)));
+        this.table[replace] = key;
+        this.table[replace + 1] = proof
+                | ((long) disproof << DISPROOF_SHIFT)
+                | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+                | (logWork << WORK_SHIFT);
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        Arrays.fill(this.table, 0L);
+    }
+
+    /**
+     * Returns the number of entries this table holds.
+     * @return The capacity of this table
+     */
+    public int capacity() {
+        return this.table.length / ENTRY_LONGS;
+    }
+
+    /**
+     * Returns the proof number of an entry.
+     * @param entry Entry returned by probe
+     * @return The proof number, 0 if the mate was proven
+     */
+    public static int proof(long entry) {
+        return (int) (entry & INFINITY);
+    }
+
+    /**
+     * Returns the disproof number of an entry.
+     * @param entry Entry returned by probe
+     * @return The disproof number, 0 if there is no mate
+     */
+    public static int disproof(long entry) {
+        return (int) ((entry >>> DISPROOF_SHIFT) & INFINITY);
+    }
+
+    /**
+     * Returns the number of half-moves that were left to find the mate in when an entry was searched.
+     * @param entry Entry returned by probe
+     * @return The depth in half-moves
+     */
+    public static int depth(long entry) {
+        return (int) ((entry >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    /**
+     * Returns the index of the first long of the bucket key belongs in.
+     */
+    private int bucketOf(long key) {
+        return ((int) (key ^ (key >>> 32)) & this.bucketMask) * BUCKET_LONGS;
+    }
+}
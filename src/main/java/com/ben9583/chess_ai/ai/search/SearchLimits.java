@@ -0,0 +1,45 @@
+package com.ben9583.chess_ai.ai.search;
+
+/**
+ * How long a search may run. The search stops at whichever limit it reaches first.
+ * @param depth Deepest iteration to search, in half-moves
+ * @param timeMillis Wall-clock time the search may take, in milliseconds
+ * @param nodes Number of positions the search may visit
+ */
+public record SearchLimits(int depth, long timeMillis, long nodes) {
+    /* Depth no search goes past, however much time it has. */
+    public static final int MAX_DEPTH = 64;
+
+    public SearchLimits {
+        if(depth < 1 || depth > MAX_DEPTH) throw new IllegalArgumentException("Cannot construct SearchLimits: depth must be from 1 to " + MAX_DEPTH + ", but is " + depth + ".");
+        if(timeMillis <= 0) throw new IllegalArgumentException("Cannot construct SearchLimits: time must be positive, but is " + timeMillis + ".");
+        if(nodes <= 0) throw new IllegalArgumentException("Cannot construct SearchLimits: nodes must be positive, but is " + nodes + ".");
+    }
+
+    /**
+     * Limits a search only by time.
+     * @param timeMillis Wall-clock time the search may take, in milliseconds
+     * @return The limits
+     */
+    public static SearchLimits ofTime(long timeMillis) {
+        return new SearchLimits(MAX_DEPTH, timeMillis, Long.MAX_VALUE);
+    }
+
+    /**
+     * Limits a search only by the number of positions visited.
+     * @param nodes Number of positions the search may visit
+     * @return The limits
+     */
+    public static SearchLimits ofNodes(long nodes) {
+        return new SearchLimits(MAX_DEPTH, Long.MAX_VALUE, nodes);
+    }
+
+    /**
+     * Limits a search only by depth.
+     * @param depth Deepest iteration to search, in half-moves
+     * @return The limits
+     */
+    public static SearchLimits ofDepth(int depth) {
+        return new SearchLimits(depth, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+}
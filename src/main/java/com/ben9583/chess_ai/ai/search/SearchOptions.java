@@ -0,0 +1,33 @@
+package com.ben9583.chess_ai.ai.search;
+
+/**
+ * Which of the search's optional features are switched on. Each can be switched off
+ * on its own to measure how much it helps. With none of them the search is plain alpha-beta.
+ * @param principalVariation Search moves after the first with a zero window, and again with the full window only if they turn out better (PVS)
+ * @param aspirationWindows Start each iteration with a narrow window around the last iteration's score, widening it if the score falls outside
+ * @param nullMove Skip a move and search shallower; if the opponent still can't get below beta, cut off (null-move pruning)
+ * @param lateMoveReductions Search quiet moves late in the order shallower, and again at full depth only if they turn out better (LMR)
+ * @param futilityPruning Skip quiet moves near the leaves when the position is so far below alpha that they can't bring it back
+ */
+public record SearchOptions(boolean principalVariation, boolean aspirationWindows, boolean nullMove, boolean lateMoveReductions, boolean futilityPruning) {
+    /* Every feature switched on. */
+    public static final SearchOptions ALL = new SearchOptions(true, true, true, true, true);
+    /* Every feature switched off, leaving plain alpha-beta. */
+    public static final SearchOptions NONE = new SearchOptions(false, false, false, false, false);
+
+    /**
+     * Returns these options with one feature switched off.
+     * @param feature One of "pvs", "aspiration", "nullmove", "lmr" or "futility"
+     * @return The options without feature
+     */
+    public SearchOptions without(String feature) {
+        return switch(feature) {
+            case "pvs" -> new SearchOptions(false, this.aspirationWindows, this.nullMove, this.lateMoveReductions, this.futilityPruning);
+            case "aspiration" -> new SearchOptions(this.principalVariation, false, this.nullMove, this.lateMoveReductions, this.futilityPruning);
+            case "nullmove" -> new SearchOptions(this.principalVariation, this.aspirationWindows, false, this.lateMoveReductions, this.futilityPruning);
+            case "lmr" -> new SearchOptions(this.principalVariation, this.aspirationWindows, this.nullMove, false, this.futilityPruning);
+            case "futility" -> new SearchOptions(this.principalVariation, this.aspirationWindows, this.nullMove, this.lateMoveReductions, false);
+            default -> throw new IllegalArgumentException("There's no search feature called " + feature + ".");
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
+
+/**
+ * The outcome of a search.
+ * @param move Best packed move found, or PackedMove.NONE if there are no legal moves
+ * @param score Score of move in centipawns for the player to move. See also: Searcher.isMateScore
+ * @param depth Depth of the deepest iteration that finished
+ * @param nodes Number of positions visited
+ * @param timeNanos Wall-clock time the search took, in nanoseconds
+ * @param ponderMove Reply to move the search expects, or PackedMove.NONE if it doesn't know one
+ */
+public record SearchResult(int move, int score, int depth, long nodes, long timeNanos, int ponderMove) {
+    /**
+     * Returns how many positions the search visited per second.
+     * @return Nodes per second
+     */
+    public double nodesPerSecond() {
+        return this.nodes * 1e9 / Math.max(1, this.timeNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "depth " + this.depth + " score " + this.score + " move " + PackedMove.toString(this.move)
+                + (this.ponderMove != PackedMove.NONE ? " ponder " + PackedMove.toString(this.ponderMove) : "")
+                + " nodes " + this.nodes + " nps " + Math.round(this.nodesPerSecond());
+    }
+}
@@ -0,0 +1,534 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.ai.utils.CancellationToken;
+import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.MoveGenerator;
+import com.ben9583.chess_ai.components.bitboard.MoveList;
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
+import com.ben9583.chess_ai.components.bitboard.Position;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Searches ahead from the current position of a board for the best move,
+ * using negamax with alpha-beta pruning.
+ *
+ * The search deepens one half-move at a time (iterative deepening) until
+ * it reaches a limit, and returns the best move of the deepest iteration
+ * that finished. Each iteration searches the previous best move first,
+ * which lets alpha-beta prune the most.
+ *
+ * Results are saved in a transposition table, so positions reached again
+ * through a different move order are not searched twice, and the best move
+ * saved for a position is searched first when it is reached again. The
+ * table can be shared by searchers on several threads. The other moves
+ * are ordered by a MoveOrderer.
+ *
+ * At the end of the main search, captures and promotions are searched until
+ * the position is quiet (quiescence search), so a leaf is never scored in
+ * the middle of an exchange. Captures that lose material are left out of it.
+ *
+ * Optional features, each switched on or off by SearchOptions, let the
+ * search spend less effort proving bad moves bad: principal variation
+ * search, aspiration windows, null-move pruning, late-move reductions and
+ * futility pruning. Null moves are not tried without pieces other than
+ * pawns, where passing can be better than any move (zugzwang), nor twice
+ * in a row, and deep null-move cutoffs are checked with a normal search.
+ *
+ * A searcher keeps move lists for every ply so it does not allocate while
+ * searching. It is not thread-safe; every thread needs its own searcher and board.
+ */
+public class Searcher {
+    /* Score greater than any evaluation, used as the initial bounds. */
+    public static final int INFINITY = 1_000_000;
+    /* Score of checkmating right now. Mates further away score less, so closer mates are preferred. */
+    public static final int MATE = 100_000;
+    /* Deepest ply the search can reach, including any extensions. */
+    public static final int MAX_PLY = 128;
+
+    /* Margin added to a capture's gain before deciding in quiescence search that it can't raise alpha, in centipawns. */
+    private static final int DELTA_MARGIN = 200;
+
+    /* Half-width of the first aspiration window, in centipawns. */
+    private static final int ASPIRATION_WINDOW = 25;
+    /* Shallowest iteration that uses an aspiration window. */
+    private static final int ASPIRATION_DEPTH = 4;
+    /* Shallowest depth at which null moves are tried. */
+    private static final int NULL_MOVE_DEPTH = 3;
+    /* Depth above which a null-move cutoff is checked by a normal search, in case of zugzwang. */
+    private static final int NULL_MOVE_VERIFY_DEPTH = 6;
+    /* Shallowest depth at which late moves are reduced, and the number of moves searched before they are. */
+    private static final int LMR_DEPTH = 3;
+    private static final int LMR_MOVES = 3;
+    /* How far below alpha a position must be for quiet moves to be futile, indexed by depth. */
+    private static final int[] FUTILITY_MARGINS = { 0, 200, 500 };
+
+    /* Number of nodes between checks of the time and node limits. Must be a power of two. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /* Board being searched. Moves are made and unmade on it, and it is left as it was. */
+    @NotNull
+    private final Board board;
+    /* Bitboards of board. */
+    @NotNull
+    private final Position position;
+    /* Evaluator scoring the positions at the end of the search. */
+    @NotNull
+    private final Evaluator evaluator;
+    /* Results of earlier searches, by Zobrist key. */
+    @NotNull
+    private final TranspositionTable table;
+    /* Orders the moves at each ply. */
+    @NotNull
+    private final MoveOrderer orderer;
+    /* Move list for each ply, reused by every search. */
+    @NotNull
+    private final MoveList[] moveLists;
+
+    /* Number of positions visited by the current search. */
+    private long nodes;
+    /* Number of positions the current search may visit. */
+    private long nodeLimit;
+    /* System.nanoTime at which the current search must stop. */
+    private long deadline;
+    /* Token that stops the current search when cancelled, or null if only the limits stop it. */
+    @Nullable
+    private CancellationToken token;
+    /* Whether the current search was stopped before finishing its iteration. */
+    private volatile boolean stopped;
+    /* Best move of the deepest iteration the current search finished, or PackedMove.NONE. Read from other threads. */
+    private volatile int bestMoveSoFar;
+    /* Best move at the root found so far in the current iteration. */
+    private int bestRootMove;
+    /* Which optional features are switched on. */
+    @NotNull
+    private SearchOptions options;
+
+    /**
+     * Creates a searcher for board.
+     * @param board Board to search from
+     * @param evaluator Evaluator to score positions with
+     * @param table Transposition table to save results in, which may be shared with other searchers
+     */
+    public Searcher(@NotNull Board board, @NotNull Evaluator evaluator, @NotNull TranspositionTable table) {
+        this.board = board;
+        this.position = board.getBitboards();
+        this.evaluator = evaluator;
+        this.table = table;
+        this.orderer = new MoveOrderer(MAX_PLY);
+        this.options = SearchOptions.ALL;
+
+        this.moveLists = new MoveList[MAX_PLY + 1];
+        for(int i = 0; i < this.moveLists.length; i++) this.moveLists[i] = new MoveList();
+    }
+
+    /**
+     * Creates a searcher for board with its own transposition table of the default size.
+     * @param board Board to search from
+     * @param evaluator Evaluator to score positions with
+     */
+    public Searcher(@NotNull Board board, @NotNull Evaluator evaluator) {
+        this(board, evaluator, new TranspositionTable());
+    }
+
+    /**
+     * Searches the current position of the board within limits.
+     * @param limits When to stop searching
+     * @return The best move of the deepest iteration that finished
+     */
+    @NotNull
+    public SearchResult search(@NotNull SearchLimits limits) {
+        return this.search(limits, null);
+    }
+
+    /**
+     * Searches the current position of the board within limits, or until token is cancelled.
+     * @param limits When to stop searching
+     * @param token Token that stops the search when cancelled, or null
+     * @return The best move of the deepest iteration that finished
+     */
+    @NotNull
+    public SearchResult search(@NotNull SearchLimits limits, @Nullable CancellationToken token) {
+        this.prepare();
+        this.table.newSearch();
+
+        return this.iterate(limits, 1, token);
+    }
+
+    /**
+     * Clears a stop left over from the last search. Done before a search starts rather than in it,
+     * so a searcher on another thread that is stopped before it gets going stays stopped.
+     */
+    void prepare() {
+        this.stopped = false;
+    }
+
+    /**
+     * Searches the current position of the board within limits, starting at firstDepth.
+     * Unlike search, this neither clears a stop nor starts a new search in the transposition table,
+     * which is left to whoever runs several searchers at once.
+     * @param limits When to stop searching
+     * @param firstDepth Depth of the first iteration
+     * @param token Token that stops the search when cancelled, or null
+     * @return The best move of the deepest iteration that finished
+     */
+    @NotNull
+    SearchResult iterate(@NotNull SearchLimits limits, int firstDepth, @Nullable CancellationToken token) {
+        long start = System.nanoTime();
+        this.token = token;
+        this.nodes = 0;
+        this.nodeLimit = limits.nodes();
+        this.deadline = limits.timeMillis() >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : start + limits.timeMillis() * 1_000_000;
+        this.orderer.newSearch();
+
+        MoveList rootMoves = this.moveLists[0];
+        this.board.getLegalMoves(rootMoves);
+        if(rootMoves.isEmpty()) {
+            return new SearchResult(PackedMove.NONE, this.position.isInCheck() ? -MATE : 0, 0, 0, System.nanoTime() - start, PackedMove.NONE);
+        }
+
+        int bestMove = rootMoves.get(0);
+        int bestScore = 0;
+        int completedDepth = 0;
+        this.bestRootMove = bestMove;
+
+        for(int depth = Math.min(firstDepth, limits.depth()); depth <= limits.depth(); depth++) {
+            int score = this.searchRoot(depth, completedDepth > 0 ? bestScore : 0);
+            if(this.stopped) break;
+
+            bestMove = this.bestRootMove;
+            bestScore = score;
+            completedDepth = depth;
+            this.bestMoveSoFar = bestMove;
+
+            // Searching deeper can't change a forced mate or the only legal move.
+            if(Searcher.isMateScore(score) || rootMoves.size() == 1) break;
+        }
+
+        this.bestMoveSoFar = PackedMove.NONE;
+        return new SearchResult(bestMove, bestScore, completedDepth, this.nodes, System.nanoTime() - start, this.expectedReply(bestMove));
+    }
+
+    /**
+     * Switches the optional features of the search on or off, from the next search on.
+     * @param options Features to use
+     */
+    public void setOptions(@NotNull SearchOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Returns which optional features of the search are switched on.
+     * @return The features in use
+     */
+    @NotNull
+    public SearchOptions getOptions() {
+        return this.options;
+    }
+
+    /**
+     * Stops the current search as soon as possible. It returns the result of the last iteration that finished.
+     * Can be called from any thread.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * Returns the best move of the deepest iteration the search in progress has finished,
+     * which is what it would return if stopped now. Can be called from any thread.
+     * @return The move, or PackedMove.NONE if no search is running or it has not finished an iteration yet
+     */
+    public int getBestMoveSoFar() {
+        return this.bestMoveSoFar;
+    }
+
+    /**
+     * Returns whether score means one side can force checkmate.
+     * @param score A score returned by a search
+     * @return Whether score is a mate score
+     */
+    public static boolean isMateScore(int score) {
+        return Math.abs(score) >= MATE - MAX_PLY;
+    }
+
+    /**
+     * Searches the root to depth. With aspiration windows, the search starts with a narrow window
+     * around the last iteration's score and widens it on whichever side the score falls outside.
+     * @param depth Number of half-moves to search
+     * @param lastScore Score of the last iteration
+     * @return Score of the root
+     */
+    private int searchRoot(int depth, int lastScore) {
+        if(!this.options.aspirationWindows() || depth < ASPIRATION_DEPTH || Searcher.isMateScore(lastScore)) {
+            return this.negamax(depth, 0, -INFINITY, INFINITY, false);
+        }
+
+        int window = ASPIRATION_WINDOW;
+        int alpha = lastScore - window;
+        int beta = lastScore + window;
+        while(true) {
+            int score = this.negamax(depth, 0, alpha, beta, false);
+            if(this.stopped) return 0;
+
+            if(score <= alpha) {
+                alpha = Math.max(-INFINITY, score - window);
+            } else if(score >= beta) {
+                beta = Math.min(INFINITY, score + window);
+            } else {
+                return score;
+            }
+            window *= 2;
+        }
+    }
+
+    /**
+     * Searches the current position to depth and returns its score for the side to move.
+     * Scores at or below alpha or at or above beta are only bounds.
+     * @param depth Number of half-moves left to search
+     * @param ply Number of half-moves from the root
+     * @param alpha Score the side to move is already guaranteed
+     * @param beta Score the opponent is already guaranteed, above which this position will not be reached
+     * @param allowNull Whether a null move may be tried, which it may not right after another
+     * @return Score of the position
+     */
+    private int negamax(int depth, int ply, int alpha, int beta, boolean allowNull) {
+        this.nodes++;
+        if((this.nodes & (CHECK_INTERVAL - 1)) == 0) this.checkLimits();
+        if(this.stopped) return 0;
+
+        if(ply > 0 && this.isDraw()) return 0;
+        if(depth <= 0) return this.quiescence(ply, alpha, beta);
+        if(ply == MAX_PLY) return this.evaluator.evaluate(this.board);
+
+        long key = this.board.getZobristKey();
+        long entry = this.table.probe(key);
+        if(ply > 0 && TranspositionTable.depth(entry) >= depth) {
+            int score = TranspositionTable.scoreFromTable(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if(bound == TranspositionTable.BOUND_EXACT
+                    || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                    || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) return score;
+        }
+
+        // Positions searched with a zero window only need to be proven above or below it, so they can be pruned harder.
+        boolean pvNode = beta - alpha > 1;
+        boolean inCheck = this.position.isInCheck();
+        int staticEval = -INFINITY;
+        if(!pvNode && !inCheck && (this.options.nullMove() || this.options.futilityPruning())) staticEval = this.evaluator.evaluate(this.board);
+
+        if(this.options.nullMove() && allowNull && !pvNode && !inCheck && depth >= NULL_MOVE_DEPTH
+                && staticEval >= beta && this.hasPiecesOtherThanPawns()) {
+            int reduction = depth > NULL_MOVE_VERIFY_DEPTH ? 3 : 2;
+
+            this.board.makeNullMove();
+            int score = -this.negamax(depth - 1 - reduction, ply + 1, -beta, -beta + 1, false);
+            this.board.unmakeNullMove();
+
+            if(this.stopped) return 0;
+            if(score >= beta) {
+                // A mate found after passing isn't a real mate.
+                if(Searcher.isMateScore(score)) score = beta;
+                if(depth <= NULL_MOVE_VERIFY_DEPTH) return score;
+                if(this.negamax(depth - 1 - reduction, ply, beta - 1, beta, false) >= beta) return score;
+                if(this.stopped) return 0;
+            }
+        }
+
+        MoveList moves = this.moveLists[ply];
+        if(ply > 0) this.board.getLegalMoves(moves);
+        if(moves.isEmpty()) return inCheck ? -MATE + ply : 0;
+
+        // Search the best move of the previous iteration, or the one saved for this position, first.
+        this.orderer.score(this.board, moves, ply == 0 ? this.bestRootMove : TranspositionTable.move(entry), ply);
+
+        boolean futile = this.options.futilityPruning() && !pvNode && !inCheck && depth < FUTILITY_MARGINS.length
+                && !Searcher.isMateScore(alpha) && staticEval + FUTILITY_MARGINS[depth] <= alpha;
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = PackedMove.NONE;
+        int searched = 0;
+        for(int i = 0; i < moves.size(); i++) {
+            int move = this.orderer.pickNext(moves, i, ply);
+            boolean quiet = MoveOrderer.isQuiet(move);
+
+            this.board.makeMove(move);
+            boolean givesCheck = this.position.isInCheck();
+
+            if(futile && searched > 0 && quiet && !givesCheck) {
+                this.board.unmakeMove();
+                continue;
+            }
+
+            int score;
+            if(searched == 0) {
+                score = -this.negamax(depth - 1, ply + 1, -beta, -alpha, true);
+            } else {
+                int reduction = 0;
+                if(this.options.lateMoveReductions() && depth >= LMR_DEPTH && searched >= LMR_MOVES && quiet && !inCheck && !givesCheck) {
+                    reduction = Math.min(depth - 2, Searcher.lateMoveReduction(depth, searched));
+                }
+
+                if(this.options.principalVariation()) {
+                    score = -this.negamax(depth - 1 - reduction, ply + 1, -alpha - 1, -alpha, true);
+                    if(score > alpha && reduction > 0) score = -this.negamax(depth - 1, ply + 1, -alpha - 1, -alpha, true);
+                    if(score > alpha && score < beta) score = -this.negamax(depth - 1, ply + 1, -beta, -alpha, true);
+                } else {
+                    score = -this.negamax(depth - 1 - reduction, ply + 1, -beta, -alpha, true);
+                    if(score > alpha && reduction > 0) score = -this.negamax(depth - 1, ply + 1, -beta, -alpha, true);
+                }
+            }
+            this.board.unmakeMove();
+            searched++;
+
+            if(this.stopped) return 0;
+
+            if(score > best) {
+                best = score;
+                bestMove = move;
+                if(ply == 0) this.bestRootMove = move;
+                if(score > alpha) {
+                    alpha = score;
+                    if(alpha >= beta) {
+                        this.orderer.recordCutoff(this.position, moves, i, ply, depth);
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.BOUND_LOWER : best > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+        this.table.store(key, bound == TranspositionTable.BOUND_UPPER ? PackedMove.NONE : bestMove, TranspositionTable.scoreToTable(best, ply), depth, bound);
+
+        return best;
+    }
+
+    /**
+     * Returns the best reply to move saved in the transposition table, or PackedMove.NONE if there is none.
+     * Only legal replies are returned, as the saved move may belong to another position with the same key.
+     */
+    private int expectedReply(int move) {
+        this.board.makeMove(move);
+
+        int reply = TranspositionTable.move(this.table.probe(this.board.getZobristKey()));
+        if(reply != PackedMove.NONE) {
+            MoveList replies = this.moveLists[1];
+            this.board.getLegalMoves(replies);
+            if(!replies.contains(reply)) reply = PackedMove.NONE;
+        }
+
+        this.board.unmakeMove();
+        return reply;
+    }
+
+    /**
+     * Returns how many plies to reduce a late move by, growing with both the depth and how late the move is.
+     */
+    private static int lateMoveReduction(int depth, int searched) {
+        return Math.max(1, (int) (0.75 + Math.log(depth) * Math.log(searched) / 2.25));
+    }
+
+    /**
+     * Returns whether the side to move has any pieces other than pawns and its king. Without them,
+     * zugzwang is common, so passing can't be assumed to be worse than every move.
+     */
+    private boolean hasPiecesOtherThanPawns() {
+        int side = this.position.getSideToMove();
+        return (this.position.getOccupancy(side) & ~this.position.getPieces(side, Bitboards.PAWN) & ~this.position.getPieces(side, Bitboards.KING)) != 0;
+    }
+
+    /**
+     * Searches only the captures and promotions from the current position until it is quiet, and returns its score.
+     * The side to move may also choose not to capture, so the position is worth at least its evaluation (stand pat),
+     * unless it is in check, in which case every move is searched.
+     * @param ply Number of half-moves from the root
+     * @param alpha Score the side to move is already guaranteed
+     * @param beta Score the opponent is already guaranteed
+     * @return Score of the position
+     */
+    private int quiescence(int ply, int alpha, int beta) {
+        this.nodes++;
+        if((this.nodes & (CHECK_INTERVAL - 1)) == 0) this.checkLimits();
+        if(this.stopped) return 0;
+
+        if(ply == MAX_PLY) return this.evaluator.evaluate(this.board);
+
+        MoveList moves = this.moveLists[ply];
+        boolean inCheck = this.position.isInCheck();
+        int standPat = -INFINITY;
+        if(inCheck) {
+            this.board.getLegalMoves(moves);
+            if(moves.isEmpty()) return -MATE + ply;
+        } else {
+            standPat = this.evaluator.evaluate(this.board);
+            if(standPat >= beta) return standPat;
+            if(standPat > alpha) alpha = standPat;
+
+            MoveGenerator.generateLegalCaptures(this.position, moves);
+        }
+
+        this.orderer.score(this.board, moves, PackedMove.NONE, ply);
+
+        int best = standPat;
+        for(int i = 0; i < moves.size(); i++) {
+            int move = this.orderer.pickNext(moves, i, ply);
+
+            if(!inCheck) {
+                if(PackedMove.isPromotion(move) && PackedMove.promotionType(move) != Bitboards.QUEEN) continue;
+                // Delta pruning: skip captures that can't raise alpha even if they win their piece for free.
+                if(standPat + this.gainOf(move) + DELTA_MARGIN <= alpha) continue;
+                // Captures that lose material by static exchange evaluation can't be better than standing pat.
+                if(this.board.staticExchange(move) < 0) continue;
+            }
+
+            this.board.makeMove(move);
+            int score = -this.quiescence(ply + 1, -beta, -alpha);
+            this.board.unmakeMove();
+
+            if(this.stopped) return 0;
+
+            if(score > best) {
+                best = score;
+                if(score > alpha) {
+                    alpha = score;
+                    if(alpha >= beta) break;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns the material move wins by capturing and promoting, before any recapture.
+     */
+    private int gainOf(int move) {
+        int gain = 0;
+        if(PackedMove.flags(move) == PackedMove.EN_PASSANT) {
+            gain = MaterialEvaluator.valueOf(Bitboards.PAWN);
+        } else if(PackedMove.isCapture(move)) {
+            gain = MaterialEvaluator.valueOf(Bitboards.typeOf(this.position.pieceAt(PackedMove.to(move))));
+        }
+        if(PackedMove.isPromotion(move)) gain += MaterialEvaluator.valueOf(PackedMove.promotionType(move)) - MaterialEvaluator.valueOf(Bitboards.PAWN);
+
+        return gain;
+    }
+
+    /**
+     * Returns whether the current position is drawn by repetition or by the 50-move rule.
+     * Inside the search a single repetition counts, as the side that repeated could repeat again.
+     */
+    private boolean isDraw() {
+        return this.position.getHalfMoveClock() >= Board.HALF_MOVE_CLOCK_LIMIT || this.position.countRepetitions() > 0;
+    }
+
+    /**
+     * Stops the search if it has run out of time or nodes, or its token was cancelled.
+     */
+    private void checkLimits() {
+        if(this.nodes >= this.nodeLimit || System.nanoTime() >= this.deadline) this.stopped = true;
+        if(this.token != null && this.token.isCancelled()) this.stopped = true;
+    }
+}
@@ -0,0 +1,248 @@
+package com.ben9583.chess_ai.ai.search;
+
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the results of searches by the Zobrist key of the position
+ * they searched, so a position reached again through another move order
+ * does not need to be searched again.
+ *
+ * The table is a fixed array of longs allocated once. Every entry is two
+ * longs: its data (best move, score, depth, bound and age packed together)
+ * and its key XORed with its data. An entry is only trusted if XORing the
+ * two gives back the key being probed, so an entry torn by two threads
+ * writing it at once is read as a miss instead of a wrong result. This
+ * lets any number of search threads share one table without locking.
+ *
+ * Entries are grouped into buckets of four, which fit in one cache line.
+ * When a bucket is full, the entry that is shallowest and from the oldest
+ * search is replaced.
+ */
+public class TranspositionTable {
+    /* Bound of an entry: none (the slot is empty), a lower bound, an upper bound, or an exact score. */
+    public static final int BOUND_NONE = 0;
+    public static final int BOUND_LOWER = 1;
+    public static final int BOUND_UPPER = 2;
+    public static final int BOUND_EXACT = 3;
+
+    /* Entry returned by probe when the position is not in the table. Its bound is BOUND_NONE. */
+    public static final long NO_ENTRY = 0L;
+
+    /* Size of a table when none is given, in megabytes. */
+    public static final int DEFAULT_SIZE_MB = 16;
+
+    /* Number of entries in a bucket, and the number of longs in an entry. */
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int ENTRY_LONGS = 2;
+    private static final int BUCKET_LONGS = BUCKET_ENTRIES * ENTRY_LONGS;
+
+    /* Layout of the data of an entry. The move takes bits 0-15, the score 16-47, the depth 48-55, the bound 56-57 and the age 58-63. */
+    private static final int SCORE_SHIFT = 16;
+    private static final int DEPTH_SHIFT = 48;
+    private static final int BOUND_SHIFT = 56;
+    private static final int AGE_SHIFT = 58;
+    private static final int AGE_MASK = 0x3F;
+
+    /* Entries, as described above. */
+    private final long[] table;
+    /* Number of buckets minus one. The number of buckets is a power of two, so this masks a key to a bucket. */
+    private final int bucketMask;
+
+    /* Age of the current search. Entries from older searches are replaced first. */
+    private volatile int age;
+
+    /**
+     * Creates a table using at most sizeMB megabytes.
+     * @param sizeMB Size of the table in megabytes, at least 1
+     */
+    public TranspositionTable(int sizeMB) {
+        if(sizeMB < 1) throw new IllegalArgumentException("Cannot construct TranspositionTable: size must be at least 1 MB, but is " + sizeMB + ".");
+
+        long buckets = Long.highestOneBit((long) sizeMB * 1024 * 1024 / (BUCKET_LONGS * Long.BYTES));
+        buckets = Math.min(buckets, Integer.highestOneBit(Integer.MAX_VALUE / BUCKET_LONGS));
+
+        this.table = new long[(int) buckets * BUCKET_LONGS];
+        this.bucketMask = (int) buckets - 1;
+        this.age = 0;
+    }
+
+    /**
+     * Creates a table of the default size.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_SIZE_MB);
+    }
+
+    /**
+     * Looks up the entry for the position with key.
+     * @param key Zobrist key of the position
+     * @return The entry, or NO_ENTRY if the position is not in the table. Read it with move, score, depth and bound
+     */
+    public long probe(long key) {
+        int bucket = this.bucketOf(key);
+        for(int i = bucket; i < bucket + BUCKET_LONGS; i += ENTRY_LONGS) {
+            long data = this.table[i + 1];
+            if((this.table[i] ^ data) == key && TranspositionTable.bound(data) != BOUND_NONE) return data;
+        }
+
+        return NO_ENTRY;
+    }
+
+    /**
+     * Saves the result of searching the position with key.
+     * An entry for the same position is overwritten, unless it was searched deeper in this search
+     * and the new result is not exact. Otherwise the least valuable entry in the bucket is replaced.
+     * @param key Zobrist key of the position
+     * @param move Best packed move found, or PackedMove.NONE
+     * @param score Score of the position, adjusted with scoreToTable
+     * @param depth Depth the position was searched to
+     * @param bound Whether score is exact, a lower bound or an upper bound
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int bucket = this.bucketOf(key);
+        int age = this.age;
+
+        int replace = bucket;
+        int replaceValue = Integer.MAX_VALUE;
+        for(int i = bucket; i < bucket + BUCKET_LONGS; i += ENTRY_LONGS) {
+            long data = this.table[i + 1];
+            if((this.table[i] ^ data) == key) {
+                if(bound != BOUND_EXACT && TranspositionTable.age(data) == age && TranspositionTable.depth(data) > depth) return;
+                // Keep the old best move if this search didn't find one.
+                if(move == PackedMove.NONE) move = TranspositionTable.move(data);
+                replace = i;
+                break;
+            }
+
+            // Each search older counts as much as 8 plies shallower.
+            int value = TranspositionTable.depth(data) - 8 * ((age - TranspositionTable.age(data)) & AGE_MASK);
+            if(value < replaceValue) {
+                replace = i;
+                replaceValue = value;
+            }
+        }
+
+        long data = (move & 0xFFFFL)
+                | ((score & 0xFFFFFFFFL) << SCORE_SHIFT)
+                | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) age << AGE_SHIFT);
+        this.table[replace] = key ^ data;
+        this.table[replace + 1] = data;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches are replaced before those of this one.
+     */
+    public void newSearch() {
+        this.age = (this.age + 1) & AGE_MASK;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        Arrays.fill(this.table, 0L);
+        this.age = 0;
+    }
+
+    /**
+     * Returns how full the table is with entries from the current search, sampled from its first 1000 entries.
+     * @return Number of entries in every thousand that are in use
+     */
+    public int hashFull() {
+        int samples = Math.min(1000, this.table.length / ENTRY_LONGS);
+        int used = 0;
+        for(int i = 0; i < samples * ENTRY_LONGS; i += ENTRY_LONGS) {
+            long data = this.table[i + 1];
+            if(TranspositionTable.bound(data) != BOUND_NONE && TranspositionTable.age(data) == this.age) used++;
+        }
+
+        return used * 1000 / samples;
+    }
+
+    /**
+     * Returns the number of entries this table holds.
+     * @return The capacity of this table
+     */
+    public int capacity() {
+        return this.table.length / ENTRY_LONGS;
+    }
+
+    /**
+     * Returns the best move of an entry.
+     * @param entry Entry returned by probe
+     * @return The packed move, or PackedMove.NONE if none was found
+     */
+    public static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    /**
+     * Returns the score of an entry. Convert it with scoreFromTable before use.
+     * @param entry Entry returned by probe
+     * @return The score as stored
+     */
+    public static int score(long entry) {
+        return (int) (entry >>> SCORE_SHIFT);
+    }
+
+    /**
+     * Returns the depth an entry was searched to.
+     * @param entry Entry returned by probe
+     * @return The depth in half-moves
+     */
+    public static int depth(long entry) {
+        return (int) ((entry >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    /**
+     * Returns the bound of an entry.
+     * @param entry Entry returned by probe
+     * @return One of BOUND_NONE, BOUND_LOWER, BOUND_UPPER or BOUND_EXACT
+     */
+    public static int bound(long entry) {
+        return (int) ((entry >>> BOUND_SHIFT) & 0x3);
+    }
+
+    /**
+     * Converts a score to store in the table. Mate scores are counted from the root of the search,
+     * but in the table they are counted from the position itself, since it can be reached at any ply.
+     * @param score Score from the search
+     * @param ply Number of half-moves from the root to the position
+     * @return The score to store
+     */
+    public static int scoreToTable(int score, int ply) {
+        if(score >= Searcher.MATE - Searcher.MAX_PLY) return score + ply;
+        if(score <= -(Searcher.MATE - Searcher.MAX_PLY)) return score - ply;
+        return score;
+    }
+
+    /**
+     * Converts a score read from the table back to one counted from the root of the search.
+     * @param score Score from score
+     * @param ply Number of half-moves from the root to the position
+     * @return The score for the search
+     */
+    public static int scoreFromTable(int score, int ply) {
+        if(score >= Searcher.MATE - Searcher.MAX_PLY) return score - ply;
+        if(score <= -(Searcher.MATE - Searcher.MAX_PLY)) return score + ply;
+        return score;
+    }
+
+    /**
+     * Returns the index of the first long of the bucket for key.
+     */
+    private int bucketOf(long key) {
+        return ((int) (key ^ (key >>> 32)) & this.bucketMask) * BUCKET_LONGS;
+    }
+
+    /**
+     * Returns the age of the search that stored an entry.
+     */
+    private static int age(long entry) {
+        return (int) (entry >>> AGE_SHIFT) & AGE_MASK;
+    }
+}
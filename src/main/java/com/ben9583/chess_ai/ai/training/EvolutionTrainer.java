@@ -0,0 +1,253 @@
+package com.ben9583.chess_ai.ai.training;
+
+import com.ben9583.chess_ai.ai.AIAgent;
+import com.ben9583.chess_ai.ai.models.NeuralAgent;
+import com.ben9583.chess_ai.components.Player;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.jetbrains.annotations.NotNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.rng.Random;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Trains NeuralAgents with evolution strategies, using a SelfPlayRunner to
+ * play the games that score them.
+ *
+ * The trainer keeps one set of parameters, the center. Each generation it
+ * draws a population of networks around it in antithetic pairs: for every
+ * pair a seeded vector of Gaussian noise is added to the center for one
+ * member and subtracted for the other. Only the seeds are kept, and the noise
+ * is drawn again from them when it is needed. All members live in one flat
+ * off-heap matrix, a row each, which is filled once per generation.
+ *
+ * Every member plays a match of gamesPerMember games against the center,
+ * alternating colors starting with White, so every member, and both members
+ * of a pair, play as many games with each color. It scores 2 for a win and
+ * 1 for a draw. The games of all members are spread over the runner's
+ * threads. The members are then ranked by score, ties sharing their ranks,
+ * and the ranks are mapped evenly onto -0.5 to 0.5. The center moves along
+ * the noise of each pair by the difference of its two weights, times
+ * learningRate / (populationSize * sigma). Ranking makes the step
+ * independent of how lopsided the scores are, and antithetic pairs cancel
+ * most of the noise of the estimate.
+ *
+ * See also: SelfPlayRunner
+ */
+public class EvolutionTrainer implements SelfPlayTrainer {
+    /* Score of a member for each game it wins, draws or loses. */
+    private static final int WIN_SCORE = 2;
+    private static final int DRAW_SCORE = 1;
+
+    /* Number of members in each generation. Always even. */
+    private final int populationSize;
+    /* Number of games each member plays against the center. Always even, so it plays as many as White as Black. */
+    private final int gamesPerMember;
+    /* Standard deviation of the noise added to the center. */
+    private final double sigma;
+    /* Size of each step of the center. */
+    private final double learningRate;
+
+    /* Flattened parameters being trained, as a row. Changed only by finishing a generation. */
+    @NotNull
+    private final INDArray center;
+    /* Parameters of every member of the current generation, a row each. */
+    @NotNull
+    private final INDArray population;
+    /* Scratch row the noise of a pair is drawn into. */
+    @NotNull
+    private final INDArray noise;
+    /* Generator the noise is drawn from, reseeded for each pair. Only used on the thread running the generations. */
+    @NotNull
+    private final Random noiseRandom;
+    /* Generator of the seeds of each generation. */
+    @NotNull
+    private final java.util.Random seedRandom;
+    /* Seed of the noise of each antithetic pair in the current generation. */
+    @NotNull
+    private final long[] pairSeeds;
+    /* Score of each member so far in the current generation, added to by the workers. */
+    @NotNull
+    private final AtomicIntegerArray scores;
+
+    /* Number of generations finished. */
+    private int generation;
+
+    /**
+     * Creates a trainer starting from the parameters of agent.
+     * @param agent Agent with a constructed neural network
+     * @param populationSize Number of members in each generation, which must be even
+     * @param gamesPerMember Number of games each member plays against the center, which must be even
+     * @param sigma Standard deviation of the noise
+     * @param learningRate Size of each step
+     * @param seed Seed of the noise
+     */
+    public EvolutionTrainer(@NotNull NeuralAgent agent, int populationSize, int gamesPerMember, double sigma, double learningRate, long seed) {
+        if(populationSize < 2 || populationSize % 2 != 0) throw new IllegalArgumentException("Cannot construct EvolutionTrainer: population size must be even and at least 2, but is " + populationSize + ".");
+        if(gamesPerMember < 2 || gamesPerMember % 2 != 0) throw new IllegalArgumentException("Cannot construct EvolutionTrainer: games per member must be even and at least 2, but is " + gamesPerMember + ".");
+        if(sigma <= 0) throw new IllegalArgumentException("Cannot construct EvolutionTrainer: sigma must be positive, but is " + sigma + ".");
+
+        this.populationSize = populationSize;
+        this.gamesPerMember = gamesPerMember;
+        this.sigma = sigma;
+        this.learningRate = learningRate;
+
+        INDArray params = EvolutionTrainer.modelOf(agent).params();
+        this.center = params.reshape(1, params.length()).dup();
+        this.population = Nd4j.create(this.center.dataType(), populationSize, this.center.length());
+        this.noise = Nd4j.create(this.center.dataType(), 1, this.center.length());
+        this.noiseRandom = Nd4j.getRandomFactory().getNewRandomInstance(seed);
+        this.seedRandom = new java.util.Random(seed);
+        this.pairSeeds = new long[populationSize / 2];
+        this.scores = new AtomicIntegerArray(populationSize);
+        this.generation = 0;
+    }
+
+    /**
+     * Creates a trainer with a population of 16 members playing 2 games each, sigma 0.02 and learning rate 0.01.
+     * @param agent Agent with a constructed neural network
+     * @param seed Seed of the noise
+     */
+    public EvolutionTrainer(@NotNull NeuralAgent agent, long seed) {
+        this(agent, 16, 2, 0.02, 0.01, seed);
+    }
+
+    /**
+     * Plays one generation on runner and moves the center towards its best members.
+     * If the runner is stopped before every game is played, the center is left as it was.
+     * Must not be called by more than one thread at a time.
+     * @param runner Runner that was constructed with this trainer
+     * @return Totals of the generation's games
+     */
+    @NotNull
+    public SelfPlayStats runGeneration(@NotNull SelfPlayRunner runner) {
+        if(runner.getTrainer() != this) throw new IllegalArgumentException("Tried to run a generation on " + runner + ", but it was constructed with another trainer.");
+
+        this.sample();
+        SelfPlayStats stats = runner.run(this.getGamesPerGeneration());
+        if(stats.games() < this.getGamesPerGeneration()) return stats;
+
+        this.update();
+        this.generation++;
+        return stats;
+    }
+
+    @Override
+    public void beforeGame(int game, @NotNull AIAgent white, @NotNull AIAgent black) {
+        int member = game / this.gamesPerMember;
+        boolean memberIsWhite = EvolutionTrainer.memberIsWhite(game, this.gamesPerMember);
+
+        EvolutionTrainer.modelOf(memberIsWhite ? white : black).setParams(this.population.getRow(member, true));
+        EvolutionTrainer.modelOf(memberIsWhite ? black : white).setParams(this.center);
+    }
+
+    @Override
+    public void afterGame(@NotNull GameResult result, @NotNull AIAgent white, @NotNull AIAgent black) {
+        Player memberPlayer = EvolutionTrainer.memberIsWhite(result.game(), this.gamesPerMember) ? Player.WHITE : Player.BLACK;
+        int score = result.isDraw() ? DRAW_SCORE : result.winner() == memberPlayer ? WIN_SCORE : 0;
+        this.scores.addAndGet(result.game() / this.gamesPerMember, score);
+    }
+
+    /**
+     * Gives agent the center's parameters, for example to save them or play with them.
+     * Must not be called while a generation is running.
+     * @param agent Agent with a constructed neural network of the same shape
+     */
+    public void applyCenter(@NotNull NeuralAgent agent) {
+        EvolutionTrainer.modelOf(agent).setParams(this.center);
+    }
+
+    /**
+     * Returns the number of games played in each generation.
+     * @return Population size times games per member
+     */
+    public int getGamesPerGeneration() {
+        return this.populationSize * this.gamesPerMember;
+    }
+
+    /**
+     * Returns the number of generations finished.
+     * @return The number of updates of the center
+     */
+    public int getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Draws the seeds of a new generation, fills the population from them and clears the scores.
+     */
+    private void sample() {
+        for(int pair = 0; pair < this.pairSeeds.length; pair++) {
+            this.pairSeeds[pair] = this.seedRandom.nextLong();
+            this.drawNoise(pair);
+
+            this.population.getRow(2 * pair, true).assign(this.center).addi(this.noise.muli(this.sigma));
+            this.population.getRow(2 * pair + 1, true).assign(this.center).subi(this.noise);
+        }
+
+        for(int member = 0; member < this.populationSize; member++) this.scores.set(member, 0);
+    }
+
+    /**
+     * Moves the center along the noise of every pair, weighted by the ranks of its two members.
+     */
+    private void update() {
+        double[] weights = this.centeredRanks();
+        double stepScale = this.learningRate / (this.populationSize * this.sigma);
+
+        for(int pair = 0; pair < this.pairSeeds.length; pair++) {
+            double weight = weights[2 * pair] - weights[2 * pair + 1];
+            if(weight == 0) continue;
+
+            this.drawNoise(pair);
+            this.center.addi(this.noise.muli(weight * stepScale));
+        }
+    }
+
+    /**
+     * Returns the rank of every member's score mapped evenly onto -0.5 to 0.5, members with the same score sharing the mean of their ranks.
+     */
+    private double[] centeredRanks() {
+        Integer[] order = new Integer[this.populationSize];
+        for(int member = 0; member < order.length; member++) order[member] = member;
+        Arrays.sort(order, (a, b) -> Integer.compare(this.scores.get(a), this.scores.get(b)));
+
+        double[] ranks = new double[this.populationSize];
+        for(int start = 0, end; start < order.length; start = end) {
+            end = start + 1;
+            while(end < order.length && this.scores.get(order[end]) == this.scores.get(order[start])) end++;
+
+            double rank = (start + end - 1) / 2.0 / (this.populationSize - 1) - 0.5;
+            for(int i = start; i < end; i++) ranks[order[i]] = rank;
+        }
+
+        return ranks;
+    }
+
+    /**
+     * Returns whether the member playing game plays White, which it does in the even games of its match.
+     */
+    private static boolean memberIsWhite(int game, int gamesPerMember) {
+        return (game % gamesPerMember) % 2 == 0;
+    }
+
+    /**
+     * Draws the noise of pair into noise, the same every time for the same seed.
+     */
+    private void drawNoise(int pair) {
+        this.noiseRandom.setSeed(this.pairSeeds[pair]);
+        Nd4j.randn(this.noise, this.noiseRandom);
+    }
+
+    /**
+     * Returns the network of agent, which must be a NeuralAgent whose network has been constructed.
+     */
+    private static MultiLayerNetwork modelOf(AIAgent agent) {
+        if(!(agent instanceof NeuralAgent neuralAgent)) throw new IllegalArgumentException("Tried to train " + agent + " with an EvolutionTrainer, but it is not a NeuralAgent.");
+        if(neuralAgent.getModel() == null) throw new IllegalArgumentException("Tried to train " + agent + " with an EvolutionTrainer, but its model is not yet initialized.");
+
+        return neuralAgent.getModel();
+    }
+}
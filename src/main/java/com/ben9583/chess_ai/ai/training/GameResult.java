@@ -0,0 +1,22 @@
+package com.ben9583.chess_ai.ai.training;
+
+import com.ben9583.chess_ai.components.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The outcome of one game of self-play.
+ * @param game Number of the game in its run, from 0
+ * @param winner Player who won, or null if the game was drawn
+ * @param reason Why the game ended, as given by Board.getGameOverReason
+ * @param pgn Moves of the game, as given by Board.getPGN
+ */
+public record GameResult(int game, @Nullable Player winner, @NotNull String reason, @NotNull String pgn) {
+    /**
+     * Returns whether the game was drawn.
+     * @return True if neither player won
+     */
+    public boolean isDraw() {
+        return this.winner == null;
+    }
+}
@@ -0,0 +1,247 @@
+package com.ben9583.chess_ai.ai.training;
+
+import com.ben9583.chess_ai.ai.AIAgent;
+import com.ben9583.chess_ai.ai.utils.Move;
+import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.components.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Plays games of an AI against itself on several threads at once, and
+ * hands every finished game to a shared SelfPlayTrainer.
+ *
+ * Each worker owns a Board and a pair of agents made for it, and plays game
+ * after game on them until the run has played as many as it was asked for.
+ * The threads, boards and agents are made once, when the runner is
+ * constructed, and reused by every run until the runner is shut down.
+ * Workers share nothing but the counter handing out game numbers, the
+ * trainer and the totals, so games per second grow with the number of
+ * threads as long as there are cores for them and the trainer is quick.
+ *
+ * Agents play without a deadline and never ponder, which would only take
+ * cores from the other workers.
+ *
+ * See also: SelfPlayTrainer, SelfPlayStats
+ */
+public class SelfPlayRunner {
+    /**
+     * Makes the agents a worker plays with.
+     */
+    @FunctionalInterface
+    public interface AgentFactory {
+        /**
+         * Creates an agent playing as player on board.
+         * @param board Board the worker plays on, which only it uses
+         * @param player Player the agent plays as
+         * @return The agent
+         */
+        @NotNull
+        AIAgent create(@NotNull Board board, @NotNull Player player);
+    }
+
+    /* Number of games played at once, each on its own thread. */
+    private final int threads;
+    /* Board of each worker. */
+    @NotNull
+    private final Board[] boards;
+    /* Agents of each worker, playing White and Black on its board. */
+    @NotNull
+    private final AIAgent[] whiteAgents;
+    @NotNull
+    private final AIAgent[] blackAgents;
+    /* Threads the workers run on. */
+    @NotNull
+    private final ExecutorService executor;
+    /* Learns from the games of every worker. */
+    @NotNull
+    private final SelfPlayTrainer trainer;
+
+    /* External function run on the worker's thread after the trainer has seen each game, or null. */
+    @Nullable
+    private volatile Consumer<GameResult> onGameFinished = null;
+    /* Whether the current run was stopped before playing every game. */
+    private volatile boolean stopped;
+
+    /**
+     * Creates a runner playing threads games at once, and the board, agents and thread of every worker.
+     * @param threads Number of worker threads
+     * @param agentFactory Makes the agents of each worker, called on the calling thread
+     * @param trainer Learns from the games, which must be thread-safe if threads is more than 1
+     */
+    public SelfPlayRunner(int threads, @NotNull AgentFactory agentFactory, @NotNull SelfPlayTrainer trainer) {
+        if(threads < 1) throw new IllegalArgumentException("Cannot construct SelfPlayRunner: threads must be at least 1, but is " + threads + ".");
+
+        this.threads = threads;
+        this.trainer = trainer;
+
+        this.boards = new Board[threads];
+        this.whiteAgents = new AIAgent[threads];
+        this.blackAgents = new AIAgent[threads];
+        for(int i = 0; i < threads; i++) {
+            this.boards[i] = new Board();
+            this.whiteAgents[i] = agentFactory.create(this.boards[i], Player.WHITE);
+            this.blackAgents[i] = agentFactory.create(this.boards[i], Player.BLACK);
+        }
+
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "self-play");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the callback function to be fired when a game has ended and the trainer has learned from it.
+     * It runs on the worker that played the game, so it must be thread-safe.
+     * @param onGameFinished Consumer given the outcome of each game, or null
+     */
+    public void bindGameFinishedEvent(@Nullable Consumer<GameResult> onGameFinished) {
+        this.onGameFinished = onGameFinished;
+    }
+
+    /**
+     * Plays games games, spread over the worker threads, and waits for all of them to finish.
+     * Must not be called by more than one thread at a time.
+     * @param games Number of games to play
+     * @return Totals of the games played
+     */
+    @NotNull
+    public SelfPlayStats run(int games) {
+        if(games < 0) throw new IllegalArgumentException("Tried to play " + games + " games, but the number of games must not be negative.");
+        if(this.executor.isShutdown()) throw new IllegalStateException("Tried to play " + games + " games, but the runner has been shut down.");
+
+        long start = System.nanoTime();
+        this.stopped = false;
+
+        AtomicInteger nextGame = new AtomicInteger();
+        // Games finished, and games won by each player.
+        AtomicInteger[] tally = { new AtomicInteger(), new AtomicInteger(), new AtomicInteger() };
+
+        int workers = Math.max(1, Math.min(this.threads, games));
+        List<Future<?>> results = new ArrayList<>(workers);
+        try {
+            for(int i = 0; i < workers; i++) {
+                int worker = i;
+                results.add(this.executor.submit(() -> this.work(worker, nextGame, games, tally)));
+            }
+            for(Future<?> result : results) this.await(result);
+        } finally {
+            // Make sure no worker is still playing when this returns, even if another one failed.
+            this.stopped = true;
+            for(Future<?> result : results) {
+                try {
+                    result.get();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch(ExecutionException e) {
+                    // Already reported by await.
+                }
+            }
+        }
+
+        int finished = tally[0].get();
+        int whiteWins = tally[1 + Player.WHITE.ordinal()].get();
+        int blackWins = tally[1 + Player.BLACK.ordinal()].get();
+        return new SelfPlayStats(finished, whiteWins, blackWins, finished - whiteWins - blackWins, workers, System.nanoTime() - start);
+    }
+
+    /**
+     * Makes the current run stop once every worker has finished the game it is playing. Can be called from any thread.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * Stops the worker threads. The runner can't play any more games afterwards.
+     */
+    public void shutdown() {
+        this.stopped = true;
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Returns the trainer this hands its games to.
+     * @return The trainer
+     */
+    @NotNull
+    public SelfPlayTrainer getTrainer() {
+        return this.trainer;
+    }
+
+    /**
+     * Returns the number of games this plays at once.
+     * @return The number of worker threads
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Plays games on the board and agents of worker, taking the next game number each time, until there are none left.
+     */
+    private void work(int worker, AtomicInteger nextGame, int games, AtomicInteger[] tally) {
+        Board board = this.boards[worker];
+        AIAgent white = this.whiteAgents[worker];
+        AIAgent black = this.blackAgents[worker];
+
+        for(int game = nextGame.getAndIncrement(); game < games && !this.stopped; game = nextGame.getAndIncrement()) {
+            board.resetGame();
+            this.trainer.beforeGame(game, white, black);
+            SelfPlayRunner.playOut(board, white, black);
+
+            GameResult result = new GameResult(game, board.getWinner(), board.getGameOverReason(), board.getPGN());
+            tally[0].incrementAndGet();
+            if(result.winner() != null) tally[1 + result.winner().ordinal()].incrementAndGet();
+
+            this.trainer.afterGame(result, white, black);
+
+            Consumer<GameResult> onGameFinished = this.onGameFinished;
+            if(onGameFinished != null) onGameFinished.accept(result);
+        }
+    }
+
+    /**
+     * Lets white and black play on board until the game is over.
+     */
+    private static void playOut(Board board, AIAgent white, AIAgent black) {
+        while(!board.isGameOver()) {
+            AIAgent whoShouldPlay = board.getWhoseTurn().equals(Player.WHITE) ? white : black;
+            if(whoShouldPlay.shouldResign()) {
+                board.resign(board.getWhoseTurn());
+                return;
+            }
+
+            Move nextMove = whoShouldPlay.getNextMove();
+            nextMove.piece().movePiece(nextMove.position());
+            if(board.awaitingPromotion()) board.promote(whoShouldPlay.promote());
+        }
+    }
+
+    /**
+     * Waits for a worker to finish, stopping the others if it failed.
+     */
+    private void await(Future<?> future) {
+        try {
+            future.get();
+        } catch(InterruptedException e) {
+            this.stopped = true;
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Self-play was interrupted.", e);
+        } catch(ExecutionException e) {
+            this.stopped = true;
+            throw new IllegalStateException("Self-play failed on a worker thread.", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.ben9583.chess_ai.ai.training;
+
+/**
+ * Totals of a run of self-play games by a SelfPlayRunner.
+ * @param games Number of games finished
+ * @param whiteWins Number of games won by White
+ * @param blackWins Number of games won by Black
+ * @param draws Number of games drawn
+ * @param threads Number of threads the games were played on
+ * @param timeNanos Wall-clock time the run took, in nanoseconds
+ */
+public record SelfPlayStats(int games, int whiteWins, int blackWins, int draws, int threads, long timeNanos) {
+    /**
+     * Returns how many games were finished per second, over every thread together.
+     * @return Games per second
+     */
+    public double gamesPerSecond() {
+        return this.games * 1e9 / Math.max(1, this.timeNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "games " + this.games + " (+" + this.whiteWins + " -" + this.blackWins + " =" + this.draws + ")"
+                + " threads " + this.threads + " time " + this.timeNanos / 1_000_000 + " ms games/s " + String.format("%.2f", this.gamesPerSecond());
+    }
+}
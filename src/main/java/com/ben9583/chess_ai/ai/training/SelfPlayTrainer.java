@@ -0,0 +1,30 @@
+package com.ben9583.chess_ai.ai.training;
+
+import com.ben9583.chess_ai.ai.AIAgent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Learns from games a SelfPlayRunner plays between its agents. One trainer
+ * is shared by every worker of the runner, and both methods are called on
+ * the worker playing the game, so they must be thread-safe. The agents
+ * passed in belong to that worker alone.
+ *
+ * See also: SelfPlayRunner, EvolutionTrainer
+ */
+public interface SelfPlayTrainer {
+    /**
+     * Gets a worker's agents ready for a game, for example by giving them the latest parameters.
+     * @param game Number of the game in the run, from 0
+     * @param white Agent about to play White
+     * @param black Agent about to play Black
+     */
+    void beforeGame(int game, @NotNull AIAgent white, @NotNull AIAgent black);
+
+    /**
+     * Learns from a game that just ended.
+     * @param result Outcome of the game
+     * @param white Agent that played White, still as it was during the game
+     * @param black Agent that played Black, still as it was during the game
+     */
+    void afterGame(@NotNull GameResult result, @NotNull AIAgent white, @NotNull AIAgent black);
+}
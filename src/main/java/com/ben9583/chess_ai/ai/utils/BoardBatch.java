@@ -0,0 +1,93 @@
+package com.ben9583.chess_ai.ai.utils;
+
+import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import org.jetbrains.annotations.NotNull;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A batch of boards encoded for a neural network, in one INDArray of shape
+ * [capacity, ranks, files, channels] (NHWC) that is allocated once.
+ * Boards are written straight into the array's off-heap memory with
+ * Board.encode, so adding a board allocates nothing and the network reads
+ * the batch without it being copied.
+ *
+ * See also: Board.encode, NeuralAgent
+ */
+public class BoardBatch {
+    /* Encoded boards, one slot of Board.ENCODED_SIZE floats after another. */
+    @NotNull
+    private final INDArray input;
+    /* The memory of input, written to directly. */
+    @NotNull
+    private final FloatBuffer buffer;
+    /* Number of slots in input. */
+    private final int capacity;
+    /* Number of slots in use, from the first. */
+    private int size;
+
+    /**
+     * Creates an empty batch with room for capacity boards.
+     * @param capacity Number of boards the batch holds, at least 1
+     */
+    public BoardBatch(int capacity) {
+        if(capacity < 1) throw new IllegalArgumentException("Cannot construct BoardBatch: capacity must be at least 1, but is " + capacity + ".");
+
+        this.input = Nd4j.create(DataType.FLOAT, capacity, Bitboards.RANKS, Bitboards.FILES, Bitboards.NUM_PIECE_CODES);
+        this.buffer = this.input.data().asNioFloat();
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    /**
+     * Encodes the current position of board into the next free slot.
+     * @param board Board to encode
+     * @return Index of the slot it went in
+     */
+    public int add(@NotNull Board board) {
+        if(this.size == this.capacity) throw new IllegalStateException("Tried to add a board to a batch, but all " + this.capacity + " slots are in use.");
+
+        board.encode(this.buffer, this.size * Board.ENCODED_SIZE);
+        return this.size++;
+    }
+
+    /**
+     * Empties the batch so its slots can be written again.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of boards in the batch.
+     * @return The number of slots in use
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of boards the batch can hold.
+     * @return The number of slots
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the boards in the batch as network input. When the batch isn't full this is a view of
+     * the slots in use, so it shares memory with the batch and changes when boards are added.
+     * @return Array of shape [size, ranks, files, channels]
+     */
+    @NotNull
+    public INDArray getInput() {
+        if(this.size == this.capacity) return this.input;
+
+        return this.input.get(NDArrayIndex.interval(0, this.size), NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.all());
+    }
+}
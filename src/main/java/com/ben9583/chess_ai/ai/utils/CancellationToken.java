@@ -0,0 +1,30 @@
+package com.ben9583.chess_ai.ai.utils;
+
+/**
+ * Lets one thread ask an agent thinking on another thread to stop.
+ * Once cancelled, a token stays cancelled, so a new one is needed for every move.
+ * Agents check it while they think and answer with the best move found so far.
+ */
+public final class CancellationToken {
+    /* Whether cancel has been called. */
+    private volatile boolean cancelled;
+
+    public CancellationToken() {
+        this.cancelled = false;
+    }
+
+    /**
+     * Asks whoever holds this token to stop as soon as possible. Can be called from any thread.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Returns whether cancel has been called.
+     * @return Whether to stop
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+}
@@ -0,0 +1,367 @@
+package com.ben9583.chess_ai.ai.utils;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.jetbrains.annotations.NotNull;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * The parameters of a MultiLayerNetwork, or any other list of named arrays
+ * of floats, saved as a flat binary file, which is memory-mapped to load it.
+ *
+ * All numbers are little-endian. The file starts with a header:
+ *   int     MAGIC
+ *   int     VERSION
+ *   int     offset of the parameters from the start of the file
+ *   int     number of parameter arrays
+ *   long    number of parameters
+ *   int     CRC-32C of the parameters
+ *   then for each parameter array, in the order the network flattens them:
+ *     short   length of its name, then the name in UTF-8, such as "0_W"
+ *     byte    rank, then each dimension of its shape as a long
+ *   int     CRC-32C of the header up to here
+ * The parameters follow as 32-bit floats, starting at a multiple of
+ * DATA_ALIGNMENT bytes.
+ *
+ * Opening a checkpoint maps the file and checks the header and both
+ * checksums, and loading it into a network copies the mapped floats
+ * straight into the network's off-heap parameters, with no deserialization
+ * and nothing copied onto the heap. Arrays saved for anything else can be
+ * read straight from the mapping with getArray. One open checkpoint can be
+ * loaded into any number of networks, and can be used from any thread.
+ * Saving writes to a temporary file next to the checkpoint and moves it
+ * into place, so a checkpoint is never left half written.
+ */
+public final class ModelCheckpoint {
+    /* First four bytes of every checkpoint: "CKPT". */
+    public static final int MAGIC = 0x54504B43;
+    /* Version of the format written by save. */
+    public static final int VERSION = 1;
+    /* Number of bytes the parameters are aligned to. */
+    public static final int DATA_ALIGNMENT = 64;
+
+    /* Number of bytes of the header before the parameter arrays. */
+    private static final int FIXED_HEADER_SIZE = 28;
+    /* Number of floats written at a time when saving. */
+    private static final int WRITE_CHUNK_FLOATS = 1 << 16;
+
+    /* Names of the parameter arrays, in order. */
+    @NotNull
+    private final List<String> names;
+    /* Shapes of the parameter arrays, in order. */
+    @NotNull
+    private final List<long[]> shapes;
+    /* The parameters, mapped from the file. */
+    @NotNull
+    private final ByteBuffer data;
+    /* Number of parameters. */
+    private final long paramCount;
+
+    /* Index of the first float of each array in data. */
+    @NotNull
+    private final long[] offsets;
+
+    private ModelCheckpoint(@NotNull List<String> names, @NotNull List<long[]> shapes, @NotNull ByteBuffer data, long paramCount) {
+        this.names = names;
+        this.shapes = shapes;
+        this.data = data;
+        this.paramCount = paramCount;
+
+        this.offsets = new long[names.size()];
+        for(int i = 1; i < this.offsets.length; i++) this.offsets[i] = this.offsets[i - 1] + Arrays.stream(shapes.get(i - 1)).reduce(1, (a, b) -> a * b);
+    }
+
+    /**
+     * Returns whether the file at path starts like a checkpoint, without checking the rest of it.
+     * @param path Path of the file
+     * @return True if the file exists and starts with MAGIC
+     */
+    public static boolean isCheckpoint(@NotNull Path path) {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while(magic.hasRemaining()) {
+                if(channel.read(magic) < 0) return false;
+            }
+
+            return magic.getInt(0) == MAGIC;
+        } catch(IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Saves the parameters of model to path, replacing any file there only once the new one is complete.
+     * @param model Network to save, which must have 32-bit float parameters
+     * @param path Path of the checkpoint
+     * @throws IOException If the checkpoint could not be written
+     */
+    public static void save(@NotNull MultiLayerNetwork model, @NotNull Path path) throws IOException {
+        INDArray params = ModelCheckpoint.paramsOf(model);
+        FloatBuffer floats = params.data().asNioFloat();
+        floats.position((int) params.offset()).limit((int) (params.offset() + params.length()));
+
+        List<String> names = new ArrayList<>(model.paramTable().keySet());
+        List<long[]> shapes = new ArrayList<>(names.size());
+        for(INDArray array : model.paramTable().values()) shapes.add(array.shape());
+
+        ModelCheckpoint.save(path, names, shapes, floats);
+    }
+
+    /**
+     * Saves arrays of floats to path, replacing any file there only once the new one is complete.
+     * @param path Path of the checkpoint
+     * @param names Name of each array
+     * @param shapes Shape of each array
+     * @param floats Every array one after another, from its position to its limit
+     * @throws IOException If the checkpoint could not be written
+     */
+    public static void save(@NotNull Path path, @NotNull List<String> names, @NotNull List<long[]> shapes, @NotNull FloatBuffer floats) throws IOException {
+        if(names.size() != shapes.size()) throw new IllegalArgumentException("Tried to save " + names.size() + " names of arrays with " + shapes.size() + " shapes.");
+        long totalLength = 0;
+        for(long[] shape : shapes) totalLength += Arrays.stream(shape).reduce(1, (a, b) -> a * b);
+        if(totalLength != floats.remaining()) throw new IllegalArgumentException("Tried to save arrays with shapes for " + totalLength + " floats, but " + floats.remaining() + " floats.");
+
+        // Work out the checksum of the parameters first, so the header can be written in one go.
+        CRC32C dataCrc = new CRC32C();
+        ByteBuffer chunk = ByteBuffer.allocateDirect(WRITE_CHUNK_FLOATS * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for(FloatBuffer source = floats.duplicate(); ModelCheckpoint.fillChunk(source, chunk); ) dataCrc.update(chunk);
+
+        ByteBuffer header = ModelCheckpoint.writeHeader(names, shapes, totalLength, (int) dataCrc.getValue());
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ModelCheckpoint.writeFully(channel, header);
+            for(FloatBuffer source = floats.duplicate(); ModelCheckpoint.fillChunk(source, chunk); ) ModelCheckpoint.writeFully(channel, chunk);
+            channel.force(true);
+        } catch(IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the checkpoint at path and checks its header and checksums.
+     * @param path Path of the checkpoint
+     * @return The checkpoint, ready to be loaded into networks
+     * @throws IOException If the file could not be read, or is not a valid checkpoint of a known version
+     */
+    @NotNull
+    public static ModelCheckpoint open(@NotNull Path path) throws IOException {
+        MappedByteBuffer file;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        file.order(ByteOrder.LITTLE_ENDIAN);
+
+        if(file.limit() < FIXED_HEADER_SIZE || file.getInt(0) != MAGIC) throw new IOException(path + " is not a model checkpoint.");
+        int version = file.getInt(4);
+        if(version != VERSION) throw new IOException(path + " is a version " + version + " checkpoint, but only version " + VERSION + " can be read.");
+
+        int dataOffset = file.getInt(8);
+        int arrayCount = file.getInt(12);
+        long paramCount = file.getLong(16);
+        int dataCrc = file.getInt(24);
+        if(dataOffset < FIXED_HEADER_SIZE || dataOffset > file.limit() || arrayCount < 0 || paramCount < 0
+                || paramCount > (file.limit() - dataOffset) / Float.BYTES) throw new IOException(path + " has a corrupt header.");
+
+        List<String> names = new ArrayList<>(arrayCount);
+        List<long[]> shapes = new ArrayList<>(arrayCount);
+        long totalLength = 0;
+        try {
+            ByteBuffer header = file.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(FIXED_HEADER_SIZE).limit(dataOffset);
+            for(int i = 0; i < arrayCount; i++) {
+                byte[] name = new byte[header.getShort()];
+                header.get(name);
+                names.add(new String(name, StandardCharsets.UTF_8));
+
+                long[] shape = new long[header.get()];
+                long length = 1;
+                for(int d = 0; d < shape.length; d++) {
+                    shape[d] = header.getLong();
+                    length *= shape[d];
+                }
+                shapes.add(shape);
+                totalLength += length;
+            }
+
+            int headerEnd = header.position();
+            CRC32C headerCrc = new CRC32C();
+            headerCrc.update(file.duplicate().position(0).limit(headerEnd));
+            if(header.getInt() != (int) headerCrc.getValue()) throw new IOException(path + " has a corrupt header.");
+        } catch(RuntimeException e) {
+            throw new IOException(path + " has a corrupt header.", e);
+        }
+        if(totalLength != paramCount) throw new IOException(path + " has shapes for " + totalLength + " parameters, but " + paramCount + " parameters.");
+
+        ByteBuffer data = file.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(dataOffset).limit((int) (dataOffset + paramCount * Float.BYTES)).slice().order(ByteOrder.LITTLE_ENDIAN);
+        CRC32C crc = new CRC32C();
+        crc.update(data.duplicate());
+        if((int) crc.getValue() != dataCrc) throw new IOException(path + " has corrupt parameters: the checksum does not match.");
+
+        return new ModelCheckpoint(Collections.unmodifiableList(names), Collections.unmodifiableList(shapes), data, paramCount);
+    }
+
+    /**
+     * Copies the parameters into model, which must have parameter arrays of the same names and shapes, in the same order.
+     * @param model Network to load into, which must have 32-bit float parameters
+     */
+    public void loadInto(@NotNull MultiLayerNetwork model) {
+        Map<String, INDArray> table = model.paramTable();
+        if(table.size() != this.names.size()) throw new IllegalArgumentException("Tried to load a checkpoint of " + this.names.size() + " parameter arrays into a network with " + table.size() + ".");
+
+        int i = 0;
+        for(Map.Entry<String, INDArray> entry : table.entrySet()) {
+            if(!entry.getKey().equals(this.names.get(i)) || !Arrays.equals(entry.getValue().shape(), this.shapes.get(i))) {
+                throw new IllegalArgumentException("Tried to load parameters " + this.names.get(i) + " of shape " + Arrays.toString(this.shapes.get(i))
+                        + " into " + entry.getKey() + " of shape " + Arrays.toString(entry.getValue().shape()) + ".");
+            }
+            i++;
+        }
+
+        INDArray params = ModelCheckpoint.paramsOf(model);
+        if(params.length() != this.paramCount) throw new IllegalArgumentException("Tried to load " + this.paramCount + " parameters into a network with " + params.length() + ".");
+
+        FloatBuffer target = params.data().asNioFloat();
+        target.position((int) params.offset());
+        target.put(this.data.asFloatBuffer());
+    }
+
+    /**
+     * Returns the names of the parameter arrays, in the order the network flattens them.
+     * @return The names, such as "0_W"
+     */
+    @NotNull
+    public List<String> getNames() {
+        return this.names;
+    }
+
+    /**
+     * Returns the shape of the array called name.
+     * @param name Name of the array
+     * @return A copy of its shape
+     */
+    @NotNull
+    public long[] getShape(@NotNull String name) {
+        return this.shapes.get(this.indexOf(name)).clone();
+    }
+
+    /**
+     * Returns the floats of the array called name, read straight from the mapped file.
+     * @param name Name of the array
+     * @return A read-only buffer of its floats, in row-major order
+     */
+    @NotNull
+    public FloatBuffer getArray(@NotNull String name) {
+        int index = this.indexOf(name);
+        long length = Arrays.stream(this.shapes.get(index)).reduce(1, (a, b) -> a * b);
+
+        FloatBuffer floats = this.data.asFloatBuffer();
+        floats.position((int) this.offsets[index]).limit((int) (this.offsets[index] + length));
+        return floats.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the number of parameters.
+     * @return The number of floats in the checkpoint
+     */
+    public long getParamCount() {
+        return this.paramCount;
+    }
+
+    /**
+     * Returns the index of the array called name.
+     */
+    private int indexOf(String name) {
+        int index = this.names.indexOf(name);
+        if(index == -1) throw new IllegalArgumentException("Tried to read array " + name + " from a checkpoint, but it only has " + this.names + ".");
+
+        return index;
+    }
+
+    /**
+     * Returns the flattened parameters of model, which must be a contiguous array of 32-bit floats.
+     */
+    private static INDArray paramsOf(MultiLayerNetwork model) {
+        INDArray params = model.params();
+        if(params.dataType() != DataType.FLOAT) throw new IllegalArgumentException("Tried to checkpoint a network with " + params.dataType() + " parameters, but only FLOAT can be saved.");
+        if(params.length() != params.data().length() - params.offset()) throw new IllegalArgumentException("Tried to checkpoint a network whose parameters are not contiguous.");
+
+        return params;
+    }
+
+    /**
+     * Returns the header for arrays with names and shapes, padded to where the parameters start.
+     */
+    private static ByteBuffer writeHeader(List<String> names, List<long[]> shapes, long paramCount, int dataCrc) {
+        int size = FIXED_HEADER_SIZE + Integer.BYTES;
+        List<byte[]> encodedNames = new ArrayList<>(names.size());
+        for(int i = 0; i < names.size(); i++) {
+            byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+            encodedNames.add(name);
+            size += Short.BYTES + name.length + 1 + shapes.get(i).length * Long.BYTES;
+        }
+        int dataOffset = (size + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+
+        ByteBuffer header = ByteBuffer.allocate(dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(dataOffset).putInt(names.size()).putLong(paramCount).putInt(dataCrc);
+
+        for(int i = 0; i < names.size(); i++) {
+            header.putShort((short) encodedNames.get(i).length).put(encodedNames.get(i));
+            header.put((byte) shapes.get(i).length);
+            for(long dimension : shapes.get(i)) header.putLong(dimension);
+        }
+
+        CRC32C headerCrc = new CRC32C();
+        headerCrc.update(header.array(), 0, header.position());
+        header.putInt((int) headerCrc.getValue());
+
+        return header.clear();
+    }
+
+    /**
+     * Fills chunk with the next floats of source, little-endian, and flips it for reading.
+     * @return Whether there were any floats left
+     */
+    private static boolean fillChunk(FloatBuffer source, ByteBuffer chunk) {
+        chunk.clear();
+        FloatBuffer floats = chunk.asFloatBuffer();
+        int count = Math.min(source.remaining(), floats.capacity());
+        floats.put(source.slice().limit(count));
+        source.position(source.position() + count);
+
+        chunk.limit(count * Float.BYTES);
+        return count > 0;
+    }
+
+    /**
+     * Writes all of buffer to channel.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) channel.write(buffer);
+    }
+}
@@ -0,0 +1,40 @@
+package com.ben9583.chess_ai.ai.utils;
+
+/**
+ * The time a player has left on their clock, from which the time to spend on one move is worked out.
+ * @param remainingMillis Time left on the clock, in milliseconds
+ * @param incrementMillis Time added to the clock after every move, in milliseconds
+ * @param movesToGo Number of moves until more time is added, or 0 if the time has to last the rest of the game
+ */
+public record TimeControl(long remainingMillis, long incrementMillis, int movesToGo) {
+    /* Number of moves the remaining time is spread over when movesToGo is 0. */
+    private static final int EXPECTED_MOVES = 30;
+    /* Time always kept back on the clock for the move to reach the board, in milliseconds. */
+    private static final long OVERHEAD_MILLIS = 50;
+
+    public TimeControl {
+        if(remainingMillis < 0) throw new IllegalArgumentException("Cannot construct TimeControl: remaining time must not be negative, but is " + remainingMillis + ".");
+        if(incrementMillis < 0) throw new IllegalArgumentException("Cannot construct TimeControl: increment must not be negative, but is " + incrementMillis + ".");
+        if(movesToGo < 0) throw new IllegalArgumentException("Cannot construct TimeControl: moves to go must not be negative, but is " + movesToGo + ".");
+    }
+
+    /**
+     * Returns how long to spend on the next move: an even share of the remaining time plus most
+     * of the increment, never using up the clock.
+     * @return Time to spend on the move, in milliseconds, at least 1
+     */
+    public long moveTimeMillis() {
+        long share = this.remainingMillis / (this.movesToGo == 0 ? EXPECTED_MOVES : this.movesToGo);
+        long budget = share + this.incrementMillis * 3 / 4;
+
+        return Math.max(1, Math.min(budget, this.remainingMillis - OVERHEAD_MILLIS));
+    }
+
+    /**
+     * Returns the System.nanoTime by which the next move should be decided, if thinking starts now.
+     * @return Deadline for the move
+     */
+    public long deadlineNanos() {
+        return System.nanoTime() + this.moveTimeMillis() * 1_000_000;
+    }
+}
@@ -1,33 +1,72 @@
 package com.ben9583.chess_ai.components;
 
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.MoveGenerator;
+import com.ben9583.chess_ai.components.bitboard.MoveList;
+import com.ben9583.chess_ai.components.bitboard.PackedMove;
+import com.ben9583.chess_ai.components.bitboard.Perft;
+import com.ben9583.chess_ai.components.bitboard.Position;
+import com.ben9583.chess_ai.components.bitboard.PositionSnapshot;
 import com.ben9583.chess_ai.components.pieces.*;
 import com.ben9583.chess_ai.utils.Vector2;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 public class Board {
+    /* Number of floats encode writes: one channel for each piece code on every square. */
+    public static final int ENCODED_SIZE = Bitboards.SQUARES * Bitboards.NUM_PIECE_CODES;
+    /* Channel of get3DBoard and encode each piece is marked in, by color and then type. White's pieces come first. */
+    private static final int[][] ENCODING_CHANNELS = {
+            { 0, 1, 2, 3, 4, 5 },
+            { 6, 7, 8, 9, 10, 11 }
+    };
+    /* Encoding of an empty board, copied over a slot before its pieces are marked. */
+    private static final float[] EMPTY_ENCODING = new float[ENCODED_SIZE];
+
+    /* Bitboards of every piece on this board. This is the source of truth for where pieces are. */
+    @NotNull
+    private final Position position;
+    /* The piece object on each square, indexed the same way as the bitboards. See also: Bitboards.square */
+    @NotNull
+    private final Piece[] squares;
+
+    /* The piece object captured by each move on the undo stack of position, so unmaking a move puts the same object back. */
+    private Piece[] capturedPieces;
+    /* The piece object moved by each move on the undo stack of position. Differs from the piece that lands after a promotion. */
+    private Piece[] movedPieces;
+
+    /* List the legal moves of the current position are generated into by this board. */
+    @NotNull
+    private final MoveList legalMoves;
 
-    /* 2D array representing all the pieces belonging to this board at (x, y). */
-    private Piece[][] board;
-    /* Lookup table to make finding pieces easier. */
+    /* Piece objects of every piece code, created once and handed out again whenever the board is set up. */
     @NotNull
-    private Map<Piece, Vector2> pieces;
+    private final Piece[][] piecePool;
+    /* Number of piece objects of each piece code currently handed out from piecePool. */
+    @NotNull
+    private final int[] piecesInUse;
 
-    /* Whose turn it is in the game. */
+    /* Value of each type of piece in centipawns, indexed by Bitboards type. Piece.getValue times 100, and 0 for kings, as in MaterialEvaluator. */
+    @NotNull
+    private final int[] pieceValues;
+    /* Material balance after each capture of the exchange worked out by staticExchange. */
     @NotNull
-    private Player whoseTurn;
+    private final int[] exchangeGains;
 
-    /* Whether castling is possible for each player and each side. */
-    private boolean castleWhiteKing;
-    private boolean castleWhiteQueen;
-    private boolean castleBlackKing;
-    private boolean castleBlackQueen;
+    /* The standard starting position, which every board is reset to. */
+    private static final PositionSnapshot STARTING_POSITION = new PositionSnapshot();
+
+    static {
+        Position start = new Position();
+        start.loadFEN(Position.START_FEN);
+        start.capture(STARTING_POSITION);
+    }
 
     /* The previous square the pawn was on before promoting. This is used to properly notates capture-then-promote sequences. */
     @Nullable
@@ -37,28 +76,20 @@ public class Board {
     @Nullable
     private Vector2 awaitPromotion;
 
-    /* The Vector2 corresponding to the position at which en passant can take place, following FEN notation. */
-    @Nullable
-    private Vector2 enPassantPosition;
-
-    /* Number of half-moves since a capture or pawn move. Draw at 50. */
-    private int halfMoveClock;
-    /* Number of full-moves occurred since this game started. */
-    private int fullMoveNumber;
-
-    /* Number of times a given position has been reached. Two positions are equal by rules of threefold repetition. */
-    private Map<String, Integer> reachedPositions;
+    /* Number of half-moves since a capture or pawn move at which the game is drawn. */
+    public static final int HALF_MOVE_CLOCK_LIMIT = 50;
 
     /* Record of all moves made, in standard algebraic notation. */
-    private List<String> notationMoves;
+    @NotNull
+    private final List<String> notationMoves;
 
     /* Whether the game is over because of checkmate or stalemate. */
     private boolean gameOver;
     /* Message for why the game ended. */
     private String gameOverReason;
-
-    /* Whether the next move should increment the turn. Used for validating checks. */
-    private boolean disableMovementThisTurn;
+    /* Player who won the game, or null if it is not over or was drawn. */
+    @Nullable
+    private Player winner;
 
     /* The piece the user clicked. See also: Board2D */
     private Vector2 clicked;
@@ -70,72 +101,114 @@ public class Board {
      * Creates a standard chess board.
      */
     public Board() {
-        this.board = new Piece[][]{
-                { new Rook(Player.WHITE, this), new Knight(Player.WHITE, this), new Bishop(Player.WHITE, this), new Queen(Player.WHITE, this), new King(Player.WHITE, this), new Bishop(Player.WHITE, this), new Knight(Player.WHITE, this), new Rook(Player.WHITE, this) },
-                { new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this) },
-                { null, null, null, null, null, null, null, null },
-                { null, null, null, null, null, null, null, null },
-                { null, null, null, null, null, null, null, null },
-                { null, null, null, null, null, null, null, null },
-                { new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this) },
-                { new Rook(Player.BLACK, this), new Knight(Player.BLACK, this), new Bishop(Player.BLACK, this), new Queen(Player.BLACK, this), new King(Player.BLACK, this), new Bishop(Player.BLACK, this), new Knight(Player.BLACK, this), new Rook(Player.BLACK, this) }
-        };
+        this.position = new Position();
+        this.squares = new Piece[Bitboards.SQUARES];
+        this.capturedPieces = new Piece[64];
+        this.movedPieces = new Piece[64];
+        this.legalMoves = new MoveList();
+        this.piecePool = new Piece[Bitboards.NUM_PIECE_CODES][];
+        this.piecesInUse = new int[Bitboards.NUM_PIECE_CODES];
+        this.notationMoves = new ArrayList<>();
 
-        this.pieces = new HashMap<>();
+        this.pieceValues = new int[Bitboards.NUM_PIECE_TYPES];
+        // Kings are never captured, so their value would only skew the exchanges they take part in.
+        for(int type = 0; type < Bitboards.KING; type++) this.pieceValues[type] = this.createPiece(type, Player.WHITE).getValue() * 100;
+        this.exchangeGains = new int[Bitboards.SQUARES];
 
-        for(int i = 0; i < this.board.length; i++) {
-            for(int j = 0; j < this.board[i].length; j++) {
-                if(this.board[i][j] != null) {
-                    this.pieces.put(this.board[i][j], new Vector2(j, i));
-                }
-            }
-        }
+        this.restoreSnapshot(STARTING_POSITION);
+    }
+
+    /**
+     * Sets up this board from a position in Forsyth-Edwards Notation (FEN) and starts a new game from it.
+     * @param fen Position in FEN, for example "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"
+     */
+    public void loadFEN(@NotNull String fen) {
+        this.position.loadFEN(fen);
+        this.startGame();
+    }
+
+    /**
+     * Saves the current position of this board into snapshot so it can be restored later.
+     * The snapshot is overwritten in place, so the same one can be reused.
+     * @param snapshot Snapshot to save into
+     */
+    public void captureSnapshot(@NotNull PositionSnapshot snapshot) {
+        if(this.awaitPromotion != null) throw new IllegalStateException("Tried to save the position, but a pawn is awaiting promotion.");
+
+        this.position.capture(snapshot);
+    }
+
+    /**
+     * Sets up this board from snapshot and starts a new game from it.
+     * Piece objects are reused, so this does not allocate.
+     * @param snapshot Snapshot saved with captureSnapshot
+     */
+    public void restoreSnapshot(@NotNull PositionSnapshot snapshot) {
+        this.position.restore(snapshot);
+        this.startGame();
+    }
+
+    /**
+     * Sets this board to the current position of other, including the history needed to detect repetitions,
+     * so it can be searched on another thread while other is left alone. The game continues from there:
+     * moves made from now on can be unmade, but the copied history cannot.
+     * @param other Board to copy
+     */
+    public void copyFrom(@NotNull Board other) {
+        if(other.awaitPromotion != null) throw new IllegalStateException("Tried to copy a board, but a pawn is awaiting promotion.");
+
+        this.position.copyFrom(other.position);
+        this.setUpPieces();
 
         this.prevPromotion = null;
         this.awaitPromotion = null;
-        this.enPassantPosition = null;
+        this.notationMoves.clear();
+        this.clicked = null;
 
-        this.reachedPositions = new HashMap<>();
-        this.notationMoves = new ArrayList<>();
+        this.gameOver = other.gameOver;
+        this.gameOverReason = other.gameOverReason;
+        this.winner = other.winner;
+    }
+
+    /**
+     * Puts a piece object on every square that is occupied in position
+     * and clears everything left over from the previous game.
+     */
+    private void startGame() {
+        this.setUpPieces();
+
+        this.prevPromotion = null;
+        this.awaitPromotion = null;
 
-        this.disableMovementThisTurn = false;
-        this.whoseTurn = Player.WHITE;
-        this.castleWhiteKing = true;
-        this.castleWhiteQueen = true;
-        this.castleBlackKing = true;
-        this.castleBlackQueen = true;
+        this.notationMoves.clear();
 
         this.clicked = null;
-        this.halfMoveClock = 0;
-        this.fullMoveNumber = 1;
 
         this.gameOver = false;
         this.gameOverReason = null;
+        this.winner = null;
+        this.checkForGameOver();
     }
 
     /**
-     * Returns a string hash of this board.
-     * Two hashes are equal if they would cause a threefold repetition.
-     * @return A hash of this board
+     * Puts a piece object from the pool on every square that is occupied in position,
+     * and forgets the piece objects of the moves made so far.
      */
-    @NotNull
-    private String getBoardHash() {
-        /*
-        From Wikipedia:
-
-        Two positions are by definition "the same" if the same types of pieces occupy the same squares,
-        the same player has the move, the remaining castling rights are the same and
-        the possibility to capture en passant is the same.
-        */
-
-        String[] components = this.toFEN().split(" ");
-
-        StringBuilder hash = new StringBuilder();
-        for(int i = 0; i < 4; i++) {
-            hash.append(components[i]);
+    private void setUpPieces() {
+        Arrays.fill(this.piecesInUse, 0);
+        for(int square = 0; square < Bitboards.SQUARES; square++) {
+            int code = this.position.pieceAt(square);
+            this.squares[square] = code == Bitboards.EMPTY ? null : this.acquirePiece(code);
         }
 
-        return hash.toString();
+        int depth = this.position.getUndoDepth();
+        if(this.movedPieces.length <= depth) {
+            this.movedPieces = new Piece[depth * 2];
+            this.capturedPieces = new Piece[depth * 2];
+        } else {
+            Arrays.fill(this.movedPieces, null);
+            Arrays.fill(this.capturedPieces, null);
+        }
     }
 
     /**
@@ -159,9 +232,9 @@ public class Board {
         StringBuilder out = new StringBuilder();
 
         int noneCounter = 0;
-        for(int i = this.board.length - 1; i >= 0; i--) {
-            for(int j = 0; j < this.board[i].length; j++) {
-                Piece p = this.getPieceAtPosition(new Vector2(j, i));
+        for(int i = Bitboards.RANKS - 1; i >= 0; i--) {
+            for(int j = 0; j < Bitboards.FILES; j++) {
+                Piece p = this.squares[Bitboards.square(j, i)];
                 if(p == null) {
                     noneCounter++;
                 } else {
@@ -186,7 +259,7 @@ public class Board {
         out.deleteCharAt(out.length() - 1); // get rid of the last '/'
         out.append(' ');
 
-        if(this.whoseTurn.equals(Player.WHITE)) {
+        if(this.getWhoseTurn().equals(Player.WHITE)) {
             out.append('w');
         } else {
             out.append('b');
@@ -195,19 +268,19 @@ public class Board {
         out.append(' ');
 
         boolean neitherSideCanCastle = true;
-        if(this.castleWhiteKing) {
+        if(this.canCastleWhiteKing()) {
             neitherSideCanCastle = false;
             out.append('K');
         }
-        if(this.castleWhiteQueen) {
+        if(this.canCastleWhiteQueen()) {
             neitherSideCanCastle = false;
             out.append('Q');
         }
-        if (this.castleBlackKing) {
+        if (this.canCastleBlackKing()) {
             neitherSideCanCastle = false;
             out.append('k');
         }
-        if (this.castleBlackQueen) {
+        if (this.canCastleBlackQueen()) {
             neitherSideCanCastle = false;
             out.append('q');
         }
@@ -217,16 +290,17 @@ public class Board {
 
         out.append(' ');
 
-        if(this.enPassantPosition != null) {
-            out.append(this.vector2ToSquare(this.enPassantPosition));
+        Vector2 enPassantPosition = this.getEnPassantPosition();
+        if(enPassantPosition != null) {
+            out.append(this.vector2ToSquare(enPassantPosition));
         } else {
             out.append('-');
         }
 
         out.append(' ');
-        out.append(this.halfMoveClock);
+        out.append(this.position.getHalfMoveClock());
         out.append(' ');
-        out.append(this.fullMoveNumber);
+        out.append(this.position.getFullMoveNumber());
 
         return out.toString();
     }
@@ -245,32 +319,44 @@ public class Board {
      * This is in order of Pawn, Knight, Bishop, Rook, Queen, King.
      * For example, a knight on (x, y) would have an entry [0.0, 1.0, 0.0, 0.0, 0.0, 0.0]
      * at [y][x] on the array.
+     * To encode many boards for a network, encode avoids the nested arrays.
      * @return 3D array of floats corresponding to the pieces on this board
      */
     public float[][][] get3DBoard() {
-        float[][][] out = new float[this.board.length][this.board[0].length][];
-        for(int y = 0; y < this.board.length; y++) {
-            for(int x = 0; x < this.board[y].length; x++) {
-                if(this.board[y][x] instanceof Pawn && this.board[y][x].getPlayer().equals(Player.WHITE)) out[y][x] = new float[]{1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f};
-                else if(this.board[y][x] instanceof Knight && this.board[y][x].getPlayer().equals(Player.WHITE)) out[y][x] = new float[]{0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f};
-                else if(this.board[y][x] instanceof Bishop && this.board[y][x].getPlayer().equals(Player.WHITE)) out[y][x] = new float[]{0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f};
-                else if(this.board[y][x] instanceof Rook && this.board[y][x].getPlayer().equals(Player.WHITE)) out[y][x] = new float[]{0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f};
-                else if(this.board[y][x] instanceof Queen && this.board[y][x].getPlayer().equals(Player.WHITE)) out[y][x] = new float[]{0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f};
-                else if(this.board[y][x] instanceof King && this.board[y][x].getPlayer().equals(Player.WHITE)) out[y][x] = new float[]{0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f};
-                else if(this.board[y][x] instanceof Pawn && this.board[y][x].getPlayer().equals(Player.BLACK)) out[y][x] = new float[]{0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f};
-                else if(this.board[y][x] instanceof Knight && this.board[y][x].getPlayer().equals(Player.BLACK)) out[y][x] = new float[]{0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f};
-                else if(this.board[y][x] instanceof Bishop && this.board[y][x].getPlayer().equals(Player.BLACK)) out[y][x] = new float[]{0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f};
-                else if(this.board[y][x] instanceof Rook && this.board[y][x].getPlayer().equals(Player.BLACK)) out[y][x] = new float[]{0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f};
-                else if(this.board[y][x] instanceof Queen && this.board[y][x].getPlayer().equals(Player.BLACK)) out[y][x] = new float[]{0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f};
-                else if(this.board[y][x] instanceof King && this.board[y][x].getPlayer().equals(Player.BLACK)) out[y][x] = new float[]{0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f};
-
-                else out[y][x] = new float[]{0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f};
+        float[][][] out = new float[Bitboards.RANKS][Bitboards.FILES][Bitboards.NUM_PIECE_CODES];
+        for(int color = Bitboards.WHITE; color <= Bitboards.BLACK; color++) {
+            for(int type = 0; type < Bitboards.NUM_PIECE_TYPES; type++) {
+                int channel = ENCODING_CHANNELS[color][type];
+                for(long bb = this.position.getPieces(color, type); bb != 0; bb &= bb - 1) {
+                    int square = Long.numberOfTrailingZeros(bb);
+                    out[Bitboards.rankOf(square)][Bitboards.fileOf(square)][channel] = 1.0f;
+                }
             }
         }
 
         return out;
     }
 
+    /**
+     * Writes the pieces on this board into out the same way as get3DBoard, but flattened
+     * in NHWC order: rank, then file, then channel. The value for channel c of the square
+     * at (x, y) goes at offset + (y * 8 + x) * 12 + c. Nothing is allocated.
+     * @param out Buffer to write into, with room for ENCODED_SIZE floats from offset
+     * @param offset Index in out of the first value to write
+     */
+    public void encode(@NotNull FloatBuffer out, int offset) {
+        out.put(offset, EMPTY_ENCODING);
+
+        for(int color = Bitboards.WHITE; color <= Bitboards.BLACK; color++) {
+            for(int type = 0; type < Bitboards.NUM_PIECE_TYPES; type++) {
+                int channel = ENCODING_CHANNELS[color][type];
+                for(long bb = this.position.getPieces(color, type); bb != 0; bb &= bb - 1) {
+                    out.put(offset + Long.numberOfTrailingZeros(bb) * Bitboards.NUM_PIECE_CODES + channel, 1.0f);
+                }
+            }
+        }
+    }
+
     /**
      * Returns the full set of pieces belonging to player, in no particular order.
      * @param player Player on this board
@@ -278,17 +364,37 @@ public class Board {
      */
     @NotNull
     public Piece[] getPlayerPieces(@NotNull Player player) {
-        List<Piece> pieces = new ArrayList<>();
+        long occupancy = this.position.getOccupancy(Bitboards.colorOf(player));
+        Piece[] pieces = new Piece[Long.bitCount(occupancy)];
 
-        for(int i = 0; i < this.board.length; i++) {
-            for(int j = 0; j < this.board[i].length; j++) {
-                Piece p = this.getPieceAtPosition(new Vector2(j, i));
-                if(p != null && p.getPlayer().equals(player))
-                    pieces.add(p);
-            }
+        int i = 0;
+        for(long bb = occupancy; bb != 0; bb &= bb - 1) {
+            pieces[i++] = this.squares[Long.numberOfTrailingZeros(bb)];
         }
 
-        return pieces.toArray(Piece[]::new);
+        return pieces;
+    }
+
+    /**
+     * Returns the Zobrist key of this board. Two keys are equal if the positions
+     * would count as the same for threefold repetition, so it can also be used
+     * to cache anything worked out about a position.
+     *
+     * See also: Zobrist
+     * @return The Zobrist key of this board
+     */
+    public long getZobristKey() {
+        return this.position.getKey();
+    }
+
+    /**
+     * Returns the bitboards backing this board.
+     * These should be treated as read-only; use the methods on this board to move pieces.
+     * @return The bitboard position of this board
+     */
+    @NotNull
+    public Position getBitboards() {
+        return this.position;
     }
 
     /**
@@ -297,7 +403,7 @@ public class Board {
      * @return Whether location is a square on this board
      */
     public boolean boardExistsAt(@NotNull Vector2 location) {
-        return location.getY() >= 0 && location.getX() >= 0 && location.getY() < this.board.length && location.getX() < this.board[location.getY()].length;
+        return location.getY() >= 0 && location.getX() >= 0 && location.getY() < Bitboards.RANKS && location.getX() < Bitboards.FILES;
     }
 
     /**
@@ -307,29 +413,7 @@ public class Board {
      */
     @Nullable
     public Piece getPieceAtPosition(Vector2 location) {
-        return this.board[location.getY()][location.getX()];
-    }
-
-    /**
-     * Sets the position of piece to location on this board and returns the piece displaced by this action.
-     * @param piece A piece belonging to this board
-     * @param location The square to move this piece to
-     * @return The piece replaced from this position. Position is null, but still belongs to this board
-     */
-    @Nullable
-    private Piece setPosition(@NotNull Piece piece, @NotNull Vector2 location) {
-        Vector2 start = this.getPosition(piece);
-        Piece pieceAtLocation = this.getPieceAtPosition(location);
-
-        assert piece != pieceAtLocation;
-
-        this.board[location.getY()][location.getX()] = piece;
-        this.board[start.getY()][start.getX()] = null;
-
-        this.pieces.put(piece, location);
-        this.pieces.remove(pieceAtLocation);
-
-        return pieceAtLocation;
+        return this.squares[Bitboards.square(location)];
     }
 
     /**
@@ -340,156 +424,287 @@ public class Board {
      */
     @NotNull
     public Vector2 getPosition(@NotNull Piece piece) {
-        Vector2 location = this.pieces.getOrDefault(piece, null);
-        if(location == null) throw new IllegalArgumentException("Piece " + piece + " was not found on the board.");
+        for(long bb = this.position.getPieces(Bitboards.colorOf(piece.getPlayer()), piece.getType()); bb != 0; bb &= bb - 1) {
+            int square = Long.numberOfTrailingZeros(bb);
+            if(this.squares[square] == piece) return Bitboards.toVector2(square);
+        }
 
-        return location;
+        throw new IllegalArgumentException("Piece " + piece + " was not found on the board.");
     }
 
     /**
-     * Function that changes whose turn it is.
-     * Also checks for game-ending conditions like checkmate or stalemate.
+     * Function that is run once a turn has ended.
+     * Checks for game-ending conditions like checkmate or stalemate,
+     * then fires the next turn event, even if the game ended.
      */
     private void nextTurn() {
-        if(this.whoseTurn.equals(Player.WHITE)) {
-            this.whoseTurn = Player.BLACK;
-        } else {
-            this.whoseTurn = Player.WHITE;
-            this.fullMoveNumber++;
-        }
+        this.checkForGameOver();
+
+        if(this.onNextTurn != null) this.onNextTurn.run();
+    }
+
+    /**
+     * Ends the game if the player whose turn it is is checkmated or stalemated,
+     * or if the 50-move rule or threefold repetition applies.
+     * @return Whether the game ended
+     */
+    private boolean checkForGameOver() {
+        Player whoseTurn = this.getWhoseTurn();
 
-        if(this.isCheckmate(this.whoseTurn)) {
-            //System.out.println("Checkmate! " + (this.whoseTurn.equals(Player.WHITE) ? "Black" : "White") + " wins.");
+        if(this.isCheckmate(whoseTurn)) {
+            //System.out.println("Checkmate! " + (whoseTurn.equals(Player.WHITE) ? "Black" : "White") + " wins.");
             this.gameOver = true;
-            this.gameOverReason = "Checkmate! " + (this.whoseTurn.equals(Player.WHITE) ? "Black" : "White") + " wins.";
-            return;
+            this.gameOverReason = "Checkmate! " + (whoseTurn.equals(Player.WHITE) ? "Black" : "White") + " wins.";
+            this.winner = whoseTurn.equals(Player.WHITE) ? Player.BLACK : Player.WHITE;
+            return true;
         }
-        if(this.isStalemate(this.whoseTurn)) {
+        if(this.isStalemate(whoseTurn)) {
             //System.out.println("Stalemate! Draw.");
             this.gameOver = true;
             this.gameOverReason = "Stalemate! Draw.";
-            return;
+            return true;
         }
-        if(this.halfMoveClock == 50) {
+        if(this.position.getHalfMoveClock() >= HALF_MOVE_CLOCK_LIMIT) {
             //System.out.println("Draw by 50-move rule.");
             this.gameOver = true;
             this.gameOverReason = "Draw by 50-move rule.";
-            return;
+            return true;
+        }
+        // The position has been reached three times if it occurred twice before.
+        if(this.position.countRepetitions() >= 2) {
+            //System.out.println("Draw by threefold repetition.");
+            this.gameOver = true;
+            this.gameOverReason = "Draw by threefold repetition.";
+            return true;
         }
 
-        if(this.onNextTurn != null) this.onNextTurn.run();
+        return false;
     }
 
     /**
      * Moves piece to end and increments the turn if necessary.
-     * Also checks for threefold repetition draws.
+     * If a pawn reaches the last rank, the turn does not end until promote is called.
      * @param piece Piece to move
      * @param end Position to move piece to
      */
     public void movePiece(@NotNull Piece piece, @NotNull Vector2 end) {
-        boolean recordThisMove = false;
-        boolean pieceCaptured = false;
+        if(!piece.getPlayer().equals(this.getWhoseTurn())) throw new IllegalArgumentException("It's Player " + this.getWhoseTurn() + "'s turn, but a piece that tried to move belongs to player " + piece.getPlayer() + ".");
+        if(this.awaitPromotion != null) throw new IllegalStateException("Tried to move " + piece + ", but a pawn is awaiting promotion.");
+
         Vector2 oldPosition = this.getPosition(piece);
+        int move = this.encodeMove(piece, end, Bitboards.EMPTY);
+        this.makeMove(move);
 
-        if(!piece.getPlayer().equals(this.whoseTurn)) throw new IllegalArgumentException("It's Player " + this.whoseTurn + "'s turn, but a piece that tried to move belongs to player " + piece.getPlayer() + ".");
-
-        if(!this.disableMovementThisTurn) {
-            recordThisMove = true;
-            Piece removedPiece = this.setPosition(piece, end);
-            if(removedPiece != null) {
-                pieceCaptured = true;
-                this.resetHalfMoveClock();
-                if(removedPiece instanceof Rook) {
-                    if(removedPiece.getPlayer().equals(Player.WHITE) ? end.getY() == 0 : end.getY() == 7) {
-                        if(end.getX() == 0 && removedPiece.getPlayer().equals(Player.WHITE)) this.disableCastleWhiteKing();
-                        if(end.getX() == 7 && removedPiece.getPlayer().equals(Player.WHITE)) this.disableCastleWhiteQueen();
-                        if(end.getX() == 0 && removedPiece.getPlayer().equals(Player.BLACK)) this.disableCastleBlackKing();
-                        if(end.getX() == 7 && removedPiece.getPlayer().equals(Player.BLACK)) this.disableCastleBlackQueen();
-                    }
-                }
-            }
-        } else {
-            this.disableMovementThisTurn = false;
+        if(piece instanceof Pawn && (end.getY() == 0 || end.getY() == Bitboards.RANKS - 1)) {
+            this.prevPromotion = oldPosition;
+            this.awaitPromotion = end;
+            return;
         }
 
-        if(!(piece instanceof Pawn)) this.halfMoveClock++;
+        this.nextTurn();
 
-        if(this.awaitPromotion == null) {
-            this.nextTurn();
+        StringBuilder notationMove = new StringBuilder();
+        if(this.getWhoseTurn().equals(Player.BLACK)) notationMove.append(this.position.getFullMoveNumber()).append(".");
+        if(PackedMove.flags(move) == PackedMove.KING_CASTLE) {
+            notationMove.append("O-O");
+        } else if(PackedMove.flags(move) == PackedMove.QUEEN_CASTLE) {
+            notationMove.append("O-O-O");
+        } else {
+            boolean pieceCaptured = PackedMove.isCapture(move);
+            if (!(piece instanceof Pawn)) {
+                notationMove.append(piece.getFENSymbol());
+                notationMove.append(this.vector2ToSquare(oldPosition));
+            } else {
+                if(pieceCaptured) notationMove.append(this.vector2ToSquare(oldPosition).charAt(0));
+            }
 
-            String boardHash = this.getBoardHash();
-            int reachedTimes = this.reachedPositions.getOrDefault(boardHash, 0) + 1;
-            this.reachedPositions.put(boardHash, reachedTimes);
+            if (pieceCaptured) notationMove.append('x');
+            notationMove.append(this.vector2ToSquare(end));
+        }
 
-            if(reachedTimes == 3) {
-                //System.out.println("Draw by threefold repetition.");
-                this.gameOver = true;
-                this.gameOverReason = "Draw by threefold repetition.";
+        if(this.isInCheck(this.getWhoseTurn())) {
+            if(this.gameOverReason != null && this.gameOverReason.startsWith("Checkmate")) {
+                notationMove.append('#');
+            } else {
+                notationMove.append('+');
             }
+        }
+
+        this.notationMoves.add(notationMove.toString());
 
-            if(recordThisMove) {
-                StringBuilder notationMove = new StringBuilder();
-                if(this.whoseTurn.equals(Player.BLACK)) notationMove.append(this.fullMoveNumber).append(".");
-                if (!(piece instanceof Pawn)) {
-                    notationMove.append(piece.getFENSymbol());
-                    notationMove.append(this.vector2ToSquare(oldPosition));
+        if(this.gameOver) {
+            if(this.gameOverReason.startsWith("Checkmate")) {
+                if(this.getWhoseTurn().equals(Player.WHITE)) {
+                    this.notationMoves.add("1-0");
                 } else {
-                    if(pieceCaptured) notationMove.append(this.vector2ToSquare(oldPosition).charAt(0));
+                    this.notationMoves.add("0-1");
                 }
+            } else {
+                this.notationMoves.add("1/2-1/2");
+            }
+        }
+    }
 
-                if (pieceCaptured) notationMove.append('x');
-                notationMove.append(this.vector2ToSquare(end));
+    /**
+     * Packs the move of piece to end into an int, working out whether it
+     * is a capture, castling, en passant or a double pawn push.
+     * @param piece Piece to move
+     * @param end Square to move piece to
+     * @param promotionType Type of piece a pawn reaching the last rank promotes to, or Bitboards.EMPTY to leave it a pawn
+     * @return The packed move
+     */
+    private int encodeMove(@NotNull Piece piece, @NotNull Vector2 end, int promotionType) {
+        Vector2 start = this.getPosition(piece);
+        int from = Bitboards.square(start);
+        int to = Bitboards.square(end);
+        boolean capture = this.squares[to] != null;
+        int dx = end.getX() - start.getX();
 
-                if(this.isInCheck(this.whoseTurn)) {
-                    if(this.gameOverReason != null && this.gameOverReason.startsWith("Checkmate")) {
-                        notationMove.append('#');
-                    } else {
-                        notationMove.append('+');
-                    }
-                }
+        if(piece instanceof King && Math.abs(dx) == 2) {
+            return PackedMove.of(from, to, dx > 0 ? PackedMove.KING_CASTLE : PackedMove.QUEEN_CASTLE);
+        }
+        if(piece instanceof Pawn) {
+            if(promotionType != Bitboards.EMPTY && (end.getY() == 0 || end.getY() == Bitboards.RANKS - 1)) return PackedMove.promotion(from, to, promotionType, capture);
+            if(Math.abs(end.getY() - start.getY()) == 2) return PackedMove.of(from, to, PackedMove.DOUBLE_PAWN_PUSH);
+            if(dx != 0 && !capture) return PackedMove.of(from, to, PackedMove.EN_PASSANT);
+        }
 
-                this.notationMoves.add(notationMove.toString());
+        return PackedMove.of(from, to, capture ? PackedMove.CAPTURE : PackedMove.QUIET);
+    }
 
-                if(this.gameOver) {
-                    if(this.gameOverReason.startsWith("Checkmate")) {
-                        if(this.whoseTurn.equals(Player.WHITE)) {
-                            this.notationMoves.add("1-0");
-                        } else {
-                            this.notationMoves.add("0-1");
-                        }
-                    } else {
-                        this.notationMoves.add("1/2-1/2");
-                    }
-                }
-            } else if(piece instanceof King && oldPosition.equals(end)) {
-                StringBuilder notationMove = new StringBuilder();
-                if(this.whoseTurn.equals(Player.BLACK)) notationMove.append(this.fullMoveNumber).append(".");
-                if(end.getX() == 2) notationMove.append("O-O-O");
-                else if(end.getX() == 5) notationMove.append("O-O");
-
-                if(this.isInCheck(this.whoseTurn)) {
-                    if(this.gameOverReason != null && this.gameOverReason.startsWith("Checkmate")) {
-                        notationMove.append('#');
-                    } else {
-                        notationMove.append('+');
-                    }
-                }
+    /**
+     * Makes move on the bitboards and moves the piece objects on this board to match.
+     * Unlike movePiece, this does not end the turn or record the move, which is
+     * what searching ahead needs. Every move made this way must be unmade before
+     * the game continues.
+     *
+     * See also: unmakeMove
+     * @param move A legal packed move for the side to move, for example from getLegalMoves
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+        int depth = this.position.getUndoDepth();
+
+        if(depth >= this.movedPieces.length) {
+            this.movedPieces = Arrays.copyOf(this.movedPieces, depth * 2);
+            this.capturedPieces = Arrays.copyOf(this.capturedPieces, depth * 2);
+        }
 
-                this.notationMoves.add(notationMove.toString());
+        Piece moved = this.squares[from];
+        int capturedSquare = flags == PackedMove.EN_PASSANT ? to ^ 8 : to;
+        this.movedPieces[depth] = moved;
+        this.capturedPieces[depth] = this.squares[capturedSquare];
+
+        this.squares[capturedSquare] = null;
+        this.squares[from] = null;
+        this.squares[to] = PackedMove.isPromotion(move) ? this.acquirePiece(Bitboards.pieceCode(Bitboards.colorOf(moved.getPlayer()), PackedMove.promotionType(move))) : moved;
+
+        if(flags == PackedMove.KING_CASTLE) {
+            this.squares[to - 1] = this.squares[to + 1];
+            this.squares[to + 1] = null;
+        } else if(flags == PackedMove.QUEEN_CASTLE) {
+            this.squares[to + 1] = this.squares[to - 2];
+            this.squares[to - 2] = null;
+        }
 
-                if(this.gameOver) {
-                    if(this.gameOverReason.startsWith("Checkmate")) {
-                        if(this.whoseTurn.equals(Player.WHITE)) {
-                            this.notationMoves.add("1-0");
-                        } else {
-                            this.notationMoves.add("0-1");
-                        }
-                    } else {
-                        this.notationMoves.add("1/2-1/2");
-                    }
-                }
-            }
+        this.position.makeMove(move);
+    }
+
+    /**
+     * Passes the turn to the other player without moving a piece, for searches that prune
+     * positions where even a free move doesn't help the opponent. The player to move must
+     * not be in check, and the null move must be unmade before the game continues.
+     *
+     * See also: unmakeNullMove
+     */
+    public void makeNullMove() {
+        this.position.makeNullMove();
+    }
+
+    /**
+     * Takes back the last move made with makeNullMove.
+     */
+    public void unmakeNullMove() {
+        this.position.unmakeNullMove();
+    }
+
+    /**
+     * Takes back the last move made with makeMove, putting back the same piece objects.
+     */
+    public void unmakeMove() {
+        int move = this.position.getLastMove();
+        this.position.unmakeMove();
+
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+        int depth = this.position.getUndoDepth();
+
+        if(flags == PackedMove.KING_CASTLE) {
+            this.squares[to + 1] = this.squares[to - 1];
+            this.squares[to - 1] = null;
+        } else if(flags == PackedMove.QUEEN_CASTLE) {
+            this.squares[to - 2] = this.squares[to + 1];
+            this.squares[to + 1] = null;
+        }
+
+        if(PackedMove.isPromotion(move)) this.releasePiece(this.position.pieceAt(from) + PackedMove.promotionType(move) - Bitboards.PAWN);
+
+        this.squares[to] = null;
+        this.squares[from] = this.movedPieces[depth];
+        this.squares[flags == PackedMove.EN_PASSANT ? to ^ 8 : to] = this.capturedPieces[depth];
+
+        this.movedPieces[depth] = null;
+        this.capturedPieces[depth] = null;
+    }
+
+    /**
+     * Hands out a piece object of code from the pool, creating it the first time it is needed.
+     * @param code Piece code of the piece
+     * @return A piece object that is not on the board
+     */
+    @NotNull
+    private Piece acquirePiece(int code) {
+        Piece[] pool = this.piecePool[code];
+        int used = this.piecesInUse[code];
+        if(pool == null || used == pool.length) {
+            pool = pool == null ? new Piece[Bitboards.FILES + 2] : Arrays.copyOf(pool, pool.length * 2);
+            this.piecePool[code] = pool;
         }
+        if(pool[used] == null) pool[used] = this.createPiece(Bitboards.typeOf(code), Bitboards.playerOf(Bitboards.colorOf(code)));
+
+        this.piecesInUse[code] = used + 1;
+        return pool[used];
+    }
+
+    /**
+     * Returns the piece object of code handed out last to the pool.
+     * Pieces are only released when a promotion is unmade, which is always the last one handed out.
+     * @param code Piece code of the piece
+     */
+    private void releasePiece(int code) {
+        this.piecesInUse[code]--;
+    }
+
+    /**
+     * Creates a new piece of type belonging to player and this board.
+     * @param type Type of piece, for example Bitboards.QUEEN
+     * @param player Player the piece belongs to
+     * @return The new piece
+     */
+    @NotNull
+    private Piece createPiece(int type, @NotNull Player player) {
+        return switch(type) {
+            case Bitboards.PAWN -> new Pawn(player, this);
+            case Bitboards.KNIGHT -> new Knight(player, this);
+            case Bitboards.BISHOP -> new Bishop(player, this);
+            case Bitboards.ROOK -> new Rook(player, this);
+            case Bitboards.QUEEN -> new Queen(player, this);
+            case Bitboards.KING -> new King(player, this);
+            default -> throw new IllegalArgumentException("There's no piece with type " + type + ".");
+        };
     }
 
     /**
@@ -503,15 +718,17 @@ public class Board {
         Piece target = this.getPieceAtPosition(position);
         if(target == null) throw new IllegalArgumentException("Tried to remove piece at " + position + ", but nothing was there.");
 
-        this.pieces.remove(target);
-        this.board[position.getY()][position.getX()] = null;
+        int square = Bitboards.square(position);
+        this.position.removePiece(square);
+        this.squares[square] = null;
         return target;
     }
 
     public void placePiece(@NotNull Piece piece, Vector2 position) {
         if(this.getPieceAtPosition(position) != null) throw new IllegalArgumentException("Tried to insert " + piece + " at " + position + ", but " + this.getPieceAtPosition(position) + " was already there.");
-        this.board[position.getY()][position.getX()] = piece;
-        this.pieces.put(piece, position);
+        int square = Bitboards.square(position);
+        this.position.putPiece(Bitboards.colorOf(piece.getPlayer()), piece.getType(), square);
+        this.squares[square] = piece;
     }
 
     /**
@@ -524,94 +741,169 @@ public class Board {
     public Vector2 removePiece(Piece target) {
         Vector2 position = this.getPosition(target);
 
-        this.pieces.remove(target);
-        this.board[position.getY()][position.getX()] = null;
+        int square = Bitboards.square(position);
+        this.position.removePiece(square);
+        this.squares[square] = null;
         return position;
     }
 
+    /**
+     * Returns whether any piece belonging to byPlayer attacks square.
+     * @param square Square that may be attacked
+     * @param byPlayer Player whose pieces may be attacking
+     * @return Whether square is attacked by byPlayer
+     */
+    public boolean isSquareAttacked(@NotNull Vector2 square, @NotNull Player byPlayer) {
+        return this.position.isSquareAttacked(Bitboards.square(square), Bitboards.colorOf(byPlayer));
+    }
+
     /**
      * Returns whether target is currently in check.
      * @param target Player to be checked for check
      * @return Whether target is in check
      */
     public boolean isInCheck(Player target) {
-        Player attacker;
-        if(target.equals(Player.WHITE))
-            attacker = Player.BLACK;
-        else
-            attacker = Player.WHITE;
-
-        for(Piece p : this.pieces.keySet().toArray(new Piece[0])) {
-            if(p.getPlayer().equals(attacker)) {
-                Vector2[] attackingSquares = p.getMovableSquares(false);
-                for(Vector2 square : attackingSquares) {
-                    Piece attackedPiece = this.getPieceAtPosition(square);
-                    if(attackedPiece instanceof King && attackedPiece.getPlayer().equals(target)) {
-                        return true;
-                    }
-                }
-            }
-        }
+        int color = Bitboards.colorOf(target);
+        long king = this.position.getPieces(color, Bitboards.KING);
 
-        return false;
+        return this.position.isSquareAttacked(Long.numberOfTrailingZeros(king), 1 - color);
     }
 
     /**
-     * Returns whether moving movingPiece to end puts the respective player in check.
-     * @param movingPiece Piece to move
-     * @param end Square to move movingPiece to
-     * @return Whether the player that owns movingPiece is in check after moving it to end
+     * Fills moves with every legal move the player whose turn it is can make, packed as described in PackedMove.
+     * Nothing is allocated, so callers should keep one list and reuse it.
+     *
+     * See also: MoveGenerator
+     * @param moves List to clear and fill with the legal moves
      */
-    public boolean doesThisMovePutMeInCheck(Piece movingPiece, Vector2 end) {
-        Vector2 start = this.getPosition(movingPiece);
-
-        assert this.getPieceAtPosition(end) == null || !this.getPieceAtPosition(end).getPlayer().equals(movingPiece.getPlayer());
-        Piece attackedPiece = this.setPosition(movingPiece, end);
+    public void getLegalMoves(@NotNull MoveList moves) {
+        MoveGenerator.generateLegalMoves(this.position, moves);
+    }
 
-        boolean inCheck = this.isInCheck(this.whoseTurn);
+    /**
+     * Returns the squares piece can legally move to.
+     * Only the pieces of the player whose turn it is can move, so this is empty for any other piece.
+     * @param piece Piece to find the moves of
+     * @return Bitboard of squares piece can legally move to
+     */
+    public long getLegalTargets(@NotNull Piece piece) {
+        if(this.awaitPromotion != null || !piece.getPlayer().equals(this.getWhoseTurn())) return 0;
 
-        Piece thereBetterBeNothingHere = this.setPosition(movingPiece, start);
-        assert thereBetterBeNothingHere == null;
+        int from = Bitboards.square(this.getPosition(piece));
+        MoveGenerator.generateLegalMoves(this.position, this.legalMoves);
 
-        if(attackedPiece != null) this.placePiece(attackedPiece, end);
+        long targets = 0;
+        for(int i = 0; i < this.legalMoves.size(); i++) {
+            int move = this.legalMoves.get(i);
+            if(PackedMove.from(move) == from) targets |= Bitboards.bit(PackedMove.to(move));
+        }
 
-        return inCheck;
+        return targets;
     }
 
     /**
      * Runs func after moving movingPiece to end, then reverts to the previous position.
+     * Pawns that reach the last rank are promoted to a queen.
      * @param movingPiece Piece to move
      * @param end Square to move movingPiece to
      * @param func Runnable to run on the board after moving
      */
     public void runOnMove(Piece movingPiece, Vector2 end, Runnable func) {
-        Vector2 start = this.getPosition(movingPiece);
-
-        assert this.getPieceAtPosition(end) == null || !this.getPieceAtPosition(end).getPlayer().equals(movingPiece.getPlayer());
-        Piece attackedPiece = this.setPosition(movingPiece, end);
+        this.runOnMove(this.encodeMove(movingPiece, end, Bitboards.QUEEN), func);
+    }
 
+    /**
+     * Runs func after making move, then reverts to the previous position.
+     * @param move A legal packed move, for example from getLegalMoves
+     * @param func Runnable to run on the board after moving
+     */
+    public void runOnMove(int move, Runnable func) {
+        this.makeMove(move);
         func.run();
+        this.unmakeMove();
+    }
+
+    /**
+     * Works out how much material the player making move wins or loses on its target square
+     * if both players keep recapturing there with their least valuable piece, and either may stop
+     * when continuing would lose them material. Pieces lined up behind others on the same line
+     * (x-rays) join in as the pieces in front of them capture. A king only recaptures if the other
+     * player has nothing left to take it back with. Other pins and checks are not considered.
+     * Nothing is moved on the board, so this is much faster than trying the moves with runOnMove.
+     * @param move A legal packed move, for example from getLegalMoves
+     * @return Material won by the player making move, in centipawns on the same scale as MaterialEvaluator. Negative if they lose material
+     */
+    public int staticExchange(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int side = this.position.getSideToMove();
+        long occupied = this.position.getOccupied() ^ Bitboards.bit(from);
+
+        int[] gains = this.exchangeGains;
+        int onSquare = this.pieceValues[Bitboards.typeOf(this.position.pieceAt(from))];
+        if(PackedMove.flags(move) == PackedMove.EN_PASSANT) {
+            gains[0] = this.pieceValues[Bitboards.PAWN];
+            occupied ^= Bitboards.bit(to ^ 8);
+        } else {
+            int captured = this.position.pieceAt(to);
+            gains[0] = captured == Bitboards.EMPTY ? 0 : this.pieceValues[Bitboards.typeOf(captured)];
+        }
+        if(PackedMove.isPromotion(move)) {
+            onSquare = this.pieceValues[PackedMove.promotionType(move)];
+            gains[0] += onSquare - this.pieceValues[Bitboards.PAWN];
+        }
+
+        int d = 0;
+        while(true) {
+            side = 1 - side;
+            // Recomputing the attackers with the pieces that already captured taken off uncovers x-rays behind them.
+            long attackers = this.position.attackersTo(to, occupied) & this.position.getOccupancy(side);
+            if(attackers == 0) break;
+
+            int type = Bitboards.PAWN;
+            while((attackers & this.position.getPieces(side, type)) == 0) type++;
+            // The king can't capture onto a square the other player still attacks.
+            if(type == Bitboards.KING && (this.position.attackersTo(to, occupied) & this.position.getOccupancy(1 - side)) != 0) break;
+
+            d++;
+            gains[d] = onSquare - gains[d - 1];
+
+            onSquare = this.pieceValues[type];
+            long attacker = attackers & this.position.getPieces(side, type);
+            occupied ^= attacker & -attacker;
+        }
+
+        // Work back from the last capture, each side choosing between capturing and stopping.
+        for(; d > 0; d--) gains[d - 1] = -Math.max(-gains[d - 1], gains[d]);
 
-        Piece thereBetterBeNothingHere = this.setPosition(movingPiece, start);
-        assert thereBetterBeNothingHere == null;
+        return gains[0];
+    }
+
+    /**
+     * Counts the positions reachable from this board in exactly depth moves, as a check on move generation.
+     *
+     * See also: Perft
+     * @param depth Number of half-moves to look ahead
+     * @return Number of positions at depth, counting each path separately
+     */
+    public long perft(int depth) {
+        if(this.awaitPromotion != null) throw new IllegalStateException("Tried to run perft, but a pawn is awaiting promotion.");
 
-        if(attackedPiece != null) this.placePiece(attackedPiece, end);
+        return Perft.perft(this.position, depth);
     }
 
     /**
      * Returns whether the player has any legal moves they can make.
-     * @param player The player to check for legal moves
+     * Moves are only generated for the player whose turn it is.
+     * @param player The player to check for legal moves, whose turn it must be
      * @return Whether the player has any legal moves
      */
     public boolean hasLegalMoves(Player player) {
-        for(Piece p : this.pieces.keySet().toArray(new Piece[0])) {
-            if(p.getPlayer().equals(player)) {
-                Vector2[] movableSquares = p.getMovableSquares(true);
-                if(movableSquares.length > 0) return true;
-            }
-        }
+        if(!player.equals(this.getWhoseTurn())) throw new IllegalArgumentException("Can only find the legal moves of Player " + this.getWhoseTurn() + ", whose turn it is, not " + player + ".");
+        if(this.awaitPromotion != null) throw new IllegalStateException("Tried to find the legal moves of " + player + ", but a pawn is awaiting promotion.");
 
-        return false;
+        MoveGenerator.generateLegalMoves(this.position, this.legalMoves);
+        return !this.legalMoves.isEmpty();
     }
 
     /**
@@ -638,7 +930,11 @@ public class Board {
      */
     @NotNull
     public Player getWhoseTurn() {
-        return this.whoseTurn;
+        int side = this.position.getSideToMove();
+        // The pawn awaiting promotion has already moved on the bitboards, but it is still its player's turn to pick a piece.
+        if(this.awaitPromotion != null) side = 1 - side;
+
+        return Bitboards.playerOf(side);
     }
 
     /**
@@ -646,7 +942,7 @@ public class Board {
      * @return Whether the White player can castle king-side
      */
     public boolean canCastleWhiteKing() {
-        return this.castleWhiteKing;
+        return (this.position.getCastlingRights() & Position.WHITE_KING_SIDE) != 0;
     }
 
     /**
@@ -654,7 +950,7 @@ public class Board {
      * @return Whether the White player can castle queen-side
      */
     public boolean canCastleWhiteQueen() {
-        return this.castleWhiteQueen;
+        return (this.position.getCastlingRights() & Position.WHITE_QUEEN_SIDE) != 0;
     }
 
     /**
@@ -662,7 +958,7 @@ public class Board {
      * @return Whether the Black player can castle king-side
      */
     public boolean canCastleBlackKing() {
-        return this.castleBlackKing;
+        return (this.position.getCastlingRights() & Position.BLACK_KING_SIDE) != 0;
     }
 
     /**
@@ -670,158 +966,7 @@ public class Board {
      * @return Whether the Black player can castle queen-side
      */
     public boolean canCastleBlackQueen() {
-        return this.castleBlackQueen;
-    }
-
-    /**
-     * Prevents the White player from castling king-side if possible.
-     */
-    public void disableCastleWhiteKing() { this.castleWhiteKing = false; }
-
-    /**
-     * Prevents the White player from castling queen-side if possible.
-     */
-    public void disableCastleWhiteQueen() { this.castleWhiteQueen = false; }
-
-    /**
-     * Prevents the Black player from castling king-side if possible.
-     */
-    public void disableCastleBlackKing() { this.castleBlackKing = false; }
-
-    /**
-     * Prevents the Black player from castling queen-side if possible.
-     */
-    public void disableCastleBlackQueen() { this.castleBlackQueen = false; }
-
-    /**
-     * Allows the White player to castle king-side if possible. Exists to allow undoing castling.
-     */
-    public void enableCastleWhiteKing() { this.castleWhiteKing = true; }
-
-    /**
-     * Allows the White player to castle queen-side if possible. Exists to allow undoing castling.
-     */
-    public void enableCastleWhiteQueen() { this.castleWhiteQueen = true; }
-
-    /**
-     * Allows the Black player to castle king-side if possible. Exists to allow undoing castling.
-     */
-    public void enableCastleBlackKing() { this.castleBlackKing = true; }
-
-    /**
-     * Allows the Black player to castle queen-side if possible. Exists to allow undoing castling.
-     */
-    public void enableCastleBlackQueen() { this.castleBlackQueen = true; }
-
-    /**
-     * Castles the White Player king-side by moving the king and rook.
-     * @param king The king to castle
-     */
-    public void castleWhiteKing(King king) {
-        this.castle(king, king.getPosition().add(new Vector2(2, 0)), Objects.requireNonNull(this.getPieceAtPosition(king.getPosition().add(new Vector2(3, 0)))), king.getPosition().add(Vector2.EAST));
-        this.castleWhiteKing = false;
-    }
-
-    /**
-     * Castles the White Player queen-side by moving the king and rook.
-     * @param king The king to castle
-     */
-    public void castleWhiteQueen(King king) {
-        this.castle(king, king.getPosition().add(new Vector2(-2, 0)), Objects.requireNonNull(this.getPieceAtPosition(king.getPosition().add(new Vector2(-4, 0)))), king.getPosition().add(Vector2.WEST));
-        this.castleWhiteQueen = false;
-    }
-
-    /**
-     * Castles the Black Player king-side by moving the king and rook.
-     * @param king The king to castle
-     */
-    public void castleBlackKing(King king) {
-        this.castle(king, king.getPosition().add(new Vector2(2, 0)), Objects.requireNonNull(this.getPieceAtPosition(king.getPosition().add(new Vector2(3, 0)))), king.getPosition().add(Vector2.EAST));
-        this.castleBlackKing = false;
-    }
-
-    /**
-     * Castles the Black Player queen-side by moving the king and rook.
-     * @param king The king to castle
-     */
-    public void castleBlackQueen(King king) {
-        this.castle(king, king.getPosition().add(new Vector2(-2, 0)), Objects.requireNonNull(this.getPieceAtPosition(king.getPosition().add(new Vector2(-4, 0)))), king.getPosition().add(Vector2.WEST));
-        this.castleBlackQueen = false;
-    }
-
-    /**
-     * Un-castles the White Player king-side by moving the king and rook. Exists to allow undoing castling.
-     * @param king The king to un-castle
-     */
-    public void uncastleWhiteKing(King king) {
-        this.castle(king, king.getPosition().add(new Vector2(-2, 0)), Objects.requireNonNull(this.getPieceAtPosition(king.getPosition().add(new Vector2(-2, 0)))), king.getPosition().add(Vector2.EAST));
-        this.castleWhiteKing = true;
-    }
-
-    /**
-     * Un-castles the White Player queen-side by moving the king and rook. Exists to allow undoing castling.
-     * @param king The king to un-castle
-     */
-    public void uncastleWhiteQueen(King king) {
-        this.castle(king, king.getPosition().add(new Vector2(2, 0)), Objects.requireNonNull(this.getPieceAtPosition(king.getPosition().add(Vector2.EAST))), king.getPosition().add(new Vector2(-2, 0)));
-        this.castleWhiteQueen = true;
-    }
-
-    /**
-     * Un-castles the Black Player king-side by moving the king and rook. Exists to allow undoing castling.
-     * @param king The king to un-castle
-     */
-    public void uncastleBlackKing(King king) {
-        this.castle(king, king.getPosition().add(new Vector2(-2, 0)), Objects.requireNonNull(this.getPieceAtPosition(king.getPosition().add(new Vector2(-2, 0)))), king.getPosition().add(Vector2.EAST));
-        this.castleBlackKing = true;
-    }
-
-    /**
-     * Un-castles the Black Player queen-side by moving the king and rook. Exists to allow undoing castling.
-     * @param king The king to un-castle
-     */
-    public void uncastleBlackQueen(King king) {
-        this.castle(king, king.getPosition().add(new Vector2(2, 0)), Objects.requireNonNull(this.getPieceAtPosition(king.getPosition().add(Vector2.EAST))), king.getPosition().add(new Vector2(-2, 0)));
-        this.castleBlackQueen = true;
-    }
-
-    /**
-     * Castles by moving king to kingToWhere and rook to rookToWhere.
-     * This is also used for un-castling.
-     * @param king King to move
-     * @param kingToWhere Location to move the king
-     * @param rook Rook to move
-     * @param rookToWhere Location to move the rook
-     */
-    private void castle(Piece king, Vector2 kingToWhere, Piece rook, Vector2 rookToWhere) {
-        assert king instanceof King;
-        assert rook instanceof Rook;
-
-        this.removePiece(king);
-        this.removePiece(rook);
-
-        this.placePiece(king, kingToWhere);
-        this.placePiece(rook, rookToWhere);
-
-        this.disableMovementThisTurn = true;
-    }
-
-    /**
-     * Sets the square of the piece that is about to promote.
-     * Used for notating capture-then-promote sequences.
-     * @param square Square of the piece that is about to promote
-     */
-    public void setPrevPromotion(Vector2 square) { this.prevPromotion = square; }
-
-    /**
-     * Marks the game as 'awaiting promotion' by disabling movement
-     * until the player whose turn it is promotes.
-     *
-     * See also: promote
-     * @param square Square of the promoting pawn
-     */
-    public void awaitPromotion(Vector2 square) {
-        this.awaitPromotion = square;
+        return (this.position.getCastlingRights() & Position.BLACK_QUEEN_SIDE) != 0;
     }
 
     /**
@@ -840,26 +985,27 @@ public class Board {
      * @param piece Name of piece to promote to
      */
     public void promote(String piece) {
-        if(this.awaitPromotion == null) throw new IllegalStateException("Tried to promote to a " + piece + ", but there's nothing to promote.");
-
-        this.removePiece(this.getPieceAtPosition(this.awaitPromotion));
+        if(this.awaitPromotion == null || this.prevPromotion == null) throw new IllegalStateException("Tried to promote to a " + piece + ", but there's nothing to promote.");
 
-        Piece p;
+        int type;
         switch(piece) {
-            case "Knight" -> p = new Knight(this.whoseTurn, this);
-            case "Bishop" -> p = new Bishop(this.whoseTurn, this);
-            case "Rook" -> p = new Rook(this.whoseTurn, this);
-            case "Queen" -> p = new Queen(this.whoseTurn, this);
+            case "Knight" -> type = Bitboards.KNIGHT;
+            case "Bishop" -> type = Bitboards.BISHOP;
+            case "Rook" -> type = Bitboards.ROOK;
+            case "Queen" -> type = Bitboards.QUEEN;
             default -> throw new IllegalArgumentException("There's no piece called '" + piece + "'.");
         }
 
+        // Take back the pawn move and make it again as a promotion.
+        this.unmakeMove();
+        this.makeMove(this.encodeMove(Objects.requireNonNull(this.getPieceAtPosition(this.prevPromotion)), this.awaitPromotion, type));
+
         if(this.prevPromotion.getX() != this.awaitPromotion.getX()) {
             this.notationMoves.add(this.vector2ToSquare(this.prevPromotion) + "x" + this.vector2ToSquare(this.awaitPromotion) + "=" + piece.charAt(0));
         } else {
             this.notationMoves.add(this.vector2ToSquare(this.awaitPromotion) + "=" + piece.charAt(0));
         }
 
-        this.placePiece(p, this.awaitPromotion);
         this.prevPromotion = null;
         this.awaitPromotion = null;
 
@@ -873,26 +1019,8 @@ public class Board {
      */
     @Nullable
     public Vector2 getEnPassantPosition() {
-        return this.enPassantPosition;
-    }
-
-    /**
-     * Sets the FEN position where en passant can take place.
-     * If a pawn have moved two squares, it should be the square it skipped.
-     * This should be null in any other case.
-     * @param position FEN position where en passant can take place
-     */
-    public void setEnPassantPosition(@Nullable Vector2 position) {
-        this.enPassantPosition = position;
-    }
-
-    /**
-     * Resets the half move clock counter.
-     * Runs when a pawn is moved or a piece is captured.
-     * When it reaches 50 half-moves, the game is drawn.
-     */
-    public void resetHalfMoveClock() {
-        this.halfMoveClock = 0;
+        int square = this.position.getEnPassantSquare();
+        return square == Position.NO_SQUARE ? null : Bitboards.toVector2(square);
     }
 
     /**
@@ -924,6 +1052,17 @@ public class Board {
         return this.gameOverReason;
     }
 
+    /**
+     * Gets the player who won the game, by checkmate or because the other resigned.
+     * Throws an exception if the game is not over.
+     * @return The winner, or null if the game was drawn
+     */
+    @Nullable
+    public Player getWinner() {
+        if(!this.gameOver) throw new IllegalStateException("Cannot get the winner because the game is not over.");
+        return this.winner;
+    }
+
     /**
      * Sets the square clicked in a graphical interface.
      * This should when the user clicks a square
@@ -935,6 +1074,7 @@ public class Board {
 
     /**
      * Sets the callback function to be fired when a move is made.
+     * It is also fired by the move that ends the game, so check isGameOver first.
      * @param onNextTurn Runnable that is run when a move is made
      */
     public void bindNextTurnEvent(Runnable onNextTurn) {
@@ -948,51 +1088,13 @@ public class Board {
     public void resign(@NotNull Player player) {
         this.gameOver = true;
         this.gameOverReason = (player.equals(Player.WHITE) ? "White" : "Black") + " resigns.";
+        this.winner = player.equals(Player.WHITE) ? Player.BLACK : Player.WHITE;
     }
 
     /**
      * Resets the board to the starting position.
      */
     public void resetGame() {
-        this.board = new Piece[][]{
-                { new Rook(Player.WHITE, this), new Knight(Player.WHITE, this), new Bishop(Player.WHITE, this), new Queen(Player.WHITE, this), new King(Player.WHITE, this), new Bishop(Player.WHITE, this), new Knight(Player.WHITE, this), new Rook(Player.WHITE, this) },
-                { new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this), new Pawn(Player.WHITE, this) },
-                { null, null, null, null, null, null, null, null },
-                { null, null, null, null, null, null, null, null },
-                { null, null, null, null, null, null, null, null },
-                { null, null, null, null, null, null, null, null },
-                { new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this), new Pawn(Player.BLACK, this) },
-                { new Rook(Player.BLACK, this), new Knight(Player.BLACK, this), new Bishop(Player.BLACK, this), new Queen(Player.BLACK, this), new King(Player.BLACK, this), new Bishop(Player.BLACK, this), new Knight(Player.BLACK, this), new Rook(Player.BLACK, this) }
-        };
-
-        this.pieces = new HashMap<>();
-
-        for(int i = 0; i < this.board.length; i++) {
-            for(int j = 0; j < this.board[i].length; j++) {
-                if(this.board[i][j] != null) {
-                    this.pieces.put(this.board[i][j], new Vector2(j, i));
-                }
-            }
-        }
-
-        this.awaitPromotion = null;
-        this.enPassantPosition = null;
-
-        this.reachedPositions = new HashMap<>();
-        this.notationMoves = new ArrayList<>();
-
-        this.disableMovementThisTurn = false;
-        this.whoseTurn = Player.WHITE;
-        this.castleWhiteKing = true;
-        this.castleWhiteQueen = true;
-        this.castleBlackKing = true;
-        this.castleBlackQueen = true;
-
-        this.clicked = null;
-        this.halfMoveClock = 0;
-        this.fullMoveNumber = 1;
-
-        this.gameOver = false;
-        this.gameOverReason = null;
+        this.restoreSnapshot(STARTING_POSITION);
     }
 }
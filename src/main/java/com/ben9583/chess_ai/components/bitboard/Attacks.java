@@ -0,0 +1,324 @@
+package com.ben9583.chess_ai.components.bitboard;
+
+/**
+ * Precomputed attack tables shared by every board in the JVM.
+ *
+ * Knights, kings and pawns (the 'leapers') attack a fixed set of
+ * squares from each square, so they get one 64-entry table each,
+ * with pawns having separate tables per color for captures and pushes.
+ *
+ * Sliding pieces (rooks, bishops and queens) use magic bitboards:
+ * the occupied squares that can block a slider are masked out,
+ * multiplied by a 'magic' number and shifted so that every relevant
+ * occupancy maps to an index into a table of attack sets. The magic
+ * numbers are found once, when this class is loaded, using fixed
+ * seeds so the tables are the same on every run.
+ *
+ * Lines and segments between every pair of squares are also tabled,
+ * as these are what pins and checks are resolved with.
+ */
+public final class Attacks {
+    /* Directions a rook slides in, as (dx, dy) pairs. */
+    private static final int[][] rookDirections = { { 0, 1 }, { 1, 0 }, { 0, -1 }, { -1, 0 } };
+    /* Directions a bishop slides in, as (dx, dy) pairs. */
+    private static final int[][] bishopDirections = { { 1, 1 }, { 1, -1 }, { -1, -1 }, { -1, 1 } };
+
+    /* Offsets a knight jumps by, as (dx, dy) pairs. */
+    private static final int[][] knightOffsets = { { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 }, { -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 } };
+    /* Offsets a king steps by, as (dx, dy) pairs. */
+    private static final int[][] kingOffsets = { { 0, 1 }, { 1, 1 }, { 1, 0 }, { 1, -1 }, { 0, -1 }, { -1, -1 }, { -1, 0 }, { -1, 1 } };
+
+    /* Squares a knight or king attacks from each square. */
+    private static final long[] knightTable = new long[Bitboards.SQUARES];
+    private static final long[] kingTable = new long[Bitboards.SQUARES];
+    /* Squares a pawn of each color attacks (captures on) from each square. */
+    private static final long[][] pawnAttackTable = new long[2][Bitboards.SQUARES];
+    /* Square a pawn of each color pushes to from each square. Empty on the last rank. */
+    private static final long[][] pawnPushTable = new long[2][Bitboards.SQUARES];
+
+    /* Seeds used to search for magic numbers on each rank. Any seeds work, but these find magics after very few attempts. */
+    private static final long[] magicSeeds = { 728, 10316, 55341, 112391, 65121, 15779, 40474, 31255 };
+
+    /* Squares whose occupancy can block a rook or bishop on each square. Edges are excluded as they never block anything. */
+    private static final long[] rookMasks = new long[Bitboards.SQUARES];
+    private static final long[] bishopMasks = new long[Bitboards.SQUARES];
+    /* Magic multipliers for each square. */
+    private static final long[] rookMagics = new long[Bitboards.SQUARES];
+    private static final long[] bishopMagics = new long[Bitboards.SQUARES];
+    /* Right shift applied after multiplying, 64 minus the number of bits in the mask. */
+    private static final int[] rookShifts = new int[Bitboards.SQUARES];
+    private static final int[] bishopShifts = new int[Bitboards.SQUARES];
+    /* Index of the first entry belonging to each square in the attack tables. */
+    private static final int[] rookOffsets = new int[Bitboards.SQUARES];
+    private static final int[] bishopOffsets = new int[Bitboards.SQUARES];
+    /* Attack sets for every square and relevant occupancy, flattened into one array per piece. */
+    private static final long[] rookTable;
+    private static final long[] bishopTable;
+
+    /* Squares strictly between two squares on the same rank, file or diagonal, indexed [from * 64 + to]. Empty otherwise. */
+    private static final long[] betweenTable = new long[Bitboards.SQUARES * Bitboards.SQUARES];
+    /* The whole rank, file or diagonal through two squares, indexed [from * 64 + to]. Empty if they are not aligned. */
+    private static final long[] lineTable = new long[Bitboards.SQUARES * Bitboards.SQUARES];
+
+    static {
+        for(int square = 0; square < Bitboards.SQUARES; square++) {
+            knightTable[square] = Attacks.leaperAttacks(square, knightOffsets);
+            kingTable[square] = Attacks.leaperAttacks(square, kingOffsets);
+            pawnAttackTable[Bitboards.WHITE][square] = Attacks.leaperAttacks(square, new int[][]{ { -1, 1 }, { 1, 1 } });
+            pawnAttackTable[Bitboards.BLACK][square] = Attacks.leaperAttacks(square, new int[][]{ { -1, -1 }, { 1, -1 } });
+            pawnPushTable[Bitboards.WHITE][square] = Attacks.leaperAttacks(square, new int[][]{ { 0, 1 } });
+            pawnPushTable[Bitboards.BLACK][square] = Attacks.leaperAttacks(square, new int[][]{ { 0, -1 } });
+        }
+
+        rookTable = initSlider(rookDirections, rookMasks, rookMagics, rookShifts, rookOffsets);
+        bishopTable = initSlider(bishopDirections, bishopMasks, bishopMagics, bishopShifts, bishopOffsets);
+
+        for(int a = 0; a < Bitboards.SQUARES; a++) {
+            for(int b = 0; b < Bitboards.SQUARES; b++) {
+                if(a == b) continue;
+                long ends = Bitboards.bit(a) | Bitboards.bit(b);
+                if((Attacks.rookAttacks(a, 0) & Bitboards.bit(b)) != 0) {
+                    lineTable[a * Bitboards.SQUARES + b] = (Attacks.rookAttacks(a, 0) & Attacks.rookAttacks(b, 0)) | ends;
+                    betweenTable[a * Bitboards.SQUARES + b] = Attacks.rookAttacks(a, Bitboards.bit(b)) & Attacks.rookAttacks(b, Bitboards.bit(a));
+                } else if((Attacks.bishopAttacks(a, 0) & Bitboards.bit(b)) != 0) {
+                    lineTable[a * Bitboards.SQUARES + b] = (Attacks.bishopAttacks(a, 0) & Attacks.bishopAttacks(b, 0)) | ends;
+                    betweenTable[a * Bitboards.SQUARES + b] = Attacks.bishopAttacks(a, Bitboards.bit(b)) & Attacks.bishopAttacks(b, Bitboards.bit(a));
+                }
+            }
+        }
+    }
+
+    private Attacks() {}
+
+    /**
+     * Returns every square a knight on square attacks.
+     * @param square Square the knight is on
+     * @return Bitboard of attacked squares
+     */
+    public static long knightAttacks(int square) {
+        return knightTable[square];
+    }
+
+    /**
+     * Returns every square a king on square attacks. Does not include castling.
+     * @param square Square the king is on
+     * @return Bitboard of attacked squares
+     */
+    public static long kingAttacks(int square) {
+        return kingTable[square];
+    }
+
+    /**
+     * Returns the squares a pawn of color on square attacks, that is, the squares it can capture on.
+     * @param color Color of the pawn
+     * @param square Square the pawn is on
+     * @return Bitboard of attacked squares
+     */
+    public static long pawnAttacks(int color, int square) {
+        return pawnAttackTable[color][square];
+    }
+
+    /**
+     * Returns the square a pawn of color on square pushes to, ignoring whether it is occupied.
+     * @param color Color of the pawn
+     * @param square Square the pawn is on
+     * @return Bitboard containing the square in front of the pawn, or 0 on the last rank
+     */
+    public static long pawnPushes(int color, int square) {
+        return pawnPushTable[color][square];
+    }
+
+    /**
+     * Returns every square a rook on square attacks.
+     * @param square Square the rook is on
+     * @param occupied Bitboard of every occupied square
+     * @return Bitboard of attacked squares, including blockers of either color
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return rookTable[rookOffsets[square] + (int) (((occupied & rookMasks[square]) * rookMagics[square]) >>> rookShifts[square])];
+    }
+
+    /**
+     * Returns every square a bishop on square attacks.
+     * @param square Square the bishop is on
+     * @param occupied Bitboard of every occupied square
+     * @return Bitboard of attacked squares, including blockers of either color
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return bishopTable[bishopOffsets[square] + (int) (((occupied & bishopMasks[square]) * bishopMagics[square]) >>> bishopShifts[square])];
+    }
+
+    /**
+     * Returns every square a queen on square attacks.
+     * @param square Square the queen is on
+     * @param occupied Bitboard of every occupied square
+     * @return Bitboard of attacked squares, including blockers of either color
+     */
+    public static long queenAttacks(int square, long occupied) {
+        return Attacks.rookAttacks(square, occupied) | Attacks.bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Returns the squares strictly between a and b if they share a rank, file or diagonal.
+     * @param a A square
+     * @param b Another square
+     * @return Bitboard of squares between a and b, or 0 if they are not aligned
+     */
+    public static long between(int a, int b) {
+        return betweenTable[a * Bitboards.SQUARES + b];
+    }
+
+    /**
+     * Returns the whole rank, file or diagonal that passes through both a and b.
+     * @param a A square
+     * @param b Another square
+     * @return Bitboard of the line through a and b, or 0 if they are not aligned
+     */
+    public static long line(int a, int b) {
+        return lineTable[a * Bitboards.SQUARES + b];
+    }
+
+    /**
+     * Builds the masks, magics, shifts and offsets for one kind of slider
+     * and returns its flattened attack table.
+     * @param directions Directions the slider moves in
+     * @param masks Output array of relevant occupancy masks
+     * @param magics Output array of magic numbers
+     * @param shifts Output array of shifts
+     * @param offsets Output array of table offsets
+     * @return The attack table for this slider
+     */
+    private static long[] initSlider(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+        int size = 0;
+        for(int square = 0; square < Bitboards.SQUARES; square++) {
+            masks[square] = Attacks.relevantOccupancy(square, directions);
+            shifts[square] = Long.SIZE - Long.bitCount(masks[square]);
+            offsets[square] = size;
+            size += 1 << Long.bitCount(masks[square]);
+        }
+
+        long[] table = new long[size];
+        for(int square = 0; square < Bitboards.SQUARES; square++) {
+            long[] seed = { magicSeeds[Bitboards.rankOf(square)] };
+            magics[square] = Attacks.findMagic(square, directions, masks[square], shifts[square], table, offsets[square], seed);
+        }
+
+        return table;
+    }
+
+    /**
+     * Searches for a magic number for square that maps every subset of mask
+     * to an index without two different attack sets colliding, and fills
+     * the slice of table starting at offset with the resulting attack sets.
+     * @return A working magic number for square
+     */
+    private static long findMagic(int square, int[][] directions, long mask, int shift, long[] table, int offset, long[] seed) {
+        int bits = Long.bitCount(mask);
+        int entries = 1 << bits;
+
+        long[] occupancies = new long[entries];
+        long[] attacks = new long[entries];
+
+        // Enumerate every subset of the mask using the carry-rippler trick.
+        long subset = 0;
+        for(int i = 0; i < entries; i++) {
+            occupancies[i] = subset;
+            attacks[i] = Attacks.slidingAttacks(square, subset, directions);
+            subset = (subset - mask) & mask;
+        }
+
+        int[] epoch = new int[entries];
+        for(int attempt = 1; ; attempt++) {
+            long magic = Attacks.nextRandom(seed) & Attacks.nextRandom(seed) & Attacks.nextRandom(seed);
+            if(Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) continue;
+
+            boolean failed = false;
+            for(int i = 0; i < entries && !failed; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> shift);
+                if(epoch[index] != attempt) {
+                    epoch[index] = attempt;
+                    table[offset + index] = attacks[i];
+                } else if(table[offset + index] != attacks[i]) {
+                    failed = true;
+                }
+            }
+
+            if(!failed) return magic;
+        }
+    }
+
+    /**
+     * Returns the squares that are a single jump by one of offsets away from square.
+     * Jumps that would leave the board are left out.
+     */
+    private static long leaperAttacks(int square, int[][] offsets) {
+        long attacks = 0;
+        for(int[] offset : offsets) {
+            int x = Bitboards.fileOf(square) + offset[0];
+            int y = Bitboards.rankOf(square) + offset[1];
+            if(Attacks.onBoard(x, y)) attacks |= Bitboards.bit(Bitboards.square(x, y));
+        }
+
+        return attacks;
+    }
+
+    /**
+     * Returns the squares whose occupancy affects the attacks of a slider on square.
+     * The last square in each direction is left out because a piece there cannot block anything further.
+     */
+    private static long relevantOccupancy(int square, int[][] directions) {
+        long mask = 0;
+        for(int[] direction : directions) {
+            int x = Bitboards.fileOf(square) + direction[0];
+            int y = Bitboards.rankOf(square) + direction[1];
+            while(Attacks.onBoard(x + direction[0], y + direction[1])) {
+                mask |= Bitboards.bit(Bitboards.square(x, y));
+                x += direction[0];
+                y += direction[1];
+            }
+        }
+
+        return mask;
+    }
+
+    /**
+     * Computes the attacks of a slider on square by walking each ray until it hits a piece.
+     * This is slow and is only used to build the tables.
+     */
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0;
+        for(int[] direction : directions) {
+            int x = Bitboards.fileOf(square) + direction[0];
+            int y = Bitboards.rankOf(square) + direction[1];
+            while(Attacks.onBoard(x, y)) {
+                long bit = Bitboards.bit(Bitboards.square(x, y));
+                attacks |= bit;
+                if((occupied & bit) != 0) break;
+                x += direction[0];
+                y += direction[1];
+            }
+        }
+
+        return attacks;
+    }
+
+    /**
+     * Returns whether (x, y) is a square on the board.
+     */
+    private static boolean onBoard(int x, int y) {
+        return x >= 0 && x < Bitboards.FILES && y >= 0 && y < Bitboards.RANKS;
+    }
+
+    /**
+     * Xorshift random number generator. Used instead of java.util.Random so
+     * that the magic numbers do not depend on the JDK implementation.
+     */
+    private static long nextRandom(long[] seed) {
+        long x = seed[0];
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        seed[0] = x;
+        return x * 0x2545F4914F6CDD1DL;
+    }
+}
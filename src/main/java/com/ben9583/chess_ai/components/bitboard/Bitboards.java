@@ -0,0 +1,162 @@
+package com.ben9583.chess_ai.components.bitboard;
+
+import com.ben9583.chess_ai.components.Player;
+import com.ben9583.chess_ai.utils.Vector2;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Constants and helper functions for working with bitboards.
+ * A bitboard is a 64-bit integer where bit n is set if
+ * square n is part of the set. Squares are numbered
+ * y * 8 + x, so a1 is square 0, h1 is square 7 and h8 is square 63.
+ */
+public final class Bitboards {
+    /* Number of files (columns) on the board. */
+    public static final int FILES = 8;
+    /* Number of ranks (rows) on the board. */
+    public static final int RANKS = 8;
+    /* Number of squares on the board. */
+    public static final int SQUARES = FILES * RANKS;
+
+    /* Indices of each type of piece. This is in the same order as the channels of Board.get3DBoard. */
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    /* Number of distinct types of pieces. */
+    public static final int NUM_PIECE_TYPES = 6;
+
+    /* Indices of each color. These match Player.ordinal(). */
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    /* Piece code representing an empty square. Every other piece code is color * NUM_PIECE_TYPES + type. */
+    public static final int EMPTY = -1;
+    /* Number of distinct piece codes. */
+    public static final int NUM_PIECE_CODES = 2 * NUM_PIECE_TYPES;
+
+    /* Masks for the outer files and ranks of the board. */
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_8 = RANK_1 << 56;
+    /* Masks for the ranks pawns start on. */
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_7 = RANK_1 << 48;
+
+    /* Cached Vector2 for every square so that converting a square to a Vector2 never allocates. */
+    private static final Vector2[] vectors = new Vector2[SQUARES];
+
+    static {
+        for(int square = 0; square < SQUARES; square++) {
+            vectors[square] = new Vector2(fileOf(square), rankOf(square));
+        }
+    }
+
+    private Bitboards() {}
+
+    /**
+     * Returns the square at (x, y).
+     * @param x The file of the square, 0 being the a-file
+     * @param y The rank of the square, 0 being the first rank
+     * @return Index of the square
+     */
+    public static int square(int x, int y) {
+        return y * FILES + x;
+    }
+
+    /**
+     * Returns the square corresponding to position.
+     * @param position Position on the board
+     * @return Index of the square
+     */
+    public static int square(@NotNull Vector2 position) {
+        return Bitboards.square(position.getX(), position.getY());
+    }
+
+    /**
+     * Returns the Vector2 corresponding to square. The result is cached and should not be mutated.
+     * @param square Index of a square
+     * @return Position on the board of square
+     */
+    @NotNull
+    public static Vector2 toVector2(int square) {
+        return vectors[square];
+    }
+
+    /**
+     * Returns the file (x-coordinate) of square.
+     * @param square Index of a square
+     * @return The file of square, 0 being the a-file
+     */
+    public static int fileOf(int square) {
+        return square & 7;
+    }
+
+    /**
+     * Returns the rank (y-coordinate) of square.
+     * @param square Index of a square
+     * @return The rank of square, 0 being the first rank
+     */
+    public static int rankOf(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * Returns a bitboard with only square set.
+     * @param square Index of a square
+     * @return Bitboard containing only square
+     */
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * Returns the piece code for a piece of the given color and type.
+     * @param color Color of the piece
+     * @param type Type of the piece
+     * @return Piece code of the piece
+     */
+    public static int pieceCode(int color, int type) {
+        return color * NUM_PIECE_TYPES + type;
+    }
+
+    /**
+     * Returns the color of the piece with the given piece code.
+     * @param code Piece code, not EMPTY
+     * @return Color of the piece
+     */
+    public static int colorOf(int code) {
+        return code >= NUM_PIECE_TYPES ? BLACK : WHITE;
+    }
+
+    /**
+     * Returns the type of the piece with the given piece code.
+     * @param code Piece code, not EMPTY
+     * @return Type of the piece
+     */
+    public static int typeOf(int code) {
+        return code >= NUM_PIECE_TYPES ? code - NUM_PIECE_TYPES : code;
+    }
+
+    /**
+     * Returns the color index corresponding to player.
+     * @param player A player
+     * @return WHITE or BLACK
+     */
+    public static int colorOf(@NotNull Player player) {
+        return player.ordinal();
+    }
+
+    /**
+     * Returns the player corresponding to color.
+     * @param color WHITE or BLACK
+     * @return The player with that color
+     */
+    @NotNull
+    public static Player playerOf(int color) {
+        return color == WHITE ? Player.WHITE : Player.BLACK;
+    }
+}
@@ -0,0 +1,242 @@
+package com.ben9583.chess_ai.components.bitboard;
+
+/**
+ * Generates every legal move in a position without trying them out.
+ *
+ * Before generating, the pieces giving check and the pieces pinned to
+ * the king are worked out once. From those, every piece gets a mask of
+ * squares it may move to: in check, only squares that capture the checker
+ * or block its line, and when pinned, only squares along the pin. The king
+ * avoids every square the opponent attacks, found with the king taken off
+ * the board so it cannot step backwards along a slider's line.
+ * Only en passant, which removes two pieces from a rank at once, still has
+ * to be checked by looking at the position after the move.
+ *
+ * See also: Attacks, PackedMove, MoveList
+ */
+public final class MoveGenerator {
+    /* Upper bound on the number of legal moves in any position, so move lists can be sized once. */
+    public static final int MAX_MOVES = 256;
+
+    /* Types a pawn can promote to, in the order they are generated. */
+    private static final int[] promotionTypes = { Bitboards.QUEEN, Bitboards.KNIGHT, Bitboards.ROOK, Bitboards.BISHOP };
+
+    private MoveGenerator() {}
+
+    /**
+     * Fills moves with every legal move for the side to move in position.
+     * Anything already in moves is cleared first.
+     * @param position Position to generate moves in
+     * @param moves List of capacity at least MAX_MOVES to fill
+     */
+    public static void generateLegalMoves(Position position, MoveList moves) {
+        MoveGenerator.generate(position, moves, false);
+    }
+
+    /**
+     * Fills moves with every legal capture and promotion for the side to move in position,
+     * in the same order generateLegalMoves would generate them.
+     * Anything already in moves is cleared first.
+     * @param position Position to generate moves in
+     * @param moves List of capacity at least MAX_MOVES to fill
+     */
+    public static void generateLegalCaptures(Position position, MoveList moves) {
+        MoveGenerator.generate(position, moves, true);
+    }
+
+    /**
+     * Fills moves with the legal moves for the side to move in position, or only its captures and promotions.
+     * @param position Position to generate moves in
+     * @param moves List to fill
+     * @param tacticalOnly Whether to leave out moves that neither capture nor promote
+     */
+    private static void generate(Position position, MoveList moves, boolean tacticalOnly) {
+        moves.clear();
+
+        int us = position.getSideToMove();
+        int them = 1 - us;
+        long ours = position.getOccupancy(us);
+        long theirs = position.getOccupancy(them);
+        long occupied = position.getOccupied();
+
+        int kingSquare = Long.numberOfTrailingZeros(position.getPieces(us, Bitboards.KING));
+        long checkers = position.attackersTo(kingSquare, occupied) & theirs;
+        long danger = MoveGenerator.attackedSquares(position, them, occupied ^ Bitboards.bit(kingSquare));
+        long allowed = tacticalOnly ? theirs : ~ours;
+
+        MoveGenerator.addMoves(moves, kingSquare, Attacks.kingAttacks(kingSquare) & allowed & ~danger, theirs);
+
+        // Only the king can answer a double check.
+        if(Long.bitCount(checkers) > 1) return;
+
+        long checkMask = -1L;
+        if(checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            checkMask = checkers | Attacks.between(kingSquare, checker);
+        } else if(!tacticalOnly) {
+            MoveGenerator.addCastling(position, moves, us, kingSquare, danger);
+        }
+
+        long pinned = MoveGenerator.pinnedPieces(position, us, kingSquare);
+        long targets = allowed & checkMask;
+
+        for(long bb = position.getPieces(us, Bitboards.KNIGHT) & ~pinned; bb != 0; bb &= bb - 1) {
+            int from = Long.numberOfTrailingZeros(bb);
+            MoveGenerator.addMoves(moves, from, Attacks.knightAttacks(from) & targets, theirs);
+        }
+        for(long bb = position.getPieces(us, Bitboards.BISHOP) | position.getPieces(us, Bitboards.QUEEN); bb != 0; bb &= bb - 1) {
+            int from = Long.numberOfTrailingZeros(bb);
+            long to = Attacks.bishopAttacks(from, occupied) & targets;
+            if((pinned & Bitboards.bit(from)) != 0) to &= Attacks.line(kingSquare, from);
+            MoveGenerator.addMoves(moves, from, to, theirs);
+        }
+        for(long bb = position.getPieces(us, Bitboards.ROOK) | position.getPieces(us, Bitboards.QUEEN); bb != 0; bb &= bb - 1) {
+            int from = Long.numberOfTrailingZeros(bb);
+            long to = Attacks.rookAttacks(from, occupied) & targets;
+            if((pinned & Bitboards.bit(from)) != 0) to &= Attacks.line(kingSquare, from);
+            MoveGenerator.addMoves(moves, from, to, theirs);
+        }
+
+        MoveGenerator.addPawnMoves(position, moves, us, kingSquare, checkMask, pinned, tacticalOnly);
+    }
+
+    /**
+     * Returns every square attacked by color, given the occupancy.
+     * @param position Position the pieces are in
+     * @param color Color of the attacking pieces
+     * @param occupied Occupancy to slide through
+     * @return Bitboard of every square attacked by color
+     */
+    private static long attackedSquares(Position position, int color, long occupied) {
+        long pawns = position.getPieces(color, Bitboards.PAWN);
+        long out = color == Bitboards.WHITE
+                ? ((pawns & ~Bitboards.FILE_A) << 7) | ((pawns & ~Bitboards.FILE_H) << 9)
+                : ((pawns & ~Bitboards.FILE_A) >>> 9) | ((pawns & ~Bitboards.FILE_H) >>> 7);
+
+        for(long bb = position.getPieces(color, Bitboards.KNIGHT); bb != 0; bb &= bb - 1) {
+            out |= Attacks.knightAttacks(Long.numberOfTrailingZeros(bb));
+        }
+        for(long bb = position.getPieces(color, Bitboards.BISHOP) | position.getPieces(color, Bitboards.QUEEN); bb != 0; bb &= bb - 1) {
+            out |= Attacks.bishopAttacks(Long.numberOfTrailingZeros(bb), occupied);
+        }
+        for(long bb = position.getPieces(color, Bitboards.ROOK) | position.getPieces(color, Bitboards.QUEEN); bb != 0; bb &= bb - 1) {
+            out |= Attacks.rookAttacks(Long.numberOfTrailingZeros(bb), occupied);
+        }
+
+        return out | Attacks.kingAttacks(Long.numberOfTrailingZeros(position.getPieces(color, Bitboards.KING)));
+    }
+
+    /**
+     * Returns the pieces of color that are pinned to their king, i.e.
+     * the only piece between the king and an enemy slider on its line.
+     * @param position Position the pieces are in
+     * @param color Color of the king
+     * @param kingSquare Square of the king
+     * @return Bitboard of pinned pieces
+     */
+    private static long pinnedPieces(Position position, int color, int kingSquare) {
+        int them = 1 - color;
+        long queens = position.getPieces(them, Bitboards.QUEEN);
+        long snipers = (Attacks.rookAttacks(kingSquare, 0) & (position.getPieces(them, Bitboards.ROOK) | queens))
+                | (Attacks.bishopAttacks(kingSquare, 0) & (position.getPieces(them, Bitboards.BISHOP) | queens));
+
+        long pinned = 0;
+        for(long bb = snipers; bb != 0; bb &= bb - 1) {
+            long blockers = Attacks.between(kingSquare, Long.numberOfTrailingZeros(bb)) & position.getOccupied();
+            if(Long.bitCount(blockers) == 1) pinned |= blockers & position.getOccupancy(color);
+        }
+
+        return pinned;
+    }
+
+    /**
+     * Adds a move from from to every square in targets, flagging captures of pieces in theirs.
+     */
+    private static void addMoves(MoveList moves, int from, long targets, long theirs) {
+        for(long bb = targets; bb != 0; bb &= bb - 1) {
+            int to = Long.numberOfTrailingZeros(bb);
+            moves.add(PackedMove.of(from, to, (theirs & Bitboards.bit(to)) != 0 ? PackedMove.CAPTURE : PackedMove.QUIET));
+        }
+    }
+
+    /**
+     * Adds the castling moves available to color, which must not be in check.
+     * The squares between king and rook must be empty and the squares the king
+     * crosses must not be attacked.
+     */
+    private static void addCastling(Position position, MoveList moves, int color, int kingSquare, long danger) {
+        int rights = position.getCastlingRights();
+        long occupied = position.getOccupied();
+        int kingSide = color == Bitboards.WHITE ? Position.WHITE_KING_SIDE : Position.BLACK_KING_SIDE;
+        int queenSide = color == Bitboards.WHITE ? Position.WHITE_QUEEN_SIDE : Position.BLACK_QUEEN_SIDE;
+
+        if((rights & kingSide) != 0) {
+            long path = Bitboards.bit(kingSquare + 1) | Bitboards.bit(kingSquare + 2);
+            if((occupied & path) == 0 && (danger & path) == 0) {
+                moves.add(PackedMove.of(kingSquare, kingSquare + 2, PackedMove.KING_CASTLE));
+            }
+        }
+        if((rights & queenSide) != 0) {
+            long path = Bitboards.bit(kingSquare - 1) | Bitboards.bit(kingSquare - 2);
+            if((occupied & (path | Bitboards.bit(kingSquare - 3))) == 0 && (danger & path) == 0) {
+                moves.add(PackedMove.of(kingSquare, kingSquare - 2, PackedMove.QUEEN_CASTLE));
+            }
+        }
+    }
+
+    /**
+     * Adds every legal pawn move of color, including promotions and en passant.
+     * If tacticalOnly, pushes that don't promote are left out.
+     */
+    private static void addPawnMoves(Position position, MoveList moves, int color, int kingSquare, long checkMask, long pinned, boolean tacticalOnly) {
+        long empty = ~position.getOccupied();
+        long theirs = position.getOccupancy(1 - color);
+        long startingRank = color == Bitboards.WHITE ? Bitboards.RANK_2 : Bitboards.RANK_7;
+        long lastRank = color == Bitboards.WHITE ? Bitboards.RANK_8 : Bitboards.RANK_1;
+        int enPassantSquare = position.getEnPassantSquare();
+
+        for(long bb = position.getPieces(color, Bitboards.PAWN); bb != 0; bb &= bb - 1) {
+            int from = Long.numberOfTrailingZeros(bb);
+            long allowed = checkMask;
+            if((pinned & Bitboards.bit(from)) != 0) allowed &= Attacks.line(kingSquare, from);
+
+            long pushes = Attacks.pawnPushes(color, from) & empty;
+            if(tacticalOnly) {
+                pushes &= lastRank;
+            } else if(pushes != 0 && (Bitboards.bit(from) & startingRank) != 0) {
+                long doublePush = Attacks.pawnPushes(color, Long.numberOfTrailingZeros(pushes)) & empty & allowed;
+                if(doublePush != 0) moves.add(PackedMove.of(from, Long.numberOfTrailingZeros(doublePush), PackedMove.DOUBLE_PAWN_PUSH));
+            }
+            pushes &= allowed;
+            long captures = Attacks.pawnAttacks(color, from) & theirs & allowed;
+
+            if(((pushes | captures) & lastRank) != 0) {
+                for(long to = pushes | captures; to != 0; to &= to - 1) {
+                    int square = Long.numberOfTrailingZeros(to);
+                    boolean capture = (captures & Bitboards.bit(square)) != 0;
+                    for(int type : promotionTypes) moves.add(PackedMove.promotion(from, square, type, capture));
+                }
+            } else {
+                MoveGenerator.addMoves(moves, from, pushes | captures, theirs);
+            }
+
+            if(enPassantSquare != Position.NO_SQUARE && (Attacks.pawnAttacks(color, from) & Bitboards.bit(enPassantSquare)) != 0
+                    && MoveGenerator.isLegalEnPassant(position, color, kingSquare, from, enPassantSquare)) {
+                moves.add(PackedMove.of(from, enPassantSquare, PackedMove.EN_PASSANT));
+            }
+        }
+    }
+
+    /**
+     * Returns whether capturing en passant leaves the king of color safe.
+     * Both pawns leave their squares at once, which can uncover a slider
+     * along the rank that neither a pin nor the check mask would catch.
+     * @return Whether the en passant capture is legal
+     */
+    private static boolean isLegalEnPassant(Position position, int color, int kingSquare, int from, int to) {
+        int captured = to ^ 8;
+        long occupied = position.getOccupied() ^ Bitboards.bit(from) ^ Bitboards.bit(to) ^ Bitboards.bit(captured);
+
+        return (position.attackersTo(kingSquare, occupied) & position.getOccupancy(1 - color) & ~Bitboards.bit(captured)) == 0;
+    }
+}
@@ -0,0 +1,128 @@
+package com.ben9583.chess_ai.components.bitboard;
+
+/**
+ * A list of packed moves backed by an int array.
+ * Meant to be created once and cleared and refilled for every
+ * position, so generating moves does not create any objects.
+ *
+ * See also: PackedMove, MoveGenerator
+ */
+public class MoveList {
+    /* The packed moves, of which the first size are in the list. */
+    private final int[] moves;
+    /* Number of moves in the list. */
+    private int size;
+
+    /**
+     * Creates an empty list that can hold the moves of any position.
+     */
+    public MoveList() {
+        this(MoveGenerator.MAX_MOVES);
+    }
+
+    /**
+     * Creates an empty list that can hold up to capacity moves.
+     * @param capacity Maximum number of moves in the list
+     */
+    public MoveList(int capacity) {
+        if(capacity < 0) throw new IllegalArgumentException("Tried to create a move list with capacity " + capacity + ".");
+
+        this.moves = new int[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Removes every move from the list.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Adds a move to the end of the list.
+     * @param move A packed move
+     */
+    public void add(int move) {
+        this.moves[this.size++] = move;
+    }
+
+    /**
+     * Returns the move at index.
+     * @param index Index of the move, less than size()
+     * @return The packed move at index
+     */
+    public int get(int index) {
+        if(index >= this.size) throw new IndexOutOfBoundsException("Tried to get move " + index + " of a list of " + this.size + " moves.");
+        return this.moves[index];
+    }
+
+    /**
+     * Replaces the move at index.
+     * @param index Index of the move, less than size()
+     * @param move The packed move to put at index
+     */
+    public void set(int index, int move) {
+        if(index >= this.size) throw new IndexOutOfBoundsException("Tried to set move " + index + " of a list of " + this.size + " moves.");
+        this.moves[index] = move;
+    }
+
+    /**
+     * Swaps the moves at indices i and j.
+     * @param i Index of a move, less than size()
+     * @param j Index of another move, less than size()
+     */
+    public void swap(int i, int j) {
+        int temp = this.get(i);
+        this.moves[i] = this.get(j);
+        this.moves[j] = temp;
+    }
+
+    /**
+     * Shortens the list to its first size moves.
+     * @param size New number of moves, no more than size()
+     */
+    public void truncate(int size) {
+        if(size < 0 || size > this.size) throw new IllegalArgumentException("Tried to truncate a list of " + this.size + " moves to " + size + " moves.");
+        this.size = size;
+    }
+
+    /**
+     * Returns whether move is in the list.
+     * @param move A packed move
+     * @return Whether move is in the list
+     */
+    public boolean contains(int move) {
+        for(int i = 0; i < this.size; i++) {
+            if(this.moves[i] == move) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of moves in the list.
+     * @return Number of moves in the list
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns whether the list has no moves.
+     * @return Whether the list is empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("[");
+        for(int i = 0; i < this.size; i++) {
+            if(i > 0) out.append(", ");
+            out.append(PackedMove.toString(this.moves[i]));
+        }
+
+        return out.append(']').toString();
+    }
+}
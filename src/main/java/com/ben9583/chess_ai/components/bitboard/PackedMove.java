@@ -0,0 +1,135 @@
+package com.ben9583.chess_ai.components.bitboard;
+
+/**
+ * Helper functions for moves packed into a single int.
+ * This lets positions make and unmake moves without allocating.
+ *
+ * Bits 0-5 hold the square the piece moves from, bits 6-11 the square
+ * it moves to and bits 12-15 the flags below. Promotions set the
+ * PROMOTION bit and store the piece promoted to in the lowest two bits
+ * of the flags (knight, bishop, rook, queen).
+ */
+public final class PackedMove {
+    /* Flags describing the kind of move. */
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+
+    /* A value that is never a legal move (a1 to a1). */
+    public static final int NONE = 0;
+
+    private PackedMove() {}
+
+    /**
+     * Packs a move into an int.
+     * @param from Square the piece moves from
+     * @param to Square the piece moves to
+     * @param flags Flags describing the move, for example CAPTURE
+     * @return The packed move
+     */
+    public static int of(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    /**
+     * Packs a promotion into an int.
+     * @param from Square the pawn moves from
+     * @param to Square the pawn moves to
+     * @param type Type of piece the pawn promotes to, from Bitboards.KNIGHT to Bitboards.QUEEN
+     * @param capture Whether the pawn captures a piece on to
+     * @return The packed move
+     */
+    public static int promotion(int from, int to, int type, boolean capture) {
+        return PackedMove.of(from, to, PROMOTION | (capture ? CAPTURE : 0) | (type - Bitboards.KNIGHT));
+    }
+
+    /**
+     * Returns the square the piece moves from.
+     * @param move A packed move
+     * @return Square the piece moves from
+     */
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    /**
+     * Returns the square the piece moves to.
+     * @param move A packed move
+     * @return Square the piece moves to
+     */
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * Returns the flags of the move.
+     * @param move A packed move
+     * @return Flags of the move
+     */
+    public static int flags(int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    /**
+     * Returns whether the move captures a piece, including en passant.
+     * @param move A packed move
+     * @return Whether the move is a capture
+     */
+    public static boolean isCapture(int move) {
+        return (PackedMove.flags(move) & CAPTURE) != 0;
+    }
+
+    /**
+     * Returns whether the move promotes a pawn.
+     * @param move A packed move
+     * @return Whether the move is a promotion
+     */
+    public static boolean isPromotion(int move) {
+        return (PackedMove.flags(move) & PROMOTION) != 0;
+    }
+
+    /**
+     * Returns whether the move castles on either side.
+     * @param move A packed move
+     * @return Whether the move is castling
+     */
+    public static boolean isCastle(int move) {
+        int flags = PackedMove.flags(move);
+        return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+    }
+
+    /**
+     * Returns the type of piece a promotion promotes to.
+     * Only meaningful if isPromotion(move) is true.
+     * @param move A packed move
+     * @return Type of piece, from Bitboards.KNIGHT to Bitboards.QUEEN
+     */
+    public static int promotionType(int move) {
+        return Bitboards.KNIGHT + (PackedMove.flags(move) & 3);
+    }
+
+    /**
+     * Converts the move to Universal Chess Interface (UCI) notation, for example "e2e4" or "e7e8q".
+     * @param move A packed move
+     * @return The move in UCI notation
+     */
+    public static String toString(int move) {
+        StringBuilder out = new StringBuilder(5);
+        PackedMove.appendSquare(out, PackedMove.from(move));
+        PackedMove.appendSquare(out, PackedMove.to(move));
+        if(PackedMove.isPromotion(move)) out.append("nbrq".charAt(PackedMove.promotionType(move) - Bitboards.KNIGHT));
+
+        return out.toString();
+    }
+
+    /**
+     * Appends square in standard chess notation, for example "e4".
+     */
+    private static void appendSquare(StringBuilder out, int square) {
+        out.append((char) ('a' + Bitboards.fileOf(square))).append(Bitboards.rankOf(square) + 1);
+    }
+}
@@ -0,0 +1,168 @@
+package com.ben9583.chess_ai.components.bitboard;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the leaf nodes of the tree of legal moves to a fixed depth (perft).
+ * The counts for well-known positions are published, so comparing against
+ * them checks move generation is correct, and timing them measures how fast it is.
+ *
+ * Divide breaks the count down by root move, which narrows down a wrong
+ * count to the move that causes it.
+ *
+ * See also: MoveGenerator
+ */
+public final class Perft {
+    private Perft() {}
+
+    /**
+     * Counts the leaf nodes depth plies below position.
+     * The position is left as it was when this returns.
+     * @param position Position to count from
+     * @param depth Number of plies to count to
+     * @return Number of leaf nodes
+     */
+    public static long perft(Position position, int depth) {
+        if(depth < 0) throw new IllegalArgumentException("Tried to run perft to depth " + depth + ".");
+        if(depth == 0) return 1;
+
+        return Perft.count(position, depth, Perft.createMoveLists(depth));
+    }
+
+    /**
+     * Counts the leaf nodes depth plies below position for every legal move in position.
+     * The position is left as it was when this returns.
+     * @param position Position to count from
+     * @param depth Number of plies to count to, at least 1
+     * @return Number of leaf nodes below each root move in UCI notation, in the order the moves were generated
+     */
+    public static Map<String, Long> divide(Position position, int depth) {
+        if(depth < 1) throw new IllegalArgumentException("Tried to divide perft to depth " + depth + ".");
+
+        MoveList[] moveLists = Perft.createMoveLists(depth);
+        MoveList rootMoves = new MoveList();
+        MoveGenerator.generateLegalMoves(position, rootMoves);
+
+        Map<String, Long> out = new LinkedHashMap<>();
+        for(int i = 0; i < rootMoves.size(); i++) {
+            int move = rootMoves.get(i);
+            position.makeMove(move);
+            out.put(PackedMove.toString(move), depth == 1 ? 1 : Perft.count(position, depth - 1, moveLists));
+            position.unmakeMove();
+        }
+
+        return out;
+    }
+
+    /**
+     * Counts the leaf nodes depth plies below position, with the root moves split across threads.
+     * Every thread works on its own copy, so position itself is never changed.
+     * @param position Position to count from
+     * @param depth Number of plies to count to
+     * @param threads Number of threads to use
+     * @return Number of leaf nodes
+     */
+    public static long parallelPerft(Position position, int depth, int threads) {
+        if(threads < 1) throw new IllegalArgumentException("Tried to run perft on " + threads + " threads.");
+        if(depth <= 1 || threads == 1) return Perft.perft(new Position(position), depth);
+
+        MoveList rootMoves = new MoveList();
+        MoveGenerator.generateLegalMoves(position, rootMoves);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> counts = new ArrayList<>(rootMoves.size());
+            for(int i = 0; i < rootMoves.size(); i++) {
+                int move = rootMoves.get(i);
+                counts.add(executor.submit(() -> {
+                    Position copy = new Position(position);
+                    copy.makeMove(move);
+                    return Perft.count(copy, depth - 1, Perft.createMoveLists(depth - 1));
+                }));
+            }
+
+            long nodes = 0;
+            for(Future<Long> count : counts) nodes += count.get();
+            return nodes;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Perft was interrupted.", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Perft failed on a worker thread.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs perft from fen to depth and prints the divide, the total and the speed to out.
+     * With more than one thread the divide is skipped and the root moves are split across the threads.
+     * @param fen Position to count from, in FEN
+     * @param depth Number of plies to count to, at least 1
+     * @param threads Number of threads to use
+     * @param out Where to print the results
+     * @return Number of leaf nodes
+     */
+    public static long report(String fen, int depth, int threads, PrintStream out) {
+        Position position = new Position();
+        position.loadFEN(fen);
+
+        out.println("Perft of " + fen + " to depth " + depth + (threads > 1 ? " on " + threads + " threads" : "") + ":");
+
+        long start = System.nanoTime();
+        long nodes;
+        if(threads > 1) {
+            nodes = Perft.parallelPerft(position, depth, threads);
+        } else {
+            nodes = 0;
+            for(Map.Entry<String, Long> entry : Perft.divide(position, depth).entrySet()) {
+                out.println(entry.getKey() + ": " + entry.getValue());
+                nodes += entry.getValue();
+            }
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        out.println("Nodes: " + nodes);
+        out.printf("Time: %.3f s%n", elapsed / 1e9);
+        out.printf("Nodes/sec: %.0f%n", nodes * 1e9 / elapsed);
+
+        return nodes;
+    }
+
+    /**
+     * Counts the leaf nodes depth plies below position, which must be at least 1.
+     * The moves at the last ply are counted without being made.
+     */
+    private static long count(Position position, int depth, MoveList[] moveLists) {
+        MoveList moves = moveLists[depth];
+        MoveGenerator.generateLegalMoves(position, moves);
+        if(depth == 1) return moves.size();
+
+        long nodes = 0;
+        for(int i = 0; i < moves.size(); i++) {
+            position.makeMove(moves.get(i));
+            nodes += Perft.count(position, depth - 1, moveLists);
+            position.unmakeMove();
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Creates one move list for every ply, so counting never allocates.
+     */
+    private static MoveList[] createMoveLists(int depth) {
+        MoveList[] out = new MoveList[depth + 1];
+        for(int i = 0; i <= depth; i++) out[i] = new MoveList();
+
+        return out;
+    }
+}
@@ -0,0 +1,32 @@
+package com.ben9583.chess_ai.components.bitboard;
+
+/**
+ * Told by a Position about every piece put on or taken off a square,
+ * including while moves are made and unmade, so that something derived
+ * from the pieces can be kept up to date a change at a time instead of
+ * being worked out again from scratch.
+ *
+ * See also: Position.setPieceListener
+ */
+public interface PieceListener {
+    /**
+     * Called after a piece is put on square.
+     * @param code Piece code of the piece
+     * @param square Square it was put on
+     */
+    void pieceAdded(int code, int square);
+
+    /**
+     * Called after a piece is taken off square.
+     * @param code Piece code of the piece
+     * @param square Square it was taken off
+     */
+    void pieceRemoved(int code, int square);
+
+    /**
+     * Called after the pieces of position are replaced all at once, for example
+     * when it is cleared, copied or restored, rather than a piece at a time.
+     * @param position The position, whose pieces should be read again
+     */
+    void piecesReset(Position position);
+}
@@ -0,0 +1,724 @@
+package com.ben9583.chess_ai.components.bitboard;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard representation of a chess position.
+ * Keeps one bitboard per type and color of piece, plus occupancy
+ * bitboards for each color and for the whole board. A mailbox
+ * of piece codes is kept alongside so that looking up the piece
+ * on a single square does not have to search every bitboard.
+ *
+ * Moves are made and unmade with makeMove and unmakeMove. Everything
+ * unmakeMove needs to restore the position exactly is packed into a
+ * single long per move on a preallocated undo stack, so neither
+ * direction allocates.
+ *
+ * A Zobrist key of the position is updated with every change. The key
+ * before each move is kept next to its undo record, which is also what
+ * repetitions are looked up in.
+ *
+ * A PieceListener can be told of every piece put on or taken off a square,
+ * so evaluations that depend on the pieces can be updated incrementally.
+ *
+ * See also: Bitboards, PackedMove, Zobrist
+ */
+public class Position {
+    /* Bits of the castling rights for each player and each side. */
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+    public static final int ALL_CASTLING_RIGHTS = WHITE_KING_SIDE | WHITE_QUEEN_SIDE | BLACK_KING_SIDE | BLACK_QUEEN_SIDE;
+
+    /* Square value meaning there is no en passant square. */
+    public static final int NO_SQUARE = -1;
+
+    /* The standard starting position in Forsyth-Edwards Notation (FEN). */
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /* Number of moves the undo stack can hold before it has to grow. Enough for almost every game. */
+    private static final int INITIAL_UNDO_CAPACITY = 1024;
+
+    /* Castling rights kept when a piece moves from or to each square. Moving a king or rook, or capturing a rook, loses rights. */
+    private static final int[] castlingRightsMask = new int[Bitboards.SQUARES];
+
+    static {
+        Arrays.fill(castlingRightsMask, ALL_CASTLING_RIGHTS);
+        castlingRightsMask[Bitboards.square(0, 0)] &= ~WHITE_QUEEN_SIDE;
+        castlingRightsMask[Bitboards.square(7, 0)] &= ~WHITE_KING_SIDE;
+        castlingRightsMask[Bitboards.square(4, 0)] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        castlingRightsMask[Bitboards.square(0, 7)] &= ~BLACK_QUEEN_SIDE;
+        castlingRightsMask[Bitboards.square(7, 7)] &= ~BLACK_KING_SIDE;
+        castlingRightsMask[Bitboards.square(4, 7)] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+    }
+
+    /* One bitboard for every piece code, i.e. every type and color of piece. */
+    private final long[] pieces;
+    /* Bitboard of every square occupied by each color. */
+    private final long[] colors;
+    /* Bitboard of every occupied square. */
+    private long occupied;
+    /* Piece code on each square, or Bitboards.EMPTY if there is nothing there. */
+    private final byte[] mailbox;
+
+    /* Color of the player whose turn it is. */
+    private int sideToMove;
+    /* Castling rights still available, as a combination of the *_SIDE bits. */
+    private int castlingRights;
+    /* Square a pawn skipped over with a double push last move, following FEN notation. NO_SQUARE if none. */
+    private int enPassantSquare;
+    /* Number of half-moves since a capture or pawn move. */
+    private int halfMoveClock;
+    /* Number of full-moves, starting at 1 and incremented after Black moves. */
+    private int fullMoveNumber;
+    /* Zobrist key of this position. */
+    private long key;
+
+    /* Undo records for every move made, packed as described in pushUndo. */
+    private long[] undoStack;
+    /* Zobrist key of the position before each move on the undo stack. */
+    private long[] keyHistory;
+    /* Number of records on the undo stack. */
+    private int undoSize;
+
+    /* Told of every change to the pieces, or null. Belongs to this position, so it isn't copied. */
+    private PieceListener listener;
+
+    /**
+     * Creates an empty position.
+     */
+    public Position() {
+        this.pieces = new long[Bitboards.NUM_PIECE_CODES];
+        this.colors = new long[2];
+        this.mailbox = new byte[Bitboards.SQUARES];
+        this.undoStack = new long[INITIAL_UNDO_CAPACITY];
+        this.keyHistory = new long[INITIAL_UNDO_CAPACITY];
+
+        this.clear();
+    }
+
+    /**
+     * Creates a copy of other, including its move history, that can
+     * be changed without affecting other. Used to search the same
+     * position on several threads.
+     * @param other Position to copy
+     */
+    public Position(Position other) {
+        this.pieces = other.pieces.clone();
+        this.colors = other.colors.clone();
+        this.mailbox = other.mailbox.clone();
+        this.occupied = other.occupied;
+
+        this.sideToMove = other.sideToMove;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfMoveClock = other.halfMoveClock;
+        this.fullMoveNumber = other.fullMoveNumber;
+        this.key = other.key;
+
+        this.undoStack = other.undoStack.clone();
+        this.keyHistory = other.keyHistory.clone();
+        this.undoSize = other.undoSize;
+    }
+
+    /**
+     * Sets up this position from a string in Forsyth-Edwards Notation (FEN),
+     * clearing the move history. The half-move clock and full-move number
+     * may be left out, in which case they default to 0 and 1.
+     * @param fen Position in FEN, for example "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"
+     */
+    public void loadFEN(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if(fields.length < 4 || fields.length > 6) throw new IllegalArgumentException("Tried to load FEN \"" + fen + "\", but it does not have 4 to 6 fields.");
+
+        this.clear();
+
+        int x = 0;
+        int y = Bitboards.RANKS - 1;
+        for(char c : fields[0].toCharArray()) {
+            if(c == '/') {
+                if(x != Bitboards.FILES || y == 0) throw new IllegalArgumentException("Tried to load FEN \"" + fen + "\", but rank " + (y + 1) + " does not have 8 squares.");
+                x = 0;
+                y--;
+            } else if(c >= '1' && c <= '8') {
+                x += c - '0';
+            } else {
+                int type = "pnbrqk".indexOf(Character.toLowerCase(c));
+                if(type == -1) throw new IllegalArgumentException("Tried to load FEN \"" + fen + "\", but '" + c + "' is not a piece.");
+                if(x >= Bitboards.FILES) throw new IllegalArgumentException("Tried to load FEN \"" + fen + "\", but rank " + (y + 1) + " has more than 8 squares.");
+                this.putPiece(Character.isUpperCase(c) ? Bitboards.WHITE : Bitboards.BLACK, type, Bitboards.square(x, y));
+                x++;
+            }
+        }
+        if(x != Bitboards.FILES || y != 0) throw new IllegalArgumentException("Tried to load FEN \"" + fen + "\", but it does not describe 8 full ranks.");
+        if(Long.bitCount(this.getPieces(Bitboards.WHITE, Bitboards.KING)) != 1 || Long.bitCount(this.getPieces(Bitboards.BLACK, Bitboards.KING)) != 1) {
+            throw new IllegalArgumentException("Tried to load FEN \"" + fen + "\", but each player must have exactly one king.");
+        }
+
+        switch(fields[1]) {
+            case "w" -> this.setSideToMove(Bitboards.WHITE);
+            case "b" -> this.setSideToMove(Bitboards.BLACK);
+            default -> throw new IllegalArgumentException("Tried to load FEN \"" + fen + "\", but \"" + fields[1] + "\" is not a side to move.");
+        }
+
+        int rights = 0;
+        if(!fields[2].equals("-")) {
+            for(char c : fields[2].toCharArray()) {
+                int right = "KQkq".indexOf(c);
+                if(right == -1) throw new IllegalArgumentException("Tried to load FEN \"" + fen + "\", but '" + c + "' is not a castling right.");
+                rights |= 1 << right;
+            }
+        }
+        this.setCastlingRights(rights);
+
+        if(!fields[3].equals("-")) {
+            String square = fields[3];
+            if(square.length() != 2 || square.charAt(0) < 'a' || square.charAt(0) > 'h' || (square.charAt(1) != '3' && square.charAt(1) != '6')) {
+                throw new IllegalArgumentException("Tried to load FEN \"" + fen + "\", but \"" + square + "\" is not an en passant square.");
+            }
+            this.setEnPassantSquare(Bitboards.square(square.charAt(0) - 'a', square.charAt(1) - '1'));
+        }
+
+        try {
+            if(fields.length > 4) this.halfMoveClock = Integer.parseInt(fields[4]);
+            if(fields.length > 5) this.fullMoveNumber = Integer.parseInt(fields[5]);
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Tried to load FEN \"" + fen + "\", but its move counters are not numbers.", e);
+        }
+    }
+
+    /**
+     * Saves this position into snapshot, overwriting what it held before.
+     * The move history is not saved.
+     * @param snapshot Snapshot to save into
+     */
+    public void capture(PositionSnapshot snapshot) {
+        System.arraycopy(this.pieces, 0, snapshot.pieces, 0, this.pieces.length);
+        System.arraycopy(this.colors, 0, snapshot.colors, 0, this.colors.length);
+        System.arraycopy(this.mailbox, 0, snapshot.mailbox, 0, this.mailbox.length);
+        snapshot.occupied = this.occupied;
+
+        snapshot.sideToMove = this.sideToMove;
+        snapshot.castlingRights = this.castlingRights;
+        snapshot.enPassantSquare = this.enPassantSquare;
+        snapshot.halfMoveClock = this.halfMoveClock;
+        snapshot.fullMoveNumber = this.fullMoveNumber;
+        snapshot.key = this.key;
+    }
+
+    /**
+     * Sets this position to a copy of other, including its move history.
+     * Arrays this position already owns are reused where they are big enough.
+     * @param other Position to copy
+     */
+    public void copyFrom(Position other) {
+        System.arraycopy(other.pieces, 0, this.pieces, 0, this.pieces.length);
+        System.arraycopy(other.colors, 0, this.colors, 0, this.colors.length);
+        System.arraycopy(other.mailbox, 0, this.mailbox, 0, this.mailbox.length);
+        this.occupied = other.occupied;
+
+        this.sideToMove = other.sideToMove;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfMoveClock = other.halfMoveClock;
+        this.fullMoveNumber = other.fullMoveNumber;
+        this.key = other.key;
+
+        if(this.undoStack.length < other.undoSize) {
+            this.undoStack = new long[other.undoStack.length];
+            this.keyHistory = new long[other.undoStack.length];
+        }
+        System.arraycopy(other.undoStack, 0, this.undoStack, 0, other.undoSize);
+        System.arraycopy(other.keyHistory, 0, this.keyHistory, 0, other.undoSize);
+        this.undoSize = other.undoSize;
+
+        if(this.listener != null) this.listener.piecesReset(this);
+    }
+
+    /**
+     * Sets this position to the one saved in snapshot and clears the move history,
+     * so moves made before restoring can no longer be unmade.
+     * @param snapshot Snapshot to restore
+     */
+    public void restore(PositionSnapshot snapshot) {
+        System.arraycopy(snapshot.pieces, 0, this.pieces, 0, this.pieces.length);
+        System.arraycopy(snapshot.colors, 0, this.colors, 0, this.colors.length);
+        System.arraycopy(snapshot.mailbox, 0, this.mailbox, 0, this.mailbox.length);
+        this.occupied = snapshot.occupied;
+
+        this.sideToMove = snapshot.sideToMove;
+        this.castlingRights = snapshot.castlingRights;
+        this.enPassantSquare = snapshot.enPassantSquare;
+        this.halfMoveClock = snapshot.halfMoveClock;
+        this.fullMoveNumber = snapshot.fullMoveNumber;
+        this.key = snapshot.key;
+        this.undoSize = 0;
+
+        if(this.listener != null) this.listener.piecesReset(this);
+    }
+
+    /**
+     * Removes every piece from this position and resets it to White to move,
+     * with no castling rights, no en passant square and no move history.
+     */
+    public void clear() {
+        Arrays.fill(this.pieces, 0L);
+        Arrays.fill(this.colors, 0L);
+        Arrays.fill(this.mailbox, (byte) Bitboards.EMPTY);
+        this.occupied = 0L;
+
+        this.sideToMove = Bitboards.WHITE;
+        this.castlingRights = 0;
+        this.enPassantSquare = NO_SQUARE;
+        this.halfMoveClock = 0;
+        this.fullMoveNumber = 1;
+        this.key = 0L;
+        this.undoSize = 0;
+
+        if(this.listener != null) this.listener.piecesReset(this);
+    }
+
+    /**
+     * Puts a piece of color and type on square, which must be empty.
+     * @param color Color of the piece
+     * @param type Type of the piece
+     * @param square Empty square to put the piece on
+     */
+    public void putPiece(int color, int type, int square) {
+        if(this.mailbox[square] != Bitboards.EMPTY) throw new IllegalArgumentException("Tried to put a piece on square " + square + ", but it is occupied.");
+
+        long bit = Bitboards.bit(square);
+        int code = Bitboards.pieceCode(color, type);
+
+        this.pieces[code] |= bit;
+        this.colors[color] |= bit;
+        this.occupied |= bit;
+        this.mailbox[square] = (byte) code;
+        this.key ^= Zobrist.piece(code, square);
+
+        if(this.listener != null) this.listener.pieceAdded(code, square);
+    }
+
+    /**
+     * Removes the piece on square, which must be occupied.
+     * @param square Occupied square to remove the piece from
+     * @return The piece code of the removed piece
+     */
+    public int removePiece(int square) {
+        int code = this.mailbox[square];
+        if(code == Bitboards.EMPTY) throw new IllegalArgumentException("Tried to remove a piece from square " + square + ", but nothing was there.");
+
+        long bit = Bitboards.bit(square);
+
+        this.pieces[code] &= ~bit;
+        this.colors[Bitboards.colorOf(code)] &= ~bit;
+        this.occupied &= ~bit;
+        this.mailbox[square] = (byte) Bitboards.EMPTY;
+        this.key ^= Zobrist.piece(code, square);
+
+        if(this.listener != null) this.listener.pieceRemoved(code, square);
+        return code;
+    }
+
+    /**
+     * Moves the piece on from to the empty square to.
+     * @param from Occupied square to move the piece from
+     * @param to Empty square to move the piece to
+     */
+    public void movePiece(int from, int to) {
+        int code = this.mailbox[from];
+        if(code == Bitboards.EMPTY) throw new IllegalArgumentException("Tried to move a piece from square " + from + ", but nothing was there.");
+        if(this.mailbox[to] != Bitboards.EMPTY) throw new IllegalArgumentException("Tried to move a piece to square " + to + ", but it is occupied.");
+
+        long fromTo = Bitboards.bit(from) | Bitboards.bit(to);
+
+        this.pieces[code] ^= fromTo;
+        this.colors[Bitboards.colorOf(code)] ^= fromTo;
+        this.occupied ^= fromTo;
+        this.mailbox[from] = (byte) Bitboards.EMPTY;
+        this.mailbox[to] = (byte) code;
+        this.key ^= Zobrist.piece(code, from) ^ Zobrist.piece(code, to);
+
+        if(this.listener != null) {
+            this.listener.pieceRemoved(code, from);
+            this.listener.pieceAdded(code, to);
+        }
+    }
+
+    /**
+     * Makes move for the side to move. The move is assumed to be
+     * at least pseudo-legal; it is not checked.
+     *
+     * See also: unmakeMove
+     * @param move A packed move
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+        int color = this.sideToMove;
+        long keyBefore = this.key;
+
+        int captured = Bitboards.EMPTY;
+        if(flags == PackedMove.EN_PASSANT) {
+            captured = this.removePiece(to ^ 8);
+        } else if((flags & PackedMove.CAPTURE) != 0) {
+            captured = this.removePiece(to);
+        }
+
+        this.pushUndo(move, captured, keyBefore);
+
+        int type = Bitboards.typeOf(this.mailbox[from]);
+        this.movePiece(from, to);
+
+        if((flags & PackedMove.PROMOTION) != 0) {
+            this.removePiece(to);
+            this.putPiece(color, PackedMove.promotionType(move), to);
+        } else if(flags == PackedMove.KING_CASTLE) {
+            this.movePiece(to + 1, to - 1);
+        } else if(flags == PackedMove.QUEEN_CASTLE) {
+            this.movePiece(to - 2, to + 1);
+        }
+
+        this.key ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.castling(this.castlingRights) ^ Zobrist.blackToMove();
+        this.enPassantSquare = flags == PackedMove.DOUBLE_PAWN_PUSH ? (from + to) >>> 1 : NO_SQUARE;
+        this.castlingRights &= castlingRightsMask[from] & castlingRightsMask[to];
+        this.key ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.castling(this.castlingRights);
+
+        if(type == Bitboards.PAWN || captured != Bitboards.EMPTY) this.halfMoveClock = 0;
+        else this.halfMoveClock++;
+
+        if(color == Bitboards.BLACK) this.fullMoveNumber++;
+        this.sideToMove = 1 - color;
+    }
+
+    /**
+     * Takes back the last move made with makeMove, restoring
+     * the pieces, castling rights, en passant square and clocks exactly.
+     */
+    public void unmakeMove() {
+        if(this.undoSize == 0) throw new IllegalStateException("Tried to unmake a move, but no moves have been made.");
+
+        long record = this.undoStack[--this.undoSize];
+        int move = (int) (record & 0xFFFF);
+        int captured = (int) ((record >>> 16) & 0xF) - 1;
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+
+        this.sideToMove = 1 - this.sideToMove;
+        int color = this.sideToMove;
+        if(color == Bitboards.BLACK) this.fullMoveNumber--;
+
+        this.castlingRights = (int) ((record >>> 20) & 0xF);
+        this.enPassantSquare = (int) ((record >>> 24) & 0x7F) - 1;
+        this.halfMoveClock = (int) (record >>> 32);
+
+        if((flags & PackedMove.PROMOTION) != 0) {
+            this.removePiece(to);
+            this.putPiece(color, Bitboards.PAWN, to);
+        } else if(flags == PackedMove.KING_CASTLE) {
+            this.movePiece(to - 1, to + 1);
+        } else if(flags == PackedMove.QUEEN_CASTLE) {
+            this.movePiece(to + 1, to - 2);
+        }
+
+        this.movePiece(to, from);
+
+        if(captured != Bitboards.EMPTY) {
+            int capturedSquare = flags == PackedMove.EN_PASSANT ? to ^ 8 : to;
+            this.putPiece(Bitboards.colorOf(captured), Bitboards.typeOf(captured), capturedSquare);
+        }
+
+        this.key = this.keyHistory[this.undoSize];
+    }
+
+    /**
+     * Passes the turn to the other side without moving, which searches use to test
+     * whether a position is good enough that even a free move for the opponent doesn't help.
+     * The half-move clock is reset, so no position before the null move counts as a repetition
+     * of one after it. The side to move must not be in check.
+     *
+     * See also: unmakeNullMove
+     */
+    public void makeNullMove() {
+        this.pushUndo(PackedMove.NONE, Bitboards.EMPTY, this.key);
+
+        this.key ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.blackToMove();
+        this.enPassantSquare = NO_SQUARE;
+        this.halfMoveClock = 0;
+        this.sideToMove = 1 - this.sideToMove;
+    }
+
+    /**
+     * Takes back the last move made with makeNullMove.
+     */
+    public void unmakeNullMove() {
+        if(this.undoSize == 0 || this.getLastMove() != PackedMove.NONE) throw new IllegalStateException("Tried to unmake a null move, but the last move was not one.");
+
+        long record = this.undoStack[--this.undoSize];
+        this.sideToMove = 1 - this.sideToMove;
+        this.enPassantSquare = (int) ((record >>> 24) & 0x7F) - 1;
+        this.halfMoveClock = (int) (record >>> 32);
+        this.key = this.keyHistory[this.undoSize];
+    }
+
+    /**
+     * Pushes the state needed to unmake move onto the undo stack.
+     * Bits 0-15 hold the move, 16-19 the captured piece code plus one,
+     * 20-23 the castling rights, 24-30 the en passant square plus one
+     * and 32-63 the half-move clock.
+     * @param move The move about to be made
+     * @param captured Piece code of the captured piece, or Bitboards.EMPTY
+     * @param key Zobrist key of the position before the move
+     */
+    private void pushUndo(int move, int captured, long key) {
+        if(this.undoSize == this.undoStack.length) {
+            this.undoStack = Arrays.copyOf(this.undoStack, this.undoStack.length * 2);
+            this.keyHistory = Arrays.copyOf(this.keyHistory, this.undoStack.length);
+        }
+
+        this.keyHistory[this.undoSize] = key;
+        this.undoStack[this.undoSize++] = (move & 0xFFFFL)
+                | ((long) (captured + 1) << 16)
+                | ((long) this.castlingRights << 20)
+                | ((long) (this.enPassantSquare + 1) << 24)
+                | ((long) this.halfMoveClock << 32);
+    }
+
+    /**
+     * Sets what is told of every piece put on or taken off a square from now on, replacing
+     * any listener set before. The listener is told its pieces were reset right away,
+     * so it starts from the current position.
+     * @param listener Listener to tell, or null to stop telling one
+     */
+    public void setPieceListener(PieceListener listener) {
+        this.listener = listener;
+        if(listener != null) listener.piecesReset(this);
+    }
+
+    /**
+     * Returns what is told of every piece put on or taken off a square.
+     * @return The listener, or null if there is none
+     */
+    public PieceListener getPieceListener() {
+        return this.listener;
+    }
+
+    /**
+     * Returns the piece code of the piece on square.
+     * @param square A square on the board
+     * @return The piece code on square, or Bitboards.EMPTY if there is nothing there
+     */
+    public int pieceAt(int square) {
+        return this.mailbox[square];
+    }
+
+    /**
+     * Returns the bitboard of every piece of color and type.
+     * @param color Color of the pieces
+     * @param type Type of the pieces
+     * @return Bitboard of every piece of color and type
+     */
+    public long getPieces(int color, int type) {
+        return this.pieces[Bitboards.pieceCode(color, type)];
+    }
+
+    /**
+     * Returns the bitboard of every square occupied by color.
+     * @param color Color of the pieces
+     * @return Bitboard of every square occupied by color
+     */
+    public long getOccupancy(int color) {
+        return this.colors[color];
+    }
+
+    /**
+     * Returns the bitboard of every occupied square.
+     * @return Bitboard of every occupied square
+     */
+    public long getOccupied() {
+        return this.occupied;
+    }
+
+    /**
+     * Returns whether any piece of color attacks square.
+     * Works backwards from square: a piece of some type attacks square
+     * exactly when that type of piece on square would attack it.
+     * @param square Square that may be attacked
+     * @param color Color of the attacking pieces
+     * @return Whether square is attacked by color
+     */
+    public boolean isSquareAttacked(int square, int color) {
+        int code = Bitboards.pieceCode(color, Bitboards.PAWN);
+        if((Attacks.pawnAttacks(1 - color, square) & this.pieces[code + Bitboards.PAWN]) != 0) return true;
+        if((Attacks.knightAttacks(square) & this.pieces[code + Bitboards.KNIGHT]) != 0) return true;
+        if((Attacks.kingAttacks(square) & this.pieces[code + Bitboards.KING]) != 0) return true;
+
+        long queens = this.pieces[code + Bitboards.QUEEN];
+        if((Attacks.bishopAttacks(square, this.occupied) & (this.pieces[code + Bitboards.BISHOP] | queens)) != 0) return true;
+        return (Attacks.rookAttacks(square, this.occupied) & (this.pieces[code + Bitboards.ROOK] | queens)) != 0;
+    }
+
+    /**
+     * Returns whether the king of the side to move is attacked.
+     * @return Whether the side to move is in check
+     */
+    public boolean isInCheck() {
+        long king = this.pieces[Bitboards.pieceCode(this.sideToMove, Bitboards.KING)];
+        return this.isSquareAttacked(Long.numberOfTrailingZeros(king), 1 - this.sideToMove);
+    }
+
+    /**
+     * Returns every piece of either color that attacks square.
+     * Sliders look through the given occupancy instead of the position's,
+     * which lets callers ask what would be attacked after pieces leave squares.
+     * @param square Square to find the attackers of
+     * @param occupied Occupancy sliders are blocked by. Pieces not in it do not attack
+     * @return Bitboard of every piece attacking square
+     */
+    public long attackersTo(int square, long occupied) {
+        long queens = this.pieces[Bitboards.pieceCode(Bitboards.WHITE, Bitboards.QUEEN)] | this.pieces[Bitboards.pieceCode(Bitboards.BLACK, Bitboards.QUEEN)];
+        long rooks = this.pieces[Bitboards.pieceCode(Bitboards.WHITE, Bitboards.ROOK)] | this.pieces[Bitboards.pieceCode(Bitboards.BLACK, Bitboards.ROOK)] | queens;
+        long bishops = this.pieces[Bitboards.pieceCode(Bitboards.WHITE, Bitboards.BISHOP)] | this.pieces[Bitboards.pieceCode(Bitboards.BLACK, Bitboards.BISHOP)] | queens;
+        long knights = this.pieces[Bitboards.pieceCode(Bitboards.WHITE, Bitboards.KNIGHT)] | this.pieces[Bitboards.pieceCode(Bitboards.BLACK, Bitboards.KNIGHT)];
+        long kings = this.pieces[Bitboards.pieceCode(Bitboards.WHITE, Bitboards.KING)] | this.pieces[Bitboards.pieceCode(Bitboards.BLACK, Bitboards.KING)];
+
+        long out = (Attacks.pawnAttacks(Bitboards.WHITE, square) & this.pieces[Bitboards.pieceCode(Bitboards.BLACK, Bitboards.PAWN)])
+                | (Attacks.pawnAttacks(Bitboards.BLACK, square) & this.pieces[Bitboards.pieceCode(Bitboards.WHITE, Bitboards.PAWN)])
+                | (Attacks.knightAttacks(square) & knights)
+                | (Attacks.kingAttacks(square) & kings)
+                | (Attacks.bishopAttacks(square, occupied) & bishops)
+                | (Attacks.rookAttacks(square, occupied) & rooks);
+
+        return out & occupied;
+    }
+
+    /**
+     * Returns the color of the player whose turn it is.
+     * @return Bitboards.WHITE or Bitboards.BLACK
+     */
+    public int getSideToMove() {
+        return this.sideToMove;
+    }
+
+    /**
+     * Sets whose turn it is. Used when setting up a position.
+     * @param color Bitboards.WHITE or Bitboards.BLACK
+     */
+    public void setSideToMove(int color) {
+        if(color != this.sideToMove) this.key ^= Zobrist.blackToMove();
+        this.sideToMove = color;
+    }
+
+    /**
+     * Returns the castling rights still available.
+     * @return Combination of the *_SIDE bits
+     */
+    public int getCastlingRights() {
+        return this.castlingRights;
+    }
+
+    /**
+     * Sets the castling rights. Used when setting up a position.
+     * @param castlingRights Combination of the *_SIDE bits
+     */
+    public void setCastlingRights(int castlingRights) {
+        this.key ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+    }
+
+    /**
+     * Returns the square a pawn skipped over with a double push last move.
+     * @return The en passant square, or NO_SQUARE if there is none
+     */
+    public int getEnPassantSquare() {
+        return this.enPassantSquare;
+    }
+
+    /**
+     * Sets the en passant square. Used when setting up a position.
+     * @param square The en passant square, or NO_SQUARE
+     */
+    public void setEnPassantSquare(int square) {
+        this.key ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(square);
+        this.enPassantSquare = square;
+    }
+
+    /**
+     * Returns the number of half-moves since a capture or pawn move.
+     * @return The half-move clock
+     */
+    public int getHalfMoveClock() {
+        return this.halfMoveClock;
+    }
+
+    /**
+     * Sets the half-move clock. Used when setting up a position.
+     * @param halfMoveClock Number of half-moves since a capture or pawn move
+     */
+    public void setHalfMoveClock(int halfMoveClock) {
+        this.halfMoveClock = halfMoveClock;
+    }
+
+    /**
+     * Returns the full-move number.
+     * @return The full-move number, starting at 1
+     */
+    public int getFullMoveNumber() {
+        return this.fullMoveNumber;
+    }
+
+    /**
+     * Sets the full-move number. Used when setting up a position.
+     * @param fullMoveNumber The full-move number, starting at 1
+     */
+    public void setFullMoveNumber(int fullMoveNumber) {
+        this.fullMoveNumber = fullMoveNumber;
+    }
+
+    /**
+     * Returns the Zobrist key of this position, which is equal for positions that are
+     * the same by the rules of repetition: the same pieces on the same squares, the same
+     * player to move, the same castling rights and the same en passant square.
+     *
+     * See also: Zobrist
+     * @return The Zobrist key of this position
+     */
+    public long getKey() {
+        return this.key;
+    }
+
+    /**
+     * Returns how many times this position occurred before, counting back
+     * only to the last capture or pawn move, as nothing before it can repeat.
+     * Only moves made on this position are seen, not moves before it was set up.
+     * @return Number of earlier occurrences of this position
+     */
+    public int countRepetitions() {
+        int count = 0;
+        int oldest = Math.max(0, this.undoSize - this.halfMoveClock);
+        for(int i = this.undoSize - 2; i >= oldest; i -= 2) {
+            if(this.keyHistory[i] == this.key) count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the last move made that has not been unmade.
+     * @return The last packed move, or PackedMove.NONE if no moves have been made
+     */
+    public int getLastMove() {
+        return this.undoSize == 0 ? PackedMove.NONE : (int) (this.undoStack[this.undoSize - 1] & 0xFFFF);
+    }
+
+    /**
+     * Returns the number of moves that can currently be unmade.
+     * @return Number of moves on the undo stack
+     */
+    public int getUndoDepth() {
+        return this.undoSize;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ben9583.chess_ai.components.bitboard;
+
+/**
+ * A saved copy of everything about a Position except its move history.
+ * Snapshots are filled by Position.capture and copied back with
+ * Position.restore. Both copy into arrays the snapshot and position
+ * already own, so a snapshot can be reused as often as needed
+ * without allocating.
+ */
+public class PositionSnapshot {
+    /* Copies of the bitboards of a position. */
+    final long[] pieces;
+    final long[] colors;
+    long occupied;
+    /* Copy of the mailbox of a position. */
+    final byte[] mailbox;
+
+    /* Copies of the state of a position, as described in Position. */
+    int sideToMove;
+    int castlingRights;
+    int enPassantSquare;
+    int halfMoveClock;
+    int fullMoveNumber;
+    long key;
+
+    /**
+     * Creates a snapshot of an empty position. Fill it with Position.capture.
+     */
+    public PositionSnapshot() {
+        this.pieces = new long[Bitboards.NUM_PIECE_CODES];
+        this.colors = new long[2];
+        this.mailbox = new byte[Bitboards.SQUARES];
+        this.enPassantSquare = Position.NO_SQUARE;
+        this.fullMoveNumber = 1;
+    }
+
+    /**
+     * Returns the Zobrist key of the position in this snapshot.
+     * @return The Zobrist key of the saved position
+     */
+    public long getKey() {
+        return this.key;
+    }
+}
@@ -0,0 +1,113 @@
+package com.ben9583.chess_ai.components.bitboard;
+
+/**
+ * Random keys for Zobrist hashing of positions.
+ * The key of a position is the XOR of one key for every piece on
+ * its square, one for each castling right still available, one for
+ * the file of the en passant square and one if Black is to move.
+ * As XOR undoes itself, a move only has to XOR in and out the keys of
+ * what it changes, which is how Position keeps its key up to date.
+ *
+ * The keys are generated from a fixed seed so that they are the same on every run.
+ */
+public final class Zobrist {
+    /* Seed the keys are generated from. */
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    /* Key of every piece code on every square, indexed [code * 64 + square]. */
+    private static final long[] pieceKeys = new long[Bitboards.NUM_PIECE_CODES * Bitboards.SQUARES];
+    /* Key of every combination of castling rights, each the XOR of the keys of the rights it contains. */
+    private static final long[] castlingKeys = new long[Position.ALL_CASTLING_RIGHTS + 1];
+    /* Key of the en passant square on each file. */
+    private static final long[] enPassantKeys = new long[Bitboards.FILES];
+    /* Key XORed in when Black is to move. */
+    private static final long blackToMoveKey;
+
+    static {
+        long[] seed = { SEED };
+        for(int i = 0; i < pieceKeys.length; i++) pieceKeys[i] = Zobrist.nextRandom(seed);
+
+        long[] rightKeys = new long[4];
+        for(int i = 0; i < rightKeys.length; i++) rightKeys[i] = Zobrist.nextRandom(seed);
+        for(int rights = 0; rights < castlingKeys.length; rights++) {
+            for(int i = 0; i < rightKeys.length; i++) {
+                if((rights & (1 << i)) != 0) castlingKeys[rights] ^= rightKeys[i];
+            }
+        }
+
+        for(int i = 0; i < enPassantKeys.length; i++) enPassantKeys[i] = Zobrist.nextRandom(seed);
+        blackToMoveKey = Zobrist.nextRandom(seed);
+    }
+
+    private Zobrist() {}
+
+    /**
+     * Returns the key of a piece on a square.
+     * @param code Piece code, not Bitboards.EMPTY
+     * @param square Square the piece is on
+     * @return Key of the piece on square
+     */
+    public static long piece(int code, int square) {
+        return pieceKeys[code * Bitboards.SQUARES + square];
+    }
+
+    /**
+     * Returns the key of a set of castling rights.
+     * @param rights Combination of the Position.*_SIDE bits
+     * @return Key of the castling rights, 0 if there are none
+     */
+    public static long castling(int rights) {
+        return castlingKeys[rights];
+    }
+
+    /**
+     * Returns the key of an en passant square.
+     * @param square The en passant square, or Position.NO_SQUARE
+     * @return Key of the en passant square, 0 if there is none
+     */
+    public static long enPassant(int square) {
+        return square == Position.NO_SQUARE ? 0 : enPassantKeys[Bitboards.fileOf(square)];
+    }
+
+    /**
+     * Returns the key XORed in when Black is to move.
+     * @return Key of Black to move
+     */
+    public static long blackToMove() {
+        return blackToMoveKey;
+    }
+
+    /**
+     * Computes the key of position from scratch.
+     * Position keeps its key up to date itself, so this is only needed to check it.
+     * @param position Position to compute the key of
+     * @return Key of position
+     */
+    public static long compute(Position position) {
+        long key = 0;
+        for(long bb = position.getOccupied(); bb != 0; bb &= bb - 1) {
+            int square = Long.numberOfTrailingZeros(bb);
+            key ^= Zobrist.piece(position.pieceAt(square), square);
+        }
+
+        key ^= Zobrist.castling(position.getCastlingRights());
+        key ^= Zobrist.enPassant(position.getEnPassantSquare());
+        if(position.getSideToMove() == Bitboards.BLACK) key ^= blackToMoveKey;
+
+        return key;
+    }
+
+    /**
+     * Returns the next number from a xorshift64* generator.
+     * @param seed Single-element array holding the state, which is advanced
+     * @return A random 64-bit number
+     */
+    private static long nextRandom(long[] seed) {
+        long x = seed[0];
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        seed[0] = x;
+        return x * 0x2545F4914F6CDD1DL;
+    }
+}
@@ -2,18 +2,11 @@ package com.ben9583.chess_ai.components.pieces;
 
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
-import com.ben9583.chess_ai.utils.Vector2;
+import com.ben9583.chess_ai.components.bitboard.Attacks;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
 import org.jetbrains.annotations.NotNull;
 
 public class Bishop extends DirectionalPiece {
-    /* The bishop can move diagonally. */
-    private static final Vector2[] relativeSquares = {
-            Vector2.NORTHEAST,
-            Vector2.SOUTHEAST,
-            Vector2.SOUTHWEST,
-            Vector2.NORTHWEST
-    };
-
     public Bishop(@NotNull Player player, @NotNull Board board) {
         super(player, board);
     }
@@ -32,15 +25,17 @@ public class Bishop extends DirectionalPiece {
     }
 
     @Override
-    public char getFENSymbol() {
-        return 'B';
+    public int getType() {
+        return Bitboards.BISHOP;
     }
 
     @Override
-    protected Vector2[] getRelativeSquares() {
-        return Bishop.relativeSquares;
+    public char getFENSymbol() {
+        return 'B';
     }
 
     @Override
-    protected void pieceMoved(Vector2 position) {}
+    protected long getAttacks(int square, long occupied) {
+        return Attacks.bishopAttacks(square, occupied);
+    }
 }
@@ -2,12 +2,11 @@ package com.ben9583.chess_ai.components.pieces;
 
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.Position;
 import com.ben9583.chess_ai.utils.Vector2;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Abstract class representing a directional piece.
  * A directional piece is a piece that can move in some
@@ -18,29 +17,22 @@ public abstract class DirectionalPiece extends Piece {
     public DirectionalPiece(@NotNull Player player, @NotNull Board board) { super(player, board); }
 
     /**
-     * Returns an array of directions this piece can move to.
-     * This piece will consider all squares in this direction until
-     * it is 'blocked' by a piece.
+     * Returns every square this piece attacks from square, stopping
+     * at (and including) the first piece in each direction.
      *
-     * See also: Cardinal directions in Vector2.
-     * @return An array of directions this piece can move to
+     * See also: Attacks
+     * @param square Square this piece is on
+     * @param occupied Bitboard of every occupied square on the board
+     * @return Bitboard of every square this piece attacks
      */
-    protected abstract Vector2[] getRelativeSquares();
+    protected abstract long getAttacks(int square, long occupied);
 
     @Override
     public Vector2[] getMovableSquares(boolean considerChecks) {
-        List<Vector2> possibleSquares = new ArrayList<>();
-
-        Vector2 position = super.getPosition();
-        for(Vector2 direction : this.getRelativeSquares()) {
-            Vector2 positionToCheck = position.add(direction);
-            while(super.isValidTarget(positionToCheck, false)) {
-                if(!considerChecks || super.isValidTarget(positionToCheck, true)) possibleSquares.add(positionToCheck);
-                if(super.getBoard().getPieceAtPosition(positionToCheck) != null) break;
-                positionToCheck = positionToCheck.add(direction);
-            }
-        }
+        Position bitboards = super.getBoard().getBitboards();
+        int square = Bitboards.square(super.getPosition());
+        long targets = this.getAttacks(square, bitboards.getOccupied()) & ~bitboards.getOccupancy(Bitboards.colorOf(super.getPlayer()));
 
-        return possibleSquares.toArray(new Vector2[0]);
+        return super.toMovableSquares(targets, considerChecks);
     }
 }
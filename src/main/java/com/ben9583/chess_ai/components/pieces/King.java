@@ -2,50 +2,13 @@ package com.ben9583.chess_ai.components.pieces;
 
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
+import com.ben9583.chess_ai.components.bitboard.Attacks;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.Position;
 import com.ben9583.chess_ai.utils.Vector2;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.*;
-import java.util.stream.*;
-
 public class King extends PositionalPiece {
-    /* Functions that should be run when castling. For the purposes of checking if castling is legal. */
-    private final Stream<Runnable> castleWhiteKingSideRunnables = Stream.of(() -> getBoard().castleWhiteKing(King.this));
-    private final Stream<Runnable> castleWhiteQueenSideRunnables = Stream.of(() -> getBoard().castleWhiteQueen(King.this));
-    private final Stream<Runnable> castleBlackKingSideRunnables = Stream.of(() -> getBoard().castleBlackKing(King.this));
-    private final Stream<Runnable> castleBlackQueenSideRunnables = Stream.of(() -> getBoard().castleBlackQueen(King.this));
-    private final Stream<Runnable> uncastleWhiteKingSideRunnables = Stream.of(() -> getBoard().uncastleWhiteKing(King.this));
-    private final Stream<Runnable> uncastleWhiteQueenSideRunnables = Stream.of(() -> getBoard().uncastleWhiteQueen(King.this));
-    private final Stream<Runnable> uncastleBlackKingSideRunnables = Stream.of(() -> getBoard().uncastleBlackKing(King.this));
-    private final Stream<Runnable> uncastleBlackQueenSideRunnables = Stream.of(() -> getBoard().uncastleBlackQueen(King.this));
-
-    /* Functions that should be run to undo the state changes when castling. */
-    private final Stream<Runnable> disableCastleWhiteKingSideRunnables = Stream.of(() -> getBoard().disableCastleWhiteKing());
-    private final Stream<Runnable> disableCastleWhiteQueenSideRunnables = Stream.of(() -> getBoard().disableCastleWhiteQueen());
-    private final Stream<Runnable> disableCastleBlackKingSideRunnables = Stream.of(() -> getBoard().disableCastleBlackKing());
-    private final Stream<Runnable> disableCastleBlackQueenSideRunnables = Stream.of(() -> getBoard().disableCastleBlackQueen());
-    private final Stream<Runnable> enableCastleWhiteKingSideRunnables = Stream.of(() -> getBoard().enableCastleWhiteKing());
-    private final Stream<Runnable> enableCastleWhiteQueenSideRunnables = Stream.of(() -> getBoard().enableCastleWhiteQueen());
-    private final Stream<Runnable> enableCastleBlackKingSideRunnables = Stream.of(() -> getBoard().enableCastleBlackKing());
-    private final Stream<Runnable> enableCastleBlackQueenSideRunnables = Stream.of(() -> getBoard().enableCastleBlackQueen());
-
-    /* The king can move to any of its neighboring squares. */
-    private static final Vector2[] relativeSquares = {
-            Vector2.NORTH,
-            Vector2.NORTHEAST,
-            Vector2.EAST,
-            Vector2.SOUTHEAST,
-            Vector2.SOUTH,
-            Vector2.SOUTHWEST,
-            Vector2.WEST,
-            Vector2.NORTHWEST
-    };
-
-    /* Relative position the king moves to when king-side castling. */
-    private static final Vector2 kingSideCastleSquare = new Vector2(2, 0);
-    /* Relative position the king moves to when queen-side castling. */
-    private static final Vector2 queenSideCastleSquare = new Vector2(-2, 0);
-
     public King(@NotNull Player player, @NotNull Board board) {
         super(player, board);
     }
@@ -55,6 +18,11 @@ public class King extends PositionalPiece {
         return 99999;
     }
 
+    @Override
+    public int getType() {
+        return Bitboards.KING;
+    }
+
     @Override
     public char getFENSymbol() {
         return 'K';
@@ -69,51 +37,43 @@ public class King extends PositionalPiece {
     }
 
     @Override
-    protected Vector2[] getRelativeSquares() {
-
-        List<Vector2> out = new ArrayList<>(Arrays.asList(King.relativeSquares));
-
-        if(super.getPlayer().equals(Player.WHITE)) {
-            if(super.getBoard().canCastleWhiteKing() && super.isValidTarget(super.getPosition().add(Vector2.EAST), false, disableCastleWhiteKingSideRunnables, enableCastleWhiteKingSideRunnables) && super.isValidTarget(super.getPosition().add(kingSideCastleSquare), false, castleWhiteKingSideRunnables, uncastleWhiteKingSideRunnables)) {
-                out.add(kingSideCastleSquare);
-            }
-            if(super.getBoard().canCastleWhiteQueen() && super.isValidTarget(super.getPosition().add(Vector2.WEST), false, disableCastleWhiteQueenSideRunnables, enableCastleWhiteQueenSideRunnables) && super.isValidTarget(queenSideCastleSquare.add(Vector2.WEST), false, disableCastleWhiteQueenSideRunnables, enableCastleWhiteQueenSideRunnables) && super.isValidTarget(super.getPosition().add(queenSideCastleSquare), false, castleWhiteQueenSideRunnables, uncastleWhiteQueenSideRunnables)) {
-                out.add(queenSideCastleSquare);
-            }
-        } else {
-            if(super.getBoard().canCastleBlackKing() && super.isValidTarget(super.getPosition().add(Vector2.EAST), false, disableCastleBlackKingSideRunnables, enableCastleBlackKingSideRunnables) && super.isValidTarget(super.getPosition().add(kingSideCastleSquare), false, castleBlackKingSideRunnables, uncastleBlackKingSideRunnables)) {
-                out.add(kingSideCastleSquare);
-            }
-            if(super.getBoard().canCastleBlackQueen() && super.isValidTarget(super.getPosition().add(Vector2.WEST), false, disableCastleBlackQueenSideRunnables, enableCastleBlackQueenSideRunnables) && super.isValidTarget(queenSideCastleSquare.add(Vector2.WEST), false, disableCastleWhiteQueenSideRunnables, enableCastleWhiteQueenSideRunnables) && super.isValidTarget(super.getPosition().add(queenSideCastleSquare), false, castleBlackQueenSideRunnables, uncastleBlackQueenSideRunnables)) {
-                out.add(queenSideCastleSquare);
-
-            }
-        }
-
-        return out.toArray(new Vector2[0]);
+    protected long getAttacks(int square) {
+        return Attacks.kingAttacks(square);
     }
 
     @Override
-    protected void pieceMoved(Vector2 position) {
+    public Vector2[] getMovableSquares(boolean considerChecks) {
+        Position bitboards = super.getBoard().getBitboards();
+        int square = Bitboards.square(super.getPosition());
+        long targets = (this.getAttacks(square) & ~bitboards.getOccupancy(Bitboards.colorOf(super.getPlayer()))) | this.getCastlingSquares(square);
+
+        return super.toMovableSquares(targets, considerChecks);
+    }
 
-        int dx = position.sub(super.getPosition()).getX();
-        if(super.getPlayer().equals(Player.WHITE)) {
-            if(dx == 2) {
-                castleWhiteKingSideRunnables.forEach(Runnable::run);
-            } else if(dx == -2) {
-                castleWhiteQueenSideRunnables.forEach(Runnable::run);
-            }
-            super.getBoard().disableCastleWhiteKing();
-            super.getBoard().disableCastleWhiteQueen();
-        } else {
-            if(dx == 2) {
-                castleBlackKingSideRunnables.forEach(Runnable::run);
-            } else if(dx == -2) {
-                castleBlackQueenSideRunnables.forEach(Runnable::run);
-            }
-            super.getBoard().disableCastleBlackKing();
-            super.getBoard().disableCastleBlackQueen();
+    /**
+     * Returns the squares this king can move to by castling,
+     * given that the player still has the right to castle and
+     * every square between the king and the rook is empty.
+     * @param square Square this king is on
+     * @return Bitboard of squares this king can castle to
+     */
+    private long getCastlingSquares(int square) {
+        Position bitboards = super.getBoard().getBitboards();
+        long occupied = bitboards.getOccupied();
+        int rights = bitboards.getCastlingRights();
+
+        boolean white = super.getPlayer().equals(Player.WHITE);
+        int kingSide = white ? Position.WHITE_KING_SIDE : Position.BLACK_KING_SIDE;
+        int queenSide = white ? Position.WHITE_QUEEN_SIDE : Position.BLACK_QUEEN_SIDE;
+
+        long out = 0;
+        if((rights & kingSide) != 0 && (occupied & (Bitboards.bit(square + 1) | Bitboards.bit(square + 2))) == 0) {
+            out |= Bitboards.bit(square + 2);
+        }
+        if((rights & queenSide) != 0 && (occupied & (Bitboards.bit(square - 1) | Bitboards.bit(square - 2) | Bitboards.bit(square - 3))) == 0) {
+            out |= Bitboards.bit(square - 2);
         }
 
+        return out;
     }
 }
@@ -2,22 +2,11 @@ package com.ben9583.chess_ai.components.pieces;
 
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
-import com.ben9583.chess_ai.utils.Vector2;
+import com.ben9583.chess_ai.components.bitboard.Attacks;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
 import org.jetbrains.annotations.NotNull;
 
 public class Knight extends PositionalPiece {
-    /* The knight can move anywhere that is two squares away in one dimension and one square away in another. */
-    private static final Vector2[] relativeSquares = {
-            new Vector2(1, 2),
-            new Vector2(2, 1),
-            new Vector2(2, -1),
-            new Vector2(1, -2),
-            new Vector2(-1, -2),
-            new Vector2(-2, -1),
-            new Vector2(-2, 1),
-            new Vector2(-1, 2)
-    };
-
     public Knight(@NotNull Player player, @NotNull Board board) {
         super(player, board);
     }
@@ -36,15 +25,17 @@ public class Knight extends PositionalPiece {
     }
 
     @Override
-    public char getFENSymbol() {
-        return 'N';
+    public int getType() {
+        return Bitboards.KNIGHT;
     }
 
     @Override
-    protected Vector2[] getRelativeSquares() {
-        return Knight.relativeSquares;
+    public char getFENSymbol() {
+        return 'N';
     }
 
     @Override
-    protected void pieceMoved(Vector2 position) {}
+    protected long getAttacks(int square) {
+        return Attacks.knightAttacks(square);
+    }
 }
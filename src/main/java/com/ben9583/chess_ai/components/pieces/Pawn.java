@@ -2,12 +2,12 @@ package com.ben9583.chess_ai.components.pieces;
 
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
+import com.ben9583.chess_ai.components.bitboard.Attacks;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.Position;
 import com.ben9583.chess_ai.utils.Vector2;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Pawn extends Piece {
     public Pawn(@NotNull Player player, @NotNull Board board) {
         super(player, board);
@@ -18,6 +18,11 @@ public class Pawn extends Piece {
         return 1;
     }
 
+    @Override
+    public int getType() {
+        return Bitboards.PAWN;
+    }
+
     @Override
     public char getFENSymbol() {
         return 'P';
@@ -33,63 +38,21 @@ public class Pawn extends Piece {
 
     @Override
     public Vector2[] getMovableSquares(boolean considerChecks) {
-        Vector2 moveToConsider;
-        Vector2 firstMoveToConsider;
-        Vector2[] attacksToConsider;
-        if(super.getPlayer().equals(Player.WHITE)) {
-            moveToConsider = super.getPosition().add(Vector2.NORTH);
-            firstMoveToConsider = super.getPosition().add(new Vector2(0, 2));
-            attacksToConsider = new Vector2[]{ super.getPosition().add(Vector2.NORTHWEST), super.getPosition().add(Vector2.NORTHEAST) };
-        } else {
-            moveToConsider = super.getPosition().add(Vector2.SOUTH);
-            firstMoveToConsider = super.getPosition().add(new Vector2(0, -2));
-            attacksToConsider = new Vector2[]{ super.getPosition().add(Vector2.SOUTHWEST), super.getPosition().add(Vector2.SOUTHEAST) };
-        }
-
-        List<Vector2> positionsToConsider = new ArrayList<>();
-
-        if(super.isValidTarget(moveToConsider, considerChecks) && super.getBoard().getPieceAtPosition(moveToConsider) == null) positionsToConsider.add(moveToConsider);
-        if((((super.getPlayer().equals(Player.WHITE) && super.getPosition().getY() == 1) || (super.getPlayer().equals(Player.BLACK) && super.getPosition().getY() == 6))) && super.isValidTarget(firstMoveToConsider, considerChecks) && super.getBoard().getPieceAtPosition(moveToConsider) == null && super.getBoard().getPieceAtPosition(firstMoveToConsider) == null)
-            positionsToConsider.add(firstMoveToConsider);
+        Position bitboards = super.getBoard().getBitboards();
+        int color = Bitboards.colorOf(super.getPlayer());
+        int square = Bitboards.square(super.getPosition());
+        long empty = ~bitboards.getOccupied();
 
-        for(Vector2 attack : attacksToConsider) {
-            if(super.isValidTarget(attack, considerChecks)) {
-                Piece target = super.getBoard().getPieceAtPosition(attack);
-                Vector2 enPassantPosition = super.getBoard().getEnPassantPosition();
-                if (attack.equals(enPassantPosition) || (target != null && target.getPlayer() != super.getPlayer()))
-                    positionsToConsider.add(attack);
-            }
-        }
+        long targets = Attacks.pawnPushes(color, square) & empty;
+        long startingRank = color == Bitboards.WHITE ? Bitboards.RANK_2 : Bitboards.RANK_7;
+        if(targets != 0 && (Bitboards.bit(square) & startingRank) != 0)
+            targets |= Attacks.pawnPushes(color, Long.numberOfTrailingZeros(targets)) & empty;
 
-        return positionsToConsider.toArray(new Vector2[0]);
-    }
-
-    @Override
-    protected void pieceMoved(Vector2 position) {
+        long capturable = bitboards.getOccupancy(1 - color);
         Vector2 enPassantPosition = super.getBoard().getEnPassantPosition();
-        if(position.equals(enPassantPosition)) {
-            if(super.getPlayer().equals(Player.WHITE)) {
-                super.getBoard().removePiece(position.add(Vector2.SOUTH));
-            } else {
-                super.getBoard().removePiece(position.add(Vector2.NORTH));
-            }
-        }
-
-        if(Math.abs(super.getPosition().getY() - position.getY()) == 2) {
-            if(super.getPlayer().equals(Player.WHITE)) {
-                super.getBoard().setEnPassantPosition(position.add(Vector2.SOUTH));
-            } else {
-                super.getBoard().setEnPassantPosition(position.add(Vector2.NORTH));
-            }
-        } else {
-            super.getBoard().setEnPassantPosition(null);
-        }
-
-        if(position.getY() == 7 || position.getY() == 0) {
-            super.getBoard().setPrevPromotion(this.getPosition());
-            super.getBoard().awaitPromotion(position);
-        }
+        if(enPassantPosition != null) capturable |= Bitboards.bit(Bitboards.square(enPassantPosition));
+        targets |= Attacks.pawnAttacks(color, square) & capturable;
 
-        super.getBoard().resetHalfMoveClock();
+        return super.toMovableSquares(targets, considerChecks);
     }
 }
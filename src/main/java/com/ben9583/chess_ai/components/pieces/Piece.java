@@ -2,11 +2,10 @@ package com.ben9583.chess_ai.components.pieces;
 
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
 import com.ben9583.chess_ai.utils.Vector2;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.stream.Stream;
-
 /**
  * Abstract class representing a chess piece.
  */
@@ -39,6 +38,14 @@ public abstract class Piece {
      */
     public abstract int getValue();
 
+    /**
+     * The index of this kind of piece in a bitboard position.
+     *
+     * See also: Bitboards
+     * @return Type of this piece, for example Bitboards.PAWN
+     */
+    public abstract int getType();
+
     /**
      * The symbol that represents this piece in Forsyth-Edwards Notation (FEN).
      * @return Character representing this piece in FEN
@@ -56,75 +63,43 @@ public abstract class Piece {
      * Each piece has its own rules for this and should consider
      * the board and its position when evaluating.
      *
-     * See also: isValidTarget
+     * See also: toMovableSquares
      * @param considerChecks Whether this piece should include moves that put the player's king in check
      * @return Array of moves that this piece can legally move to
      */
     public abstract Vector2[] getMovableSquares(boolean considerChecks);
 
     /**
-     * Returns whether position is a valid square for this piece to move to.
-     * @param position Square to check
-     * @param considerChecks Whether to consider moves that put the player's king in check to not be valid
-     * @return Whether position is a valid square
+     * Converts a bitboard of target squares into an array of squares this piece can move to.
+     * Targets should already exclude squares occupied by this piece's player.
+     * Moves that leave the king in check are filtered out with the board's legal move generator,
+     * so only pieces of the player whose turn it is have any squares left when considering checks.
+     * @param targets Bitboard of squares this piece could move to
+     * @param considerChecks Whether to leave out moves that put the player's king in check
+     * @return Array of squares in targets this piece can move to
      */
-    protected boolean isValidTarget(Vector2 position, boolean considerChecks) {
-        return this.isValidTarget(position, considerChecks, Stream.empty(), Stream.empty());
-    }
+    protected Vector2[] toMovableSquares(long targets, boolean considerChecks) {
+        if(considerChecks) targets &= this.board.getLegalTargets(this);
 
-    /**
-     * Returns whether position is a valid square for this piece to move to.
-     * Runs everything in onMoves before moving and onBacks after moving to
-     * restore the original state before moving.
-     *
-     * This method is useful for moves that alter the state of the board in
-     * ways beyond just the position of the pieces, like castling.
-     * @param position Square to check
-     * @param considerChecks Whether to consider moves that put the player's king in check to not be valid
-     * @param onMoves Stream of Runnables to run before moving
-     * @param onBacks Stream of Runnables that undo the Runnables in onMoves
-     * @return
-     */
-    protected boolean isValidTarget(Vector2 position, boolean considerChecks, Stream<Runnable> onMoves, Stream<Runnable> onBacks) {
-        if(!this.board.boardExistsAt(position)) return false;
-        if(this instanceof King) {
-            if(considerChecks && Math.abs(this.getPosition().getX() - position.getX()) == 2 && this.board.isInCheck(this.player)) {
-                return false;
-            }
+        Vector2[] possibleSquares = new Vector2[Long.bitCount(targets)];
+        int count = 0;
+        for(long bb = targets; bb != 0; bb &= bb - 1) {
+            possibleSquares[count++] = Bitboards.toVector2(Long.numberOfTrailingZeros(bb));
         }
 
-        Piece target = this.board.getPieceAtPosition(position);
-        if(target != null && target.getPlayer().equals(this.player)) return false;
-        if(!considerChecks) return true;
-
-        onMoves.forEach(Runnable::run);
-        boolean result = !this.board.doesThisMovePutMeInCheck(this, position);
-        onBacks.forEach(Runnable::run);
-
-        return result;
+        return possibleSquares;
     }
 
     /**
      * Moves this piece to some position.
+     * Everything else the move changes, like castling rights
+     * or the en passant square, is handled by the board.
      * @param position Square to move this piece to
      */
     public void movePiece(Vector2 position) {
-        this.pieceMoved(position);
-        if(!(this instanceof Pawn)) {
-            this.board.setEnPassantPosition(null);
-        }
-
         this.board.movePiece(this, position);
     }
 
-    /**
-     * Fired right before a piece is about to be moved to position.
-     * This method should be overridden by pieces that change the state
-     * of the board other than position when moved.
-     * @param position Square this piece is about to move to
-     */
-    protected abstract void pieceMoved(Vector2 position);
-
     /**
      * Returns the position this piece is at.
      * @return The position this piece is at
@@ -2,15 +2,15 @@ package com.ben9583.chess_ai.components.pieces;
 
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
+import com.ben9583.chess_ai.components.bitboard.Position;
 import com.ben9583.chess_ai.utils.Vector2;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
-
 /**
  * Abstract class representing a positional piece.
  * A positional piece is a piece whose movable squares
- * can be represented as a finite array of relative positions
+ * can be represented as a finite set of squares
  * so long as they are not occupied by a piece belonging to
  * the same player.
  */
@@ -18,20 +18,21 @@ public abstract class PositionalPiece extends Piece {
     public PositionalPiece(@NotNull Player player, @NotNull Board board) { super(player, board); }
 
     /**
-     * Returns an array of squares relative to
-     * the current position of the piece that it
-     * can move to. This class automatically checks if
-     * the moves are legal, so this should usually return
-     * a constant array of relative positions.
-     * @return An array of squares relative to this piece's position
+     * Returns every square this piece attacks from square.
+     * This class automatically checks if the moves are legal,
+     * so this should usually be a lookup into a constant table.
+     *
+     * See also: Attacks
+     * @param square Square this piece is on
+     * @return Bitboard of every square this piece attacks
      */
-    protected abstract Vector2[] getRelativeSquares();
+    protected abstract long getAttacks(int square);
 
     @Override
     public Vector2[] getMovableSquares(boolean considerChecks) {
-        return Arrays.stream(this.getRelativeSquares())
-                .map(super.getPosition()::add)
-                .filter((Vector2 pos) -> super.isValidTarget(pos, considerChecks))
-                .toArray(Vector2[]::new);
+        Position bitboards = super.getBoard().getBitboards();
+        long targets = this.getAttacks(Bitboards.square(super.getPosition())) & ~bitboards.getOccupancy(Bitboards.colorOf(super.getPlayer()));
+
+        return super.toMovableSquares(targets, considerChecks);
     }
 }
@@ -2,22 +2,11 @@ package com.ben9583.chess_ai.components.pieces;
 
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
-import com.ben9583.chess_ai.utils.Vector2;
+import com.ben9583.chess_ai.components.bitboard.Attacks;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
 import org.jetbrains.annotations.NotNull;
 
 public class Queen extends DirectionalPiece {
-    /* The queen can move in any direction. */
-    private static final Vector2[] relativeSquares = {
-            Vector2.NORTH,
-            Vector2.NORTHEAST,
-            Vector2.EAST,
-            Vector2.SOUTHEAST,
-            Vector2.SOUTH,
-            Vector2.SOUTHWEST,
-            Vector2.WEST,
-            Vector2.NORTHWEST
-    };
-
     public Queen(@NotNull Player player, @NotNull Board board) {
         super(player, board);
     }
@@ -27,6 +16,11 @@ public class Queen extends DirectionalPiece {
         return 9;
     }
 
+    @Override
+    public int getType() {
+        return Bitboards.QUEEN;
+    }
+
     @Override
     public char getFENSymbol() {
         return 'Q';
@@ -41,10 +35,7 @@ public class Queen extends DirectionalPiece {
     }
 
     @Override
-    protected Vector2[] getRelativeSquares() {
-        return Queen.relativeSquares;
+    protected long getAttacks(int square, long occupied) {
+        return Attacks.queenAttacks(square, occupied);
     }
-
-    @Override
-    protected void pieceMoved(Vector2 position) {}
 }
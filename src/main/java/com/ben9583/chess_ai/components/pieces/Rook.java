@@ -2,21 +2,11 @@ package com.ben9583.chess_ai.components.pieces;
 
 import com.ben9583.chess_ai.components.Board;
 import com.ben9583.chess_ai.components.Player;
-import com.ben9583.chess_ai.utils.Vector2;
+import com.ben9583.chess_ai.components.bitboard.Attacks;
+import com.ben9583.chess_ai.components.bitboard.Bitboards;
 import org.jetbrains.annotations.NotNull;
 
 public class Rook extends DirectionalPiece {
-    /* The rook can move vertically or horizontally. */
-    private static final Vector2[] relativeSquares = {
-            Vector2.NORTH,
-            Vector2.EAST,
-            Vector2.SOUTH,
-            Vector2.WEST
-    };
-
-    /* Whether this rook has moved at all. Used to check castling. */
-    private boolean hasMoved = false;
-
     public Rook(@NotNull Player player, @NotNull Board board) {
         super(player, board);
     }
@@ -26,6 +16,11 @@ public class Rook extends DirectionalPiece {
         return 5;
     }
 
+    @Override
+    public int getType() {
+        return Bitboards.ROOK;
+    }
+
     @Override
     public char getFENSymbol() {
         return 'R';
@@ -40,28 +35,7 @@ public class Rook extends DirectionalPiece {
     }
 
     @Override
-    protected Vector2[] getRelativeSquares() {
-        return Rook.relativeSquares;
-    }
-
-    @Override
-    protected void pieceMoved(Vector2 position) {
-        if(!this.hasMoved) {
-            this.hasMoved = true;
-            if(super.getPosition().getX() > 0) {
-                if(super.getPlayer().equals(Player.WHITE)) {
-                    super.getBoard().disableCastleWhiteKing();
-                } else {
-                    super.getBoard().disableCastleBlackKing();
-                }
-            } else {
-                if(super.getPlayer().equals(Player.WHITE)) {
-                    super.getBoard().disableCastleWhiteQueen();
-                } else {
-                    super.getBoard().disableCastleBlackQueen();
-                }
-            }
-
-        }
+    protected long getAttacks(int square, long occupied) {
+        return Attacks.rookAttacks(square, occupied);
     }
 }
@@ -1,6 +1,7 @@
 package com.ben9583.chess_ai.gfx;
 
 import com.ben9583.chess_ai.components.Board;
+import com.ben9583.chess_ai.gfx.components.Board2D;
 
 import javax.swing.*;
 
@@ -29,4 +30,12 @@ public class ChessAIWindow {
         this.frame.repaint();
         this.frame.setVisible(true);
     }
+
+    /**
+     * Returns the graphical interface of the board shown in this window.
+     * @return The board's interface
+     */
+    public Board2D getBoard2D() {
+        return this.scene.board2d;
+    }
 }
@@ -8,6 +8,7 @@ import com.ben9583.chess_ai.utils.Vector2;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
@@ -41,6 +42,10 @@ public class Board2D extends JComponent {
     private final Map<String, BufferedImage> images;
     /* Whether to display the promotion UI. */
     private boolean promotionPrompt = false;
+    /* Whether an AI is thinking about its move, during which clicks don't move pieces. */
+    private boolean aiThinking = false;
+    /* External function to be run when the user asks the AI thinking to move now. */
+    private Runnable onMoveNow = null;
 
     /* Piece that the user last clicked. */
     private Piece clickedPiece = null;
@@ -97,6 +102,11 @@ public class Board2D extends JComponent {
         @Override
         public void mousePressed(MouseEvent e) {
             if(board.isGameOver()) return;
+            if(aiThinking) {
+                // While the AI thinks, a click tells it to play the best move it has found so far.
+                if(onMoveNow != null) onMoveNow.run();
+                return;
+            }
 
             Vector2 coords = new Vector2(e.getX(), e.getY());
             Vector2 square = screenCoordsToSquare(coords);
@@ -175,6 +185,34 @@ public class Board2D extends JComponent {
         }
 
         this.addMouseListener(new ChessAIMouseListener());
+
+        // Space also tells the AI thinking to move now, wherever the focus is in the window.
+        this.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("SPACE"), "moveNow");
+        this.getActionMap().put("moveNow", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if(aiThinking && onMoveNow != null) onMoveNow.run();
+            }
+        });
+    }
+
+    /**
+     * Sets the callback function to be fired when the user clicks the board or presses space
+     * while an AI is thinking, asking it to move now.
+     * @param onMoveNow Runnable that is run on the event dispatch thread
+     */
+    public void bindMoveNowEvent(Runnable onMoveNow) {
+        this.onMoveNow = onMoveNow;
+    }
+
+    /**
+     * Sets whether an AI is thinking about its move. While it is, the user can't move pieces.
+     * Should be called on the event dispatch thread.
+     * @param aiThinking Whether an AI is thinking
+     */
+    public void setAIThinking(boolean aiThinking) {
+        this.aiThinking = aiThinking;
+        this.repaint();
     }
 
     @Override